@@ -1,7 +1,11 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -9,10 +13,19 @@ import persistence.Writable;
 
 /*
  * Represents a Lego build with an ID and a list of required Lego pieces.
+ * A build's requirements are meant to be edited by one thread at a time.
  */
 public class Build implements Writable {
     private int buildId; // Unique identifier for the build
     private List<LegoPiece> requiredPieces; // List of Lego pieces needed for the build
+    private Map<PieceKey, Integer> requiredQuantities; // total quantity needed of each kind of piece
+    private volatile PieceKey[] requiredKeys; // keys of requiredQuantities as an array, or null if stale
+    private volatile int[] requiredAmounts; // values of requiredQuantities as an array, or null if stale
+    private volatile int[] slots; // requiredKeys resolved to slotsOwner's availability slots, or null
+    private volatile MasterBuilder slotsOwner; // builder the slots belong to
+    private volatile MasterBuilder owner; // builder tracking this build's status, or null
+    private final AtomicInteger missingUnits = new AtomicInteger(); // pieces still missing, kept by the owner
+    private volatile long changeCount; // number of changes made to the requirements so far
 
     /*
      * Requires: buildId must be a positive integer.
@@ -22,6 +35,7 @@ public class Build implements Writable {
     public Build(int buildId) {
         this.buildId = buildId;
         this.requiredPieces = new ArrayList<>();
+        this.requiredQuantities = new LinkedHashMap<>();
     }
 
     /*
@@ -31,6 +45,14 @@ public class Build implements Writable {
         return buildId;
     }
 
+    /*
+     * Returns the number of changes made to this build's requirements so far. A copy saved while
+     * it had a given count is still up to date as long as the count is the same.
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
     /*
      * Returns the list of required Lego pieces for the build.
      */
@@ -39,17 +61,133 @@ public class Build implements Writable {
 
     }
 
+    /*
+     * Requires: key must not be null.
+     * Effects: Returns the total quantity of the given piece needed for the build.
+     */
+    public int getRequiredQuantity(PieceKey key) {
+        Integer required = requiredQuantities.get(key);
+        return required == null ? 0 : required;
+    }
+
+    /*
+     * Returns an unmodifiable view of the total quantity needed of each kind of piece.
+     */
+    Map<PieceKey, Integer> getRequiredQuantities() {
+        return Collections.unmodifiableMap(requiredQuantities);
+    }
+
+    /*
+     * Returns the distinct keys of the required pieces, in the order they were first required.
+     * The array is shared; callers must not change it.
+     */
+    PieceKey[] getRequiredKeys() {
+        if (requiredKeys == null) {
+            requiredKeys = requiredQuantities.keySet().toArray(new PieceKey[0]);
+        }
+        return requiredKeys;
+    }
+
+    /*
+     * Returns the total quantity needed of each key in getRequiredKeys, in the same order.
+     * The array is shared; callers must not change it.
+     */
+    int[] getRequiredAmounts() {
+        if (requiredAmounts == null) {
+            int[] amounts = new int[requiredQuantities.size()];
+            int i = 0;
+            for (int amount : requiredQuantities.values()) {
+                amounts[i++] = amount;
+            }
+            requiredAmounts = amounts;
+        }
+        return requiredAmounts;
+    }
+
+    /*
+     * Returns the availability slots of getRequiredKeys in the given builder, or null if they
+     * have not been resolved for it since the requirements last changed.
+     */
+    int[] getSlots(MasterBuilder builder) {
+        return slotsOwner == builder ? slots : null;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Remembers the availability slots of getRequiredKeys in the given builder.
+     */
+    void setSlots(MasterBuilder builder, int[] slots) {
+        this.slotsOwner = builder;
+        this.slots = slots;
+    }
+
+    /*
+     * Returns the builder tracking this build's status, or null if there is none.
+     */
+    MasterBuilder getOwner() {
+        return owner;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Sets the builder tracking this build's status.
+     */
+    void setOwner(MasterBuilder owner) {
+        this.owner = owner;
+    }
+
+    /*
+     * Returns the number of required pieces the owner could not find in its inventories.
+     */
+    int getMissingUnits() {
+        return missingUnits.get();
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Sets the number of required pieces the owner could not find in its inventories.
+     */
+    void setMissingUnits(int missingUnits) {
+        this.missingUnits.set(missingUnits);
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Atomically adds delta to the number of required pieces the owner could not find.
+     */
+    void addMissingUnits(int delta) {
+        missingUnits.addAndGet(delta);
+    }
+
     /*
      * Requires: piece must not be null.
      * Modifies: this
      * Effects: Adds a Lego piece to the list of required pieces.
      */
     public void addRequiredPiece(LegoPiece piece) {
-        requiredPieces.add(piece);
+        MasterBuilder builder = owner;
+        MutationListener listener = builder == null ? null : builder.beginChange();
+        try {
+            requiredPieces.add(piece);
+            changeCount++;
+            requiredQuantities.merge(piece.getKey(), piece.getQuantity(), Integer::sum);
+            requiredKeys = null;
+            requiredAmounts = null;
+            slots = null;
+            if (builder != null) {
+                builder.requirementAdded(this, piece.getKey(), piece.getQuantity());
+            }
+            if (listener != null) {
+                listener.requirementAdded(buildId, piece);
+            }
+        } finally {
+            if (builder != null) {
+                builder.endChange(listener);
+            }
+        }
 
-        EventLog.getInstance().logEvent(new Event("Added " + piece.getQuantity() + "x " + piece.getColor()
-                + " " + piece.getPartType() + " (" + piece.getDimensions() + ") to build "
-                + this.buildId));
+        EventLog.getInstance().log(EventType.BUILD_PIECE_ADDED, piece.getQuantity(), piece,
+                this.buildId);
     }
 
     /*
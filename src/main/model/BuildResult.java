@@ -0,0 +1,90 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Represents the outcome of attempting a build: whether it was completed and, if so,
+ * how many of each piece were taken from each inventory.
+ */
+public class BuildResult {
+    private final Build build; // the build that was attempted
+    private final boolean completed; // true if the pieces were taken from the inventories
+    private final Map<LegoInventory, Map<PieceKey, Integer>> taken; // pieces taken, by inventory
+
+    /*
+     * Requires: build must not be null.
+     * Effects: Initializes a result for the given build with nothing taken yet.
+     */
+    BuildResult(Build build, boolean completed) {
+        this.build = build;
+        this.completed = completed;
+        this.taken = new LinkedHashMap<>();
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Records that quantity pieces with the given key were taken from inventory.
+     */
+    void recordTaken(LegoInventory inventory, PieceKey key, int quantity) {
+        taken.computeIfAbsent(inventory, i -> new LinkedHashMap<>()).merge(key, quantity, Integer::sum);
+    }
+
+    /*
+     * Returns the build that was attempted.
+     */
+    public Build getBuild() {
+        return build;
+    }
+
+    /*
+     * Returns true if the build was completed and its pieces were taken from the inventories.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /*
+     * Returns the inventories that pieces were taken from, in the order they were used.
+     */
+    public List<LegoInventory> getInventoriesUsed() {
+        return new ArrayList<>(taken.keySet());
+    }
+
+    /*
+     * Returns an unmodifiable view of how many of each piece were taken from the given inventory.
+     */
+    public Map<PieceKey, Integer> getPiecesTaken(LegoInventory inventory) {
+        Map<PieceKey, Integer> pieces = taken.get(inventory);
+        return pieces == null ? Collections.emptyMap() : Collections.unmodifiableMap(pieces);
+    }
+
+    /*
+     * Returns how many pieces with the given key were taken from the given inventory.
+     */
+    public int getQuantityTaken(LegoInventory inventory, PieceKey key) {
+        Integer quantity = getPiecesTaken(inventory).get(key);
+        return quantity == null ? 0 : quantity;
+    }
+
+    /*
+     * Returns a line per piece and inventory describing where the build's pieces came from.
+     */
+    @Override
+    public String toString() {
+        if (!completed) {
+            return "Build " + build.getBuildId() + " was not completed.";
+        }
+        StringBuilder sb = new StringBuilder("Build " + build.getBuildId() + " completed.");
+        for (Map.Entry<LegoInventory, Map<PieceKey, Integer>> inventory : taken.entrySet()) {
+            for (Map.Entry<PieceKey, Integer> piece : inventory.getValue().entrySet()) {
+                sb.append("\n- ").append(piece.getValue()).append("x ").append(piece.getKey())
+                        .append(" from ").append(inventory.getKey().getCollectionName());
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package model;
+
+/*
+ * Represents a stretch of bulk work, such as loading a file, during which the calling thread's
+ * events are counted instead of logged. Closing the scope logs one summary event in their place.
+ *
+ * Open a scope with EventLog.openBulkScope and close it in the finally block of the try
+ * statement doing the bulk work. The summary is rendered from a template in which {0}, {1}, ...
+ * stand for how many events of each of the counted types were suppressed, written with digit
+ * grouping (e.g., "1,000,000").
+ *
+ * Work split across threads can be counted in one summary: each helping thread joins the scope
+ * with EventLog.joinBulkScope, and closing its joined scope adds its counts to the scope it
+ * joined instead of logging a summary.
+ */
+public final class BulkEventScope implements AutoCloseable {
+    private static final EventType[] TYPES = EventType.values();
+
+    private final EventLog log; // log the summary goes to
+    private final BulkEventScope outer; // scope this one is nested in, or null
+    private final BulkEventScope joined; // scope this one's counts are added to when closed, or null
+    private final String summaryTemplate; // summary with one placeholder per counted type
+    private final EventType[] counted; // types whose counts fill the placeholders
+    private final int[] counts = new int[TYPES.length]; // suppressed events, by type ordinal
+    private boolean closed; // true once the summary has been logged
+
+    /*
+     * Requires: the scope is opened on the thread that will close it.
+     * Effects: Initializes an open scope nested in outer (null for none).
+     */
+    BulkEventScope(EventLog log, BulkEventScope outer, String summaryTemplate, EventType[] counted) {
+        this.log = log;
+        this.outer = outer;
+        this.joined = null;
+        this.summaryTemplate = summaryTemplate;
+        this.counted = counted.clone();
+    }
+
+    /*
+     * Requires: the scope is opened on the thread that will close it, before joined is closed.
+     * Effects: Initializes an open scope nested in outer (null for none) that counts events for
+     *          joined, a scope opened on another thread.
+     */
+    BulkEventScope(EventLog log, BulkEventScope outer, BulkEventScope joined) {
+        this.log = log;
+        this.outer = outer;
+        this.joined = joined;
+        this.summaryTemplate = joined.summaryTemplate;
+        this.counted = joined.counted;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Counts a suppressed event of the given type.
+     */
+    void count(EventType type) {
+        counts[type.ordinal()]++;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Adds the counts of a scope that joined this one.
+     */
+    private synchronized void addCounts(int[] joinedCounts) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += joinedCounts[i];
+        }
+    }
+
+    /*
+     * Returns the scope this one is nested in, or null if there is none.
+     */
+    BulkEventScope getOuter() {
+        return outer;
+    }
+
+    /*
+     * Returns how many events of the given type this scope has suppressed.
+     */
+    public int getCount(EventType type) {
+        return counts[type.ordinal()];
+    }
+
+    /*
+     * Returns how many events of any type this scope has suppressed.
+     */
+    public int getTotalCount() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /*
+     * Modifies: this, the event log
+     * Effects: Stops suppressing the thread's events and logs the summary, or adds the counts to
+     *          the joined scope if this scope joined one. Does nothing if the scope is already
+     *          closed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        log.endBulkScope(this);
+        if (joined != null) {
+            joined.addCounts(counts);
+        } else {
+            log.log(EventType.BULK_SUMMARY, 0, this, null);
+        }
+    }
+
+    /*
+     * Effects: Returns the summary with every placeholder replaced by its count.
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder(summaryTemplate.length() + 32);
+        int start = 0;
+        for (int open = summaryTemplate.indexOf('{'); open >= 0; open = summaryTemplate.indexOf('{', open + 1)) {
+            int close = summaryTemplate.indexOf('}', open);
+            int index = close < 0 ? -1 : placeholderIndex(summaryTemplate.substring(open + 1, close));
+            if (index >= 0) {
+                summary.append(summaryTemplate, start, open);
+                summary.append(String.format("%,d", getCount(counted[index])));
+                start = close + 1;
+            }
+        }
+        return summary.append(summaryTemplate, start, summaryTemplate.length()).toString();
+    }
+
+    /*
+     * Effects: Returns the counted type index written between braces, or -1 if text is not one.
+     */
+    private int placeholderIndex(String text) {
+        if (text.isEmpty() || text.length() > 3 || !text.chars().allMatch(Character::isDigit)) {
+            return -1;
+        }
+        int index = Integer.parseInt(text);
+        return index < counted.length ? index : -1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+package model;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/*
+ * Represents the shared pool of piece attribute strings.
+ *
+ * Equal strings passed to intern come back as one instance, so attributes read from many pieces
+ * take the memory of one copy and canonical attributes can be compared by reference. The pool
+ * only holds its strings weakly: a spelling no live piece or key uses can be collected. The pool
+ * is split into stripes by hash, each with its own monitor, so threads rarely wait on each other.
+ */
+final class CanonicalStrings {
+    private static final int STRIPES = 16;
+    private static final Map<String, WeakReference<String>>[] POOL = newPool();
+
+    private CanonicalStrings() {
+    }
+
+    /*
+     * Effects: Returns an empty pool of STRIPES stripes.
+     */
+    private static Map<String, WeakReference<String>>[] newPool() {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Map<String, WeakReference<String>>[] pool = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            pool[i] = new WeakHashMap<>();
+        }
+        return pool;
+    }
+
+    /*
+     * Requires: value is not null
+     * Modifies: the pool
+     * Effects: Returns the pooled string equal to value, adding value to the pool if there is none.
+     */
+    static String intern(String value) {
+        int h = value.hashCode();
+        Map<String, WeakReference<String>> stripe = POOL[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            WeakReference<String> pooled = stripe.get(value);
+            String canonical = pooled == null ? null : pooled.get();
+            if (canonical == null) {
+                stripe.put(value, new WeakReference<>(value));
+                canonical = value;
+            }
+            return canonical;
+        }
+    }
+
+    /*
+     * Effects: Returns the canonical form of an attribute (trimmed and lower case), taken from
+     *          the pool.
+     */
+    static String canonical(String attribute) {
+        return intern(PieceKey.normalize(attribute));
+    }
+}
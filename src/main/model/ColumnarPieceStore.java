@@ -0,0 +1,402 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/*
+ * Represents a compact piece storage for very large inventories.
+ *
+ * Part types, colors and dimensions are replaced by int ids from dictionaries shared by every
+ * columnar store, and each piece becomes one fixed-width record (part type, color, dimensions
+ * and quantity) in a PieceRecords, on or off the Java heap. Rows are found through an
+ * open-addressing hash table on the case-normalized ids, so pieces with equal keys share a row
+ * and adding one merges quantities.
+ * A store made over rows that are already in its records, such as records read from a saved
+ * file, builds the hash table the first time a piece is looked up.
+ *
+ * Callers still see LegoPiece objects: find and pieces hand out views that read and write the
+ * row of their key. Each row keeps the PieceKey of its views once it is first made, so looking
+ * a piece up again does not rebuild it. Removing a piece moves the last row into its place, so
+ * the order of pieces is not kept once pieces are removed.
+ */
+class ColumnarPieceStore implements PieceStore {
+    static final StringDictionary PART_TYPES = new StringDictionary();
+    static final StringDictionary COLORS = new StringDictionary();
+    static final StringDictionary DIMENSIONS = new StringDictionary();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final PieceObserver observer; // observer given to every view, or null
+    private final PieceRecords records; // ids and quantity of each row
+    private int size; // number of rows in use
+    private int[] table; // row + 1 at each hash slot, 0 for an empty slot, or null until first needed
+    private PieceKey[] keys; // key of each row, or null until the row's key is first asked for
+
+    /*
+     * Effects: Initializes an empty store keeping its rows on the Java heap, whose views report
+     *          quantity changes to observer.
+     */
+    ColumnarPieceStore(PieceObserver observer) {
+        this(observer, new HeapPieceRecords(INITIAL_CAPACITY));
+    }
+
+    /*
+     * Requires: records must be empty and not shared with another store.
+     * Effects: Initializes an empty store keeping its rows in records, whose views report
+     *          quantity changes to observer.
+     */
+    ColumnarPieceStore(PieceObserver observer, PieceRecords records) {
+        this.observer = observer;
+        this.records = records;
+        this.table = new int[Integer.highestOneBit(records.capacity()) * 2];
+        this.keys = new PieceKey[records.capacity()];
+    }
+
+    /*
+     * Requires: the first size rows of records hold pieces with distinct keys, and records is not
+     *           shared with another store.
+     * Effects: Initializes a store holding those rows, whose views report quantity changes to
+     *          observer. The rows are not read until they are needed.
+     */
+    ColumnarPieceStore(PieceObserver observer, PieceRecords records, int size) {
+        this.observer = observer;
+        this.records = records;
+        this.size = size;
+        this.keys = new PieceKey[records.capacity()];
+    }
+
+    @Override
+    public LegoPiece add(LegoPiece piece) {
+        int partType = PART_TYPES.idOf(piece.getPartType());
+        int color = COLORS.idOf(piece.getColor());
+        int dimensions = DIMENSIONS.idOf(piece.getDimensions());
+        int row = findRow(PART_TYPES.canonicalId(partType), COLORS.canonicalId(color),
+                DIMENSIONS.canonicalId(dimensions));
+        if (row >= 0) {
+            records.setQuantity(row, records.quantity(row) + piece.getQuantity());
+        } else {
+            row = appendRow(partType, color, dimensions, piece.getQuantity());
+        }
+        return new PieceView(row);
+    }
+
+    @Override
+    public int remove(LegoPiece piece) {
+        int row = findRow(piece.getKey());
+        if (row < 0) {
+            return -1;
+        }
+        int quantity = records.quantity(row);
+        removeRow(row);
+        return quantity;
+    }
+
+    @Override
+    public Map<LegoPiece, Integer> removeAll(Collection<LegoPiece> pieces) {
+        boolean[] doomed = new boolean[size];
+        Map<LegoPiece, Integer> removed = new LinkedHashMap<>();
+        for (LegoPiece piece : pieces) {
+            int row = findRow(piece.getKey());
+            if (row >= 0 && !doomed[row]) {
+                doomed[row] = true;
+                removed.put(piece, records.quantity(row));
+            }
+        }
+        if (removed.isEmpty()) {
+            return removed;
+        }
+
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            if (!doomed[row]) {
+                keys[kept] = keys[row];
+                records.copy(row, kept++);
+            }
+        }
+        Arrays.fill(keys, kept, size, null);
+        size = kept;
+        rebuildTable(table.length);
+        return removed;
+    }
+
+    @Override
+    public LegoPiece find(PieceKey key) {
+        int row = findRow(key);
+        return row < 0 ? null : new PieceView(row);
+    }
+
+    @Override
+    public List<LegoPiece> findAll(PieceKey key) {
+        LegoPiece piece = find(key);
+        return piece == null ? Collections.emptyList() : Collections.singletonList(piece);
+    }
+
+    @Override
+    public List<LegoPiece> pieces() {
+        return new AbstractList<LegoPiece>() {
+            @Override
+            public LegoPiece get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return new PieceView(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /*
+     * Requires: partTypeTotals, colorTotals have room for every canonical id of their dictionary.
+     * Modifies: partTypeTotals, colorTotals
+     * Effects: Adds the quantity of each row to the totals of its canonical part type and color.
+     */
+    void addTotals(int[] partTypeTotals, int[] colorTotals) {
+        for (int row = 0; row < size; row++) {
+            int quantity = records.quantity(row);
+            partTypeTotals[PART_TYPES.canonicalId(records.partType(row))] += quantity;
+            colorTotals[COLORS.canonicalId(records.color(row))] += quantity;
+        }
+    }
+
+    @Override
+    public int totalQuantity() {
+        int total = 0;
+        for (int row = 0; row < size; row++) {
+            total += records.quantity(row);
+        }
+        return total;
+    }
+
+    /*
+     * Effects: Returns the row holding key, or -1 if there is none.
+     */
+    private int findRow(PieceKey key) {
+        int partType = PART_TYPES.find(key.getPartType());
+        int color = COLORS.find(key.getColor());
+        int dimensions = DIMENSIONS.find(key.getDimensions());
+        if (partType < 0 || color < 0 || dimensions < 0) {
+            return -1;
+        }
+        return findRow(partType, color, dimensions);
+    }
+
+    /*
+     * Requires: ids are canonical ids.
+     * Effects: Returns the row whose canonical ids are the given ones, or -1 if there is none.
+     */
+    private int findRow(int partType, int color, int dimensions) {
+        if (table == null) {
+            rebuildTable(Integer.highestOneBit(Math.max(size, INITIAL_CAPACITY)) * 4);
+        }
+        int mask = table.length - 1;
+        for (int slot = hash(partType, color, dimensions) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int row = table[slot] - 1;
+            if (hasKey(row, partType, color, dimensions)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Effects: Returns true if the row's canonical ids are the given ones.
+     */
+    private boolean hasKey(int row, int partType, int color, int dimensions) {
+        return PART_TYPES.canonicalId(records.partType(row)) == partType
+                && COLORS.canonicalId(records.color(row)) == color
+                && DIMENSIONS.canonicalId(records.dimensions(row)) == dimensions;
+    }
+
+    /*
+     * Effects: Returns the hash slot a row with the given canonical ids starts probing from.
+     */
+    private static int hash(int partType, int color, int dimensions) {
+        int h = (partType * 31 + color) * 31 + dimensions;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /*
+     * Effects: Returns the hash slot the given row starts probing from.
+     */
+    private int hashOfRow(int row) {
+        return hash(PART_TYPES.canonicalId(records.partType(row)), COLORS.canonicalId(records.color(row)),
+                DIMENSIONS.canonicalId(records.dimensions(row)));
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Adds a row with the given ids and quantity and returns its index.
+     */
+    private int appendRow(int partType, int color, int dimensions, int quantity) {
+        if (size == records.capacity()) {
+            records.grow(size * 2);
+            keys = Arrays.copyOf(keys, records.capacity());
+        }
+        int row = size++;
+        records.set(row, partType, color, dimensions, quantity);
+
+        if (size * 2 > table.length) {
+            rebuildTable(table.length * 2);
+        } else {
+            insertIntoTable(row);
+        }
+        return row;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Removes the given row, moving the last row into its place.
+     */
+    private void removeRow(int row) {
+        deleteFromTable(row);
+        int last = size - 1;
+        if (row != last) {
+            int slot = slotOf(last);
+            records.copy(last, row);
+            keys[row] = keys[last];
+            table[slot] = row + 1;
+        }
+        keys[last] = null;
+        size--;
+    }
+
+    /*
+     * Requires: row is in the table.
+     * Effects: Returns the hash slot holding row.
+     */
+    private int slotOf(int row) {
+        int mask = table.length - 1;
+        int slot = hashOfRow(row) & mask;
+        while (table[slot] != row + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Puts row into the first free slot of its probe sequence.
+     */
+    private void insertIntoTable(int row) {
+        int mask = table.length - 1;
+        int slot = hashOfRow(row) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = row + 1;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Takes row out of the table, shifting later entries of the probe run back so that
+     *          every remaining row can still be found.
+     */
+    private void deleteFromTable(int row) {
+        int mask = table.length - 1;
+        int hole = slotOf(row);
+        table[hole] = 0;
+        for (int slot = (hole + 1) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int home = hashOfRow(table[slot] - 1) & mask;
+            boolean canMove = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (canMove) {
+                table[hole] = table[slot];
+                table[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    /*
+     * Requires: capacity is a power of two greater than twice the number of rows.
+     * Modifies: this
+     * Effects: Replaces the table with one of the given capacity holding every row.
+     */
+    private void rebuildTable(int capacity) {
+        table = new int[capacity];
+        for (int row = 0; row < size; row++) {
+            insertIntoTable(row);
+        }
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Returns the key of the given row, built from the canonical spellings the first
+     *          time it is asked for and kept with the row after that.
+     */
+    private PieceKey keyOf(int row) {
+        PieceKey key = keys[row];
+        if (key == null) {
+            key = new PieceKey(PART_TYPES.get(PART_TYPES.canonicalId(records.partType(row))),
+                    COLORS.get(COLORS.canonicalId(records.color(row))),
+                    DIMENSIONS.get(DIMENSIONS.canonicalId(records.dimensions(row))));
+            keys[row] = key;
+        }
+        return key;
+    }
+
+    /*
+     * Represents a LegoPiece whose quantity lives in a row of this store. The view remembers
+     * its key, so it keeps working after rows move and reads zero once its row is removed.
+     */
+    private final class PieceView extends LegoPiece {
+        private final int partType; // canonical part type id
+        private final int color; // canonical color id
+        private final int dimensions; // canonical dimensions id
+        private int row; // last known row
+
+        /*
+         * Requires: row is in use.
+         * Effects: Initializes a view over the given row.
+         */
+        PieceView(int row) {
+            super(PART_TYPES.get(records.partType(row)), COLORS.get(records.color(row)),
+                    DIMENSIONS.get(records.dimensions(row)), keyOf(row));
+            this.partType = PART_TYPES.canonicalId(records.partType(row));
+            this.color = COLORS.canonicalId(records.color(row));
+            this.dimensions = DIMENSIONS.canonicalId(records.dimensions(row));
+            this.row = row;
+            setObserver(observer);
+        }
+
+        /*
+         * Modifies: this
+         * Effects: Returns the row currently holding this view's key, or -1 if it was removed.
+         */
+        private int currentRow() {
+            if (row < 0 || row >= size || !hasKey(row, partType, color, dimensions)) {
+                row = findRow(partType, color, dimensions);
+            }
+            return row;
+        }
+
+        @Override
+        public int getQuantity() {
+            int current = currentRow();
+            return current < 0 ? 0 : records.quantity(current);
+        }
+
+        @Override
+        int applyQuantity(IntUnaryOperator change) {
+            int current = currentRow();
+            if (current < 0) {
+                return 0;
+            }
+            int before = records.quantity(current);
+            int after = change.applyAsInt(before);
+            records.setQuantity(current, after);
+            return after - before;
+        }
+    }
+}
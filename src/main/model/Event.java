@@ -1,15 +1,20 @@
 package model;
 
-import java.util.Calendar;
 import java.util.Date;
 
 /**
  * Represents an alarm system event.
+ * Events store a type, up to three arguments and a timestamp, and only
+ * render their description when it is read.
  */
 public class Event {
     private static final int HASH_CONSTANT = 13;
-    private Date dateLogged;
-    private String description;
+    private final long timestamp; // when the event was logged, in epoch milliseconds
+    private final EventType type; // template of the description
+    private final int amount; // {0} of the template
+    private final Object subject; // {1} of the template
+    private final Object detail; // {2} of the template
+    private String description; // rendered description, or null until first asked for
 	
 	/**
 	 * Creates an event with the given description
@@ -17,24 +22,109 @@ public class Event {
 	 * @param description  a description of the event
 	 */
     public Event(String description) {
-    	dateLogged = Calendar.getInstance().getTime();
+    	this(EventType.MESSAGE, 0, description, null, System.currentTimeMillis());
     	this.description = description;
     }
+
+	/**
+	 * Creates an event of the given type and the current date/time stamp.
+	 * The description is only rendered from the type's template when it
+	 * is asked for, so the arguments must not change in ways that show
+	 * in the description.
+	 * @param type  the kind of event
+	 * @param amount  the template's {0}
+	 * @param subject  the template's {1}
+	 * @param detail  the template's {2}
+	 */
+    Event(EventType type, int amount, Object subject, Object detail) {
+    	this(type, amount, subject, detail, System.currentTimeMillis());
+    }
+
+	/**
+	 * Creates an event with the given description and date/time stamp,
+	 * for events read back from disk.
+	 * @param dateLogged  when the event was logged
+	 * @param description  a description of the event
+	 */
+    Event(Date dateLogged, String description) {
+    	this(EventType.MESSAGE, 0, description, null, dateLogged.getTime());
+    	this.description = description;
+    }
+
+	/**
+	 * Creates an event of the given type and date/time stamp.
+	 * @param type  the kind of event
+	 * @param amount  the template's {0}
+	 * @param subject  the template's {1}
+	 * @param detail  the template's {2}
+	 * @param timestamp  when the event was logged, in milliseconds since the epoch
+	 */
+    Event(EventType type, int amount, Object subject, Object detail, long timestamp) {
+    	this.timestamp = timestamp;
+    	this.type = type;
+    	this.amount = amount;
+    	this.subject = subject;
+    	this.detail = detail;
+    }
 	
 	/**
 	 * Gets the date of this event (includes time).
 	 * @return  the date of the event
 	 */
     public Date getDate() {
-    	return dateLogged;
+    	return new Date(timestamp);
+    }
+
+	/**
+	 * Gets the time this event was logged.
+	 * @return  the time of the event in milliseconds since the epoch
+	 */
+    public long getTimestamp() {
+    	return timestamp;
+    }
+
+	/**
+	 * Gets the kind of this event.
+	 * @return  the type of the event
+	 */
+    public EventType getType() {
+    	return type;
+    }
+	
+	/**
+	 * Gets what this event is about: the name of the inventory for
+	 * inventory and quantity events, the id of the build for build events.
+	 * @return  the inventory name or the build id, or null if there is none
+	 */
+    Object getSubjectKey() {
+    	switch (type) {
+    	    case INVENTORY_ADDED:
+    	        return subject;
+    	    case BUILD_ADDED:
+    	        return amount;
+    	    case INVENTORY_PIECE_ADDED:
+    	    case INVENTORY_PIECE_REMOVED:
+    	    case BUILD_PIECE_ADDED:
+    	    case QUANTITY_SET:
+    	    case QUANTITY_ADDED:
+    	    case QUANTITY_REMOVED:
+    	        return detail;
+    	    default:
+    	        return null;
+    	}
     }
 	
 	/**
-	 * Gets the description of this event.
+	 * Gets the description of this event, rendering it on first use.
 	 * @return  the description of the event
 	 */
     public String getDescription() {
-    	return description;
+    	String rendered = description;
+    	if (rendered == null) {
+    	    rendered = type.render(amount, subject, detail);
+    	    description = rendered;
+    	}
+    	return rendered;
     }
 	
     @Override
@@ -49,17 +139,17 @@ public class Event {
     
         Event otherEvent = (Event) other;
 		
-    	return (this.dateLogged.equals(otherEvent.dateLogged)
-                && this.description.equals(otherEvent.description));   
+    	return (this.timestamp == otherEvent.timestamp
+                && this.getDescription().equals(otherEvent.getDescription()));   
     }
 	
     @Override
     public int hashCode() {
-        return (HASH_CONSTANT * dateLogged.hashCode() + description.hashCode());
+        return (HASH_CONSTANT * Long.hashCode(timestamp) + getDescription().hashCode());
     }
 	
     @Override
     public String toString() {
-    	return dateLogged.toString() + "\n" + description;
+    	return getDate().toString() + "\n" + getDescription();
     }
 }
\ No newline at end of file
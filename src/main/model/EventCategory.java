@@ -0,0 +1,12 @@
+package model;
+
+/*
+ * Represents the part of the model an event is about, so that whole areas can be filtered out
+ * of the EventLog.
+ */
+public enum EventCategory {
+    PIECE,     // quantity changes made on a LegoPiece
+    INVENTORY, // pieces entering or leaving inventories, inventories added to a user
+    BUILD,     // requirements added to builds, builds added to a user
+    SYSTEM     // free-text messages and events about the log itself
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+package model;
+
+import java.util.Arrays;
+
+/*
+ * Represents the events of one subject (or of the whole log) in the order they were logged,
+ * with their timestamps, so that the events of a time range can be found by binary search.
+ *
+ * Threads stamp an event before logging it, so timestamps are almost, but not quite, in log
+ * order. The index therefore keeps the running maximum of the timestamps, which is sorted, and
+ * the slack: the furthest any timestamp fell behind that maximum. Every event stamped in
+ * [from, to) lies between the first position whose running maximum reaches from and the first
+ * whose running maximum reaches to + slack, so a query costs two binary searches plus a scan of
+ * the matching events and the few out-of-order ones around them.
+ */
+final class EventIndex {
+    private long[] sequences = new long[16]; // log position of each event
+    private long[] times = new long[16]; // timestamp of each event
+    private long[] maxTimes = new long[16]; // running maximum of times
+    private int head; // first position still in the log
+    private int size; // positions in use
+    private long slack; // largest gap between maxTimes and times
+
+    /*
+     * Requires: sequence is greater than every sequence added before.
+     * Modifies: this
+     * Effects: Adds the event logged at sequence with the given timestamp.
+     */
+    void add(long sequence, long time) {
+        if (size == sequences.length) {
+            makeRoom();
+        }
+        long maxTime = size > head ? Math.max(maxTimes[size - 1], time) : time;
+        sequences[size] = sequence;
+        times[size] = time;
+        maxTimes[size] = maxTime;
+        slack = Math.max(slack, maxTime - time);
+        size++;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Forgets the events logged before sequence.
+     */
+    void evictBefore(long sequence) {
+        while (head < size && sequences[head] < sequence) {
+            head++;
+        }
+    }
+
+    /*
+     * Returns true if the index holds no events.
+     */
+    boolean isEmpty() {
+        return head == size;
+    }
+
+    /*
+     * Requires: from <= to
+     * Effects: Returns the sequences of the events stamped in [from, to), in log order.
+     */
+    long[] find(long from, long to) {
+        int lo = firstReaching(head, from);
+        long limit = to > Long.MAX_VALUE - slack ? Long.MAX_VALUE : to + slack;
+        int hi = limit == Long.MAX_VALUE ? size : firstReaching(lo, limit);
+        long[] found = new long[hi - lo];
+        int count = 0;
+        for (int i = lo; i < hi; i++) {
+            if (times[i] >= from && times[i] < to) {
+                found[count++] = sequences[i];
+            }
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    /*
+     * Effects: Returns the first position at or after start whose running maximum is at least time,
+     *          or size if there is none.
+     */
+    private int firstReaching(int start, long time) {
+        int lo = start;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (maxTimes[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Drops the evicted positions, or doubles the arrays if fewer than half are evicted.
+     */
+    private void makeRoom() {
+        int live = size - head;
+        int length = head >= sequences.length / 2 ? sequences.length : sequences.length * 2;
+        sequences = shift(sequences, length, live);
+        times = shift(times, length, live);
+        maxTimes = shift(maxTimes, length, live);
+        head = 0;
+        size = live;
+    }
+
+    /*
+     * Effects: Returns an array of the given length starting with the live positions of values.
+     */
+    private long[] shift(long[] values, int length, int live) {
+        long[] shifted = new long[length];
+        System.arraycopy(values, head, shifted, 0, live);
+        return shifted;
+    }
+}
\ No newline at end of file
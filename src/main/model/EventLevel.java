@@ -0,0 +1,10 @@
+package model;
+
+/*
+ * Represents how important an event is. The EventLog drops events below its minimum level.
+ */
+public enum EventLevel {
+    DEBUG,   // fine-grained detail, off unless asked for
+    INFO,    // ordinary changes to the user's data (default minimum)
+    WARNING  // something the user should look at
+}
\ No newline at end of file
@@ -1,60 +1,566 @@
 package model;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Represents a log of alarm system events.
  * We use the Singleton Design Pattern to ensure that there is only
  * one EventLog in the system and that the system has global access
  * to the single instance of the EventLog.
+ *
+ * Events are kept in a bounded ring buffer that any number of threads
+ * can log to without locking. Once the buffer is full, each new event
+ * replaces the oldest one, which is either dropped or spilled to a file
+ * on disk, depending on how the log is configured.
+ *
+ * Events below the minimum level or in a disabled category are dropped.
+ * While a thread has a bulk scope open, its events are counted by the
+ * scope instead, and closing the scope logs one summary event. Kept
+ * events are also handed to every registered EventSink.
+ *
+ * Events in memory can be looked up by time, and by the inventory or
+ * build they are about, without scanning the whole log: the log indexes
+ * them by timestamp and by subject the first time it is queried after
+ * they were logged, so logging itself never waits for the index.
  */
 public class EventLog implements Iterable<Event> {
-	/** the only EventLog in the system (Singleton Design Pattern) */
-    private static EventLog theLog;
-    private Collection<Event> events;
-	
-	/** 
-	 * Prevent external construction.
-	 * (Singleton Design Pattern).
-	 */
+    /** number of events kept in memory unless configured otherwise */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private volatile Ring ring;
+    private volatile EventOverflow overflow;
+    private volatile Path spillFile;
+    private BufferedWriter spillWriter; // guarded by this
+    private volatile EventLevel minimumLevel = EventLevel.INFO;
+    private volatile EnumSet<EventCategory> enabledCategories = EnumSet.allOf(EventCategory.class);
+    private final ThreadLocal<BulkEventScope> bulkScope = new ThreadLocal<>();
+    private final List<EventSink> sinks = new CopyOnWriteArrayList<>();
+
+    /**
+     * Holds the only EventLog in the system, created the first time
+     * getInstance is called (Singleton Design Pattern).
+     */
+    private static final class Holder {
+        static final EventLog THE_LOG = new EventLog();
+    }
+
+    /**
+     * Prevent external construction.
+     * (Singleton Design Pattern).
+     */
     private EventLog() {
-    	events = new ArrayList<Event>();
-    }
-	
-	/**
-	 * Gets instance of EventLog - creates it
-	 * if it doesn't already exist.
-	 * (Singleton Design Pattern)
-	 * @return  instance of EventLog
-	 */
+        ring = new Ring(DEFAULT_CAPACITY);
+        overflow = EventOverflow.OVERWRITE_OLDEST;
+    }
+
+    /**
+     * Gets instance of EventLog - creates it
+     * if it doesn't already exist.
+     * (Singleton Design Pattern)
+     * @return  instance of EventLog
+     */
     public static EventLog getInstance() {
-    	if (theLog == null) {
-            theLog = new EventLog();
+        return Holder.THE_LOG;
+    }
+
+    /**
+     * Empties the log and sets how many events it keeps in memory, dropping
+     * the oldest event when it is full. Call it while no other thread logs.
+     * @param capacity  number of events to keep, rounded up to a power of two
+     */
+    public void configure(int capacity) {
+        configure(capacity, EventOverflow.OVERWRITE_OLDEST, null);
+    }
+
+    /**
+     * Empties the log and sets how many events it keeps in memory and what
+     * happens to the oldest event when it is full. Call it while no other
+     * thread logs.
+     * @param capacity  number of events to keep, rounded up to a power of two
+     * @param overflow  what to do with the oldest event when the log is full
+     * @param spillFile  file that spilled events are appended to; ignored
+     *                   unless overflow is SPILL_TO_DISK
+     */
+    public synchronized void configure(int capacity, EventOverflow overflow, Path spillFile) {
+        if (overflow == EventOverflow.SPILL_TO_DISK && spillFile == null) {
+            throw new IllegalArgumentException("A spill file is needed to spill events to disk");
+        }
+        closeSpill();
+        this.overflow = overflow;
+        this.spillFile = overflow == EventOverflow.SPILL_TO_DISK ? spillFile : null;
+        deleteSpill();
+        ring = new Ring(capacity);
+    }
+
+    /**
+     * Gets the number of events the log keeps in memory.
+     * @return  the capacity of the log
+     */
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * Sets the least important level of event the log keeps.
+     * @param level  the minimum level
+     */
+    public void setMinimumLevel(EventLevel level) {
+        minimumLevel = level;
+    }
+
+    /**
+     * Gets the least important level of event the log keeps.
+     * @return  the minimum level
+     */
+    public EventLevel getMinimumLevel() {
+        return minimumLevel;
+    }
+
+    /**
+     * Turns logging of a category of events on or off.
+     * @param category  the category to change
+     * @param enabled  whether events of the category are kept
+     */
+    public synchronized void setCategoryEnabled(EventCategory category, boolean enabled) {
+        EnumSet<EventCategory> categories = EnumSet.copyOf(enabledCategories);
+        if (enabled) {
+            categories.add(category);
+        } else {
+            categories.remove(category);
+        }
+        enabledCategories = categories;
+    }
+
+    /**
+     * Tells whether events of a category are kept.
+     * @param category  the category to check
+     * @return  true if events of the category are kept
+     */
+    public boolean isCategoryEnabled(EventCategory category) {
+        return enabledCategories.contains(category);
+    }
+
+    /**
+     * Tells whether events of a type pass the level and category filters.
+     * @param type  the type to check
+     * @return  true if events of the type are kept
+     */
+    public boolean isLoggable(EventType type) {
+        return type.getLevel().compareTo(minimumLevel) >= 0 && enabledCategories.contains(type.getCategory());
+    }
+
+    /**
+     * Starts a bulk scope on the calling thread: until it is closed, the
+     * thread's events are counted instead of logged, and closing it logs
+     * one summary event. Use it in a try-with-resources statement.
+     * @param summaryTemplate  summary in which {0}, {1}, ... stand for the
+     *                         number of suppressed events of each counted type
+     * @param counted  the types whose counts fill the placeholders
+     * @return  the open scope
+     */
+    public BulkEventScope openBulkScope(String summaryTemplate, EventType... counted) {
+        BulkEventScope scope = new BulkEventScope(this, bulkScope.get(), summaryTemplate, counted);
+        bulkScope.set(scope);
+        return scope;
+    }
+
+    /**
+     * Starts a bulk scope on the calling thread that helps with scope, a
+     * scope opened on another thread: until it is closed, the calling
+     * thread's events are counted, and closing it adds the counts to scope
+     * instead of logging a summary. Any number of threads may join a scope,
+     * as long as the thread that opened it logs nothing until the joined
+     * scopes are closed, and they are closed before it is.
+     * @param scope  the open scope to count events for
+     * @return  the open joined scope
+     */
+    public BulkEventScope joinBulkScope(BulkEventScope scope) {
+        BulkEventScope joined = new BulkEventScope(this, bulkScope.get(), scope);
+        bulkScope.set(joined);
+        return joined;
+    }
+
+    /**
+     * Ends a bulk scope, making its outer scope (if any) current again.
+     */
+    void endBulkScope(BulkEventScope scope) {
+        if (scope.getOuter() == null) {
+            bulkScope.remove();
+        } else {
+            bulkScope.set(scope.getOuter());
         }
-		
-    	return theLog;
     }
-	
-	/**
-	 * Adds an event to the event log.
-	 * @param e the event to be added
-	 */
+
+    /**
+     * Adds an event to the event log, unless a bulk scope is open on the
+     * calling thread or the event does not pass the filters.
+     * @param e the event to be added
+     */
     public void logEvent(Event e) {
-    	events.add(e);
+        BulkEventScope scope = bulkScope.get();
+        if (scope != null) {
+            scope.count(e.getType());
+        } else if (isLoggable(e.getType())) {
+            append(e);
+        }
+    }
+
+    /**
+     * Logs an event of the given type like logEvent, but only creates it
+     * if it is going to be kept.
+     */
+    void log(EventType type, int amount, Object subject, Object detail) {
+        BulkEventScope scope = bulkScope.get();
+        if (scope != null) {
+            scope.count(type);
+        } else if (isLoggable(type)) {
+            append(new Event(type, amount, subject, detail));
+        }
+    }
+
+    /**
+     * Registers a sink to be handed every event the log keeps from now on.
+     * @param sink  the sink to add
+     */
+    public void addSink(EventSink sink) {
+        sinks.add(sink);
+    }
+
+    /**
+     * Stops handing events to a sink.
+     * @param sink  the sink to remove
+     */
+    public void removeSink(EventSink sink) {
+        sinks.remove(sink);
     }
-	
-	/**
-	 * Clears the event log and logs the event.
-	 */
+
+    /**
+     * Adds an event to the ring buffer, spilling the event it replaces
+     * if the log is configured to, and hands it to the sinks.
+     */
+    private void append(Event e) {
+        Event replaced = ring.add(e);
+        if (replaced != null && overflow == EventOverflow.SPILL_TO_DISK) {
+            spill(replaced);
+        }
+        for (EventSink sink : sinks) {
+            sink.accept(e);
+        }
+    }
+
+    /**
+     * Clears the event log and logs the event.
+     */
     public void clear() {
-    	events.clear();
-    	logEvent(new Event("Event log cleared."));
+        synchronized (this) {
+            closeSpill();
+            deleteSpill();
+            ring = new Ring(ring.capacity());
+        }
+        append(new Event(EventType.LOG_CLEARED, 0, null, null));
     }
-	
+
+    /**
+     * Returns an iterator over a copy of the events logged so far, oldest
+     * first: events spilled to disk, then events still in memory. While
+     * other threads log, the copy may miss events that move from memory
+     * to disk as it is taken.
+     */
     @Override
     public Iterator<Event> iterator() {
-    	return events.iterator();
+        List<Event> events = readSpill();
+        ring.copyTo(events);
+        return events.iterator();
+    }
+
+    /**
+     * Gets the events in memory logged in a time range, oldest first.
+     * Events spilled to disk are not included.
+     * @param from  start of the range, inclusive
+     * @param to  end of the range, exclusive
+     * @return  the events logged from from until to
+     */
+    public List<Event> getEvents(Date from, Date to) {
+        return ring.find(null, from.getTime(), to.getTime());
+    }
+
+    /**
+     * Gets the events in memory about an inventory logged in a time range,
+     * oldest first: inventory events and changes to its pieces' quantities.
+     * Events spilled to disk are not included.
+     * @param name  the name of the inventory
+     * @param from  start of the range, inclusive
+     * @param to  end of the range, exclusive
+     * @return  the inventory's events logged from from until to
+     */
+    public List<Event> getInventoryEvents(String name, Date from, Date to) {
+        return ring.find(name, from.getTime(), to.getTime());
+    }
+
+    /**
+     * Gets the events in memory about a build logged in a time range,
+     * oldest first. Events spilled to disk are not included.
+     * @param buildId  the id of the build
+     * @param from  start of the range, inclusive
+     * @param to  end of the range, exclusive
+     * @return  the build's events logged from from until to
+     */
+    public List<Event> getBuildEvents(int buildId, Date from, Date to) {
+        return ring.find(buildId, from.getTime(), to.getTime());
+    }
+
+    /**
+     * Appends an event replaced in the ring buffer to the spill file.
+     * Spilled events are dropped if the file cannot be written.
+     */
+    private synchronized void spill(Event e) {
+        try {
+            if (spillWriter == null) {
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            spillWriter.write(Long.toString(e.getDate().getTime()));
+            spillWriter.write('\t');
+            spillWriter.write(escape(e.getDescription()));
+            spillWriter.write('\n');
+        } catch (IOException ex) {
+            closeSpill();
+        }
+    }
+
+    /**
+     * Reads back the events spilled to disk so far, oldest first.
+     */
+    private synchronized List<Event> readSpill() {
+        List<Event> events = new ArrayList<>();
+        if (spillFile == null || !Files.exists(spillFile)) {
+            return events;
+        }
+        try {
+            if (spillWriter != null) {
+                spillWriter.flush();
+            }
+            try (BufferedReader reader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    int tab = line.indexOf('\t');
+                    events.add(new Event(new Date(Long.parseLong(line.substring(0, tab))),
+                            unescape(line.substring(tab + 1))));
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return events;
+    }
+
+    /**
+     * Closes the spill file, if it is open.
+     */
+    private synchronized void closeSpill() {
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException ex) {
+                // nothing more can be lost by ignoring this
+            }
+            spillWriter = null;
+        }
+    }
+
+    /**
+     * Deletes the spill file, if there is one.
+     */
+    private synchronized void deleteSpill() {
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the description with backslashes, tabs and line breaks escaped,
+     * so that it fits on one line of the spill file.
+     */
+    private static String escape(String description) {
+        return description.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /**
+     * Reverses escape.
+     */
+    private static String unescape(String line) {
+        StringBuilder description = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                c = next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next;
+            }
+            description.append(c);
+        }
+        return description.toString();
+    }
+
+    /**
+     * Represents an event together with the position it was logged at.
+     */
+    private static final class Entry {
+        final long sequence;
+        final Event event;
+
+        Entry(long sequence, Event event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+    /**
+     * Represents a fixed-size ring buffer of events. A writer claims the
+     * next position with an atomic increment and publishes its entry with
+     * a compare-and-set, so writers never block one another and a stalled
+     * writer can never overwrite a newer entry.
+     *
+     * Queries bring the time and subject indexes up to date, under the
+     * index lock, with the entries published since the last query. Index
+     * positions that have since been overwritten are dropped from the
+     * results, and evicted from the indexes as they are searched.
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<Entry> slots;
+        private final int mask;
+        private final AtomicLong next = new AtomicLong();
+        private final Object indexLock = new Object();
+        private final EventIndex byTime = new EventIndex(); // guarded by indexLock
+        private final Map<Object, EventIndex> bySubject = new HashMap<>(); // guarded by indexLock
+        private long indexed; // first position not yet indexed, guarded by indexLock
+        private long swept; // indexed when empty subjects were last removed, guarded by indexLock
+
+        Ring(int capacity) {
+            if (capacity < 1 || capacity > 1 << 30) {
+                throw new IllegalArgumentException("Capacity out of range: " + capacity);
+            }
+            int size = Integer.highestOneBit(capacity);
+            if (size < capacity) {
+                size <<= 1;
+            }
+            slots = new AtomicReferenceArray<>(size);
+            mask = size - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        /**
+         * Adds an event and returns the event it replaced, or null.
+         */
+        Event add(Event event) {
+            long sequence = next.getAndIncrement();
+            int index = (int) (sequence & mask);
+            Entry entry = new Entry(sequence, event);
+            while (true) {
+                Entry current = slots.get(index);
+                if (current != null && current.sequence > sequence) {
+                    return event;
+                }
+                if (slots.compareAndSet(index, current, entry)) {
+                    return current == null ? null : current.event;
+                }
+            }
+        }
+
+        /**
+         * Returns the events in the buffer about subject (or all events, if
+         * subject is null) stamped from from until to, oldest first.
+         */
+        List<Event> find(Object subject, long from, long to) {
+            List<Event> events = new ArrayList<>();
+            if (from >= to) {
+                return events;
+            }
+            synchronized (indexLock) {
+                long oldest = catchUp();
+                EventIndex index = subject == null ? byTime : bySubject.get(subject);
+                if (index == null) {
+                    return events;
+                }
+                index.evictBefore(oldest);
+                for (long sequence : index.find(from, to)) {
+                    Entry entry = slots.get((int) (sequence & mask));
+                    if (entry != null && entry.sequence == sequence) {
+                        events.add(entry.event);
+                    }
+                }
+            }
+            return events;
+        }
+
+        /**
+         * Indexes the entries published since the last call, stopping at the
+         * first position whose writer has not published yet, and returns the
+         * oldest position still in the buffer.
+         */
+        private long catchUp() {
+            long end = next.get();
+            long oldest = Math.max(0, end - capacity());
+            long sequence = Math.max(indexed, oldest);
+            for (; sequence < end; sequence++) {
+                Entry entry = slots.get((int) (sequence & mask));
+                if (entry == null || entry.sequence < sequence) {
+                    break;
+                }
+                if (entry.sequence == sequence) {
+                    long time = entry.event.getTimestamp();
+                    byTime.add(sequence, time);
+                    Object subject = entry.event.getSubjectKey();
+                    if (subject != null) {
+                        bySubject.computeIfAbsent(subject, s -> new EventIndex()).add(sequence, time);
+                    }
+                }
+            }
+            indexed = sequence;
+            byTime.evictBefore(oldest);
+            if (indexed - swept >= capacity()) {
+                bySubject.values().removeIf(index -> {
+                    index.evictBefore(oldest);
+                    return index.isEmpty();
+                });
+                swept = indexed;
+            }
+            return oldest;
+        }
+
+        /**
+         * Adds the events in the buffer to events, oldest first.
+         */
+        void copyTo(List<Event> events) {
+            long end = next.get();
+            for (long sequence = Math.max(0, end - capacity()); sequence < end; sequence++) {
+                Entry entry = slots.get((int) (sequence & mask));
+                if (entry != null && entry.sequence == sequence) {
+                    events.add(entry.event);
+                }
+            }
+        }
     }
 }
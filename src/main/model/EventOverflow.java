@@ -0,0 +1,9 @@
+package model;
+
+/*
+ * Represents what the EventLog does with its oldest event once it is full.
+ */
+public enum EventOverflow {
+    OVERWRITE_OLDEST, // drop the oldest event (default)
+    SPILL_TO_DISK     // append the oldest event to a spill file, where readers still find it
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package model;
+
+/*
+ * Represents a destination that the EventLog hands every kept event to, such as a log file.
+ */
+public interface EventSink {
+
+    /*
+     * Requires: event must not be null.
+     * Effects: Takes the event. Called on the thread that logged it, often from inside a model
+     *          mutator, so it must return quickly and never wait on I/O.
+     */
+    void accept(Event event);
+}
\ No newline at end of file
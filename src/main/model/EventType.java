@@ -0,0 +1,84 @@
+package model;
+
+/*
+ * Represents the kinds of events the model logs, each with the template its description is
+ * rendered from. In a template, {0} stands for the event's amount, {1} for its subject and {2}
+ * for its detail; a LegoPiece argument is written as "color partType (dimensions)".
+ */
+public enum EventType {
+    MESSAGE(EventCategory.SYSTEM, EventLevel.INFO, "{1}"),
+    INVENTORY_PIECE_ADDED(EventCategory.INVENTORY, EventLevel.INFO, "Added {0}x {1} to inventory {2}"),
+    INVENTORY_PIECE_REMOVED(EventCategory.INVENTORY, EventLevel.INFO, "Removed {0}x {1} from inventory {2}"),
+    BUILD_PIECE_ADDED(EventCategory.BUILD, EventLevel.INFO, "Added {0}x {1} to build {2}"),
+    QUANTITY_SET(EventCategory.PIECE, EventLevel.INFO, "Set {0}x as quantity for {1}  piece in inventory."),
+    QUANTITY_ADDED(EventCategory.PIECE, EventLevel.INFO, "Added {0}x {1} to inventory."),
+    QUANTITY_REMOVED(EventCategory.PIECE, EventLevel.INFO, "Removed {0}x {1} from inventory."),
+    INVENTORY_ADDED(EventCategory.INVENTORY, EventLevel.INFO, "Added inventory: {1} to {2}'s list of inventories."),
+    BUILD_ADDED(EventCategory.BUILD, EventLevel.INFO, "Added build: {0} to {2}'s list of builds."),
+    LOG_CLEARED(EventCategory.SYSTEM, EventLevel.INFO, "Event log cleared."),
+    BULK_SUMMARY(EventCategory.SYSTEM, EventLevel.INFO, "{1}");
+
+    private final EventCategory category; // part of the model events of this type are about
+    private final EventLevel level; // importance of events of this type
+    private final String template; // description with {0}, {1} and {2} placeholders
+
+    EventType(EventCategory category, EventLevel level, String template) {
+        this.category = category;
+        this.level = level;
+        this.template = template;
+    }
+
+    /*
+     * Returns the part of the model events of this type are about.
+     */
+    public EventCategory getCategory() {
+        return category;
+    }
+
+    /*
+     * Returns how important events of this type are.
+     */
+    public EventLevel getLevel() {
+        return level;
+    }
+
+    /*
+     * Returns the template descriptions of this type are rendered from.
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /*
+     * Effects: Returns the template with its placeholders replaced by the given arguments.
+     */
+    String render(int amount, Object subject, Object detail) {
+        StringBuilder description = new StringBuilder(template.length() + 32);
+        int start = 0;
+        for (int open = template.indexOf('{'); open >= 0; open = template.indexOf('{', start)) {
+            description.append(template, start, open);
+            char index = template.charAt(open + 1);
+            if (index == '0') {
+                description.append(amount);
+            } else {
+                append(description, index == '1' ? subject : detail);
+            }
+            start = open + 3;
+        }
+        return description.append(template, start, template.length()).toString();
+    }
+
+    /*
+     * Modifies: description
+     * Effects: Appends the display form of an argument.
+     */
+    private static void append(StringBuilder description, Object argument) {
+        if (argument instanceof LegoPiece) {
+            LegoPiece piece = (LegoPiece) argument;
+            description.append(piece.getColor()).append(' ').append(piece.getPartType())
+                    .append(" (").append(piece.getDimensions()).append(')');
+        } else {
+            description.append(argument);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package model;
+
+import java.util.Arrays;
+
+/*
+ * Represents piece records kept in four growable int arrays on the Java heap.
+ */
+final class HeapPieceRecords implements PieceRecords {
+    private int[] partTypeIds; // part type id of each row
+    private int[] colorIds; // color id of each row
+    private int[] dimensionIds; // dimensions id of each row
+    private int[] quantities; // quantity of each row
+
+    /*
+     * Requires: capacity > 0
+     * Effects: Initializes records with room for capacity rows.
+     */
+    HeapPieceRecords(int capacity) {
+        this.partTypeIds = new int[capacity];
+        this.colorIds = new int[capacity];
+        this.dimensionIds = new int[capacity];
+        this.quantities = new int[capacity];
+    }
+
+    @Override
+    public int capacity() {
+        return quantities.length;
+    }
+
+    @Override
+    public void grow(int capacity) {
+        partTypeIds = Arrays.copyOf(partTypeIds, capacity);
+        colorIds = Arrays.copyOf(colorIds, capacity);
+        dimensionIds = Arrays.copyOf(dimensionIds, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+    }
+
+    @Override
+    public int partType(int row) {
+        return partTypeIds[row];
+    }
+
+    @Override
+    public int color(int row) {
+        return colorIds[row];
+    }
+
+    @Override
+    public int dimensions(int row) {
+        return dimensionIds[row];
+    }
+
+    @Override
+    public int quantity(int row) {
+        return quantities[row];
+    }
+
+    @Override
+    public void set(int row, int partType, int color, int dimensions, int quantity) {
+        partTypeIds[row] = partType;
+        colorIds[row] = color;
+        dimensionIds[row] = dimensions;
+        quantities[row] = quantity;
+    }
+
+    @Override
+    public void setQuantity(int row, int quantity) {
+        quantities[row] = quantity;
+    }
+}
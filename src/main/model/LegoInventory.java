@@ -4,9 +4,19 @@ package model;
  * Represents a Lego part inventory.
  * 
  * Stores a collection of Lego pieces with a nam of the collection and total number of pieces.
+ * Changes to the inventory and to the quantity of its pieces are made under the inventory's own
+ * lock, so different threads can update different inventories at the same time.
  */
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -14,8 +24,30 @@ import org.json.JSONObject;
 import persistence.Writable;
 
 public class LegoInventory implements Writable {
+    private static final AtomicLong NEXT_LOCK_ORDER = new AtomicLong();
+
     private String collectionName;  // name of collection of LegoPiece
-    private List<LegoPiece> pieceList; // List of Lego pieces in inventory
+    private final PieceStorage storage; // how the pieces are stored
+    private final PieceStore store; // Lego pieces in inventory, indexed by key
+    private volatile MasterBuilder owner; // builder told about changes in available pieces, or null
+    private final PieceObserver pieceObserver = new PieceObserver() {
+        @Override
+        public void applyChange(LegoPiece piece, IntUnaryOperator change) {
+            LegoInventory.this.applyChange(piece, change);
+        }
+
+        @Override
+        public String getName() {
+            return collectionName;
+        }
+    };
+    private final ReentrantLock lock = new ReentrantLock(); // guards the store and the totals
+    private final long lockOrder = NEXT_LOCK_ORDER.getAndIncrement(); // position when locking several
+    private volatile int totalPieces; // running total of the quantities of all pieces
+    private volatile long changeCount; // number of changes made so far, raised under the lock
+    private volatile boolean totalsKnown = true; // false until the totals of a paged inventory are worked out
+    private final Map<String, Integer> colorCounts = new ConcurrentHashMap<>(); // quantity per canonical color
+    private final Map<String, Integer> partTypeCounts = new ConcurrentHashMap<>(); // quantity per canonical type
 
     /*
      * Requires: collectionName must not be null or empty.
@@ -23,8 +55,121 @@ public class LegoInventory implements Writable {
      * Effects: Initializes an empty Lego inventory with the given name.
      */
     public LegoInventory(String collectionName) {
+        this(collectionName, PieceStorage.LIST);
+    }
+
+    /*
+     * Requires: collectionName must not be null or empty, storage must not be null.
+     * Modifies: this
+     * Effects: Initializes an empty Lego inventory with the given name that stores its pieces
+     *          the given way. With COLUMNAR or OFF_HEAP storage, pieces with equal keys are merged
+     *          when added and the inventory hands out views of its pieces rather than the pieces added.
+     */
+    public LegoInventory(String collectionName, PieceStorage storage) {
+        this.collectionName = collectionName;
+        this.storage = storage;
+        this.store = createStore(storage);
+    }
+
+    /*
+     * Requires: collectionName must not be null or empty; storage is COLUMNAR or OFF_HEAP;
+     *           records holds count 16-byte records from its position on, each the dictionary
+     *           indexes of a piece's part type, color and dimensions followed by its quantity,
+     *           in the buffer's byte order, with no two records for equal keys.
+     * Effects: Returns an inventory with the given name holding the pieces in records. The
+     *          records are read in place until the inventory first changes, when they are copied
+     *          into storage of the given kind; only the totals are worked out now. Throws
+     *          IllegalArgumentException if a record's index is not in dictionary.
+     */
+    public static LegoInventory fromRecords(String collectionName, PieceStorage storage, ByteBuffer records,
+                                            int count, PieceDictionary dictionary) {
+        return new LegoInventory(collectionName, storage, new MappedPieceRecords(records, count, dictionary, storage),
+                count);
+    }
+
+    /*
+     * Requires: collectionName must not be null or empty, source must not be null.
+     * Effects: Returns a columnar inventory with the given name whose pieces are read from source
+     *          the first time they or the totals are needed. While the pieces are unchanged and
+     *          none of them is in use, they may be dropped from memory when it runs short, to be
+     *          read again on the next access; once changed they are kept. Pieces with equal keys
+     *          are merged as they are read.
+     */
+    public static LegoInventory paged(String collectionName, PieceSource source) {
+        return new LegoInventory(collectionName, source);
+    }
+
+    /*
+     * Effects: Initializes a paged inventory reading its pieces from source.
+     */
+    private LegoInventory(String collectionName, PieceSource source) {
         this.collectionName = collectionName;
-        this.pieceList = new ArrayList<>();
+        this.storage = PieceStorage.COLUMNAR;
+        this.store = new PagedPieceStore(source, pieceObserver);
+        this.totalsKnown = false;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Reads the pieces of a paged inventory from its source if they are not in memory
+     *          and keeps them in memory from then on, so the source is no longer needed; throws
+     *          UncheckedIOException if the source cannot be read. Does nothing for an inventory
+     *          that is not paged.
+     */
+    public void detachSource() {
+        if (store instanceof PagedPieceStore) {
+            lock.lock();
+            try {
+                ((PagedPieceStore) store).detach();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * Requires: the first count rows of records hold pieces with distinct keys.
+     * Effects: Initializes an inventory over those rows, working out its totals from them.
+     */
+    private LegoInventory(String collectionName, PieceStorage storage, PieceRecords records, int count) {
+        this.collectionName = collectionName;
+        this.storage = storage;
+        ColumnarPieceStore columnar = new ColumnarPieceStore(pieceObserver, records, count);
+        this.store = columnar;
+        int[] partTypeTotals = new int[ColumnarPieceStore.PART_TYPES.size()];
+        int[] colorTotals = new int[ColumnarPieceStore.COLORS.size()];
+        try {
+            columnar.addTotals(partTypeTotals, colorTotals);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Piece record refers to an index not in the dictionary", e);
+        }
+        int total = 0;
+        for (int id = 0; id < colorTotals.length; id++) {
+            total += colorTotals[id];
+            if (colorTotals[id] != 0) {
+                colorCounts.put(ColumnarPieceStore.COLORS.get(id), colorTotals[id]);
+            }
+        }
+        for (int id = 0; id < partTypeTotals.length; id++) {
+            if (partTypeTotals[id] != 0) {
+                partTypeCounts.put(ColumnarPieceStore.PART_TYPES.get(id), partTypeTotals[id]);
+            }
+        }
+        this.totalPieces = total;
+    }
+
+    /*
+     * Effects: Returns an empty store of the given kind whose pieces report to this inventory.
+     */
+    private PieceStore createStore(PieceStorage storage) {
+        switch (storage) {
+            case COLUMNAR:
+                return new ColumnarPieceStore(pieceObserver);
+            case OFF_HEAP:
+                return new ColumnarPieceStore(pieceObserver, new OffHeapPieceRecords(1024));
+            default:
+                return new ListPieceStore();
+        }
     }
 
     /*
@@ -34,15 +179,63 @@ public class LegoInventory implements Writable {
         return collectionName;
     }
 
+    /*
+     * Returns the number of changes made to this inventory's pieces so far. A copy saved while it
+     * had a given count is still up to date as long as the count is the same.
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /*
+     * Returns how this inventory stores its pieces.
+     */
+    public PieceStorage getStorage() {
+        return storage;
+    }
+
     /*
      * Returns the total number of pieces in the inventory.
      */
     public int getTotalPieces() {
-        int total = 0;
-        for (LegoPiece piece : pieceList) {
-            total += piece.getQuantity();
-        }
-        return total;
+        ensureTotals();
+        return totalPieces;
+    }
+
+    /*
+     * Requires: color must not be null.
+     * Effects: Returns the total quantity of pieces of the given color, ignoring case.
+     */
+    public int getColorCount(String color) {
+        ensureTotals();
+        return colorCounts.getOrDefault(PieceKey.normalize(color), 0);
+    }
+
+    /*
+     * Requires: partType must not be null.
+     * Effects: Returns the total quantity of pieces of the given part type, ignoring case.
+     */
+    public int getPartTypeCount(String partType) {
+        ensureTotals();
+        return partTypeCounts.getOrDefault(PieceKey.normalize(partType), 0);
+    }
+
+    /*
+     * Returns an unmodifiable, live view of the total quantity of each color in the inventory,
+     * keyed by canonical (lower case) color. Colors with no pieces are left out.
+     */
+    public Map<String, Integer> getColorCounts() {
+        ensureTotals();
+        return Collections.unmodifiableMap(colorCounts);
+    }
+
+    /*
+     * Returns an unmodifiable, live view of the total quantity of each part type in the
+     * inventory, keyed by canonical (lower case) part type. Part types with no pieces are left out.
+     */
+    public Map<String, Integer> getPartTypeCounts() {
+        ensureTotals();
+        return Collections.unmodifiableMap(partTypeCounts);
     }
 
     /*
@@ -51,11 +244,24 @@ public class LegoInventory implements Writable {
      * Effects: Adds a Lego piece to the inventory.
      */
     public void addPiece(LegoPiece piece) {
-        pieceList.add(piece);
-        
-        EventLog.getInstance().logEvent(new Event("Added " + piece.getQuantity() + "x " + piece.getColor()
-                + " " + piece.getPartType() + " (" + piece.getDimensions() + ") to inventory "
-                + this.collectionName));
+        MasterBuilder builder = owner;
+        MutationListener listener = beginChange(builder);
+        lock.lock();
+        try {
+            ensureTotals();
+            store.add(piece).setObserver(pieceObserver);
+            changeCount++;
+            quantityChanged(piece.getKey(), piece.getQuantity());
+            if (listener != null) {
+                listener.pieceAdded(collectionName, piece);
+            }
+        } finally {
+            lock.unlock();
+            endChange(builder, listener);
+        }
+
+        EventLog.getInstance().log(EventType.INVENTORY_PIECE_ADDED, piece.getQuantity(), piece,
+                this.collectionName);
     }
 
     /*
@@ -64,18 +270,358 @@ public class LegoInventory implements Writable {
      * Effects: Removes a Lego piece from the inventory.
      */
     public void removePiece(LegoPiece piece) {
-        pieceList.remove(piece);
+        int removed;
+        MasterBuilder builder = owner;
+        MutationListener listener = beginChange(builder);
+        lock.lock();
+        try {
+            ensureTotals();
+            removed = store.remove(piece);
+            if (removed >= 0) {
+                changeCount++;
+                detach(piece, removed);
+                if (listener != null) {
+                    listener.pieceRemoved(collectionName, piece, removed);
+                }
+            }
+        } finally {
+            lock.unlock();
+            endChange(builder, listener);
+        }
+        logRemoved(piece, removed >= 0 ? removed : piece.getQuantity());
+    }
+
+    /*
+     * Requires: pieces must not be null.
+     * Modifies: this
+     * Effects: Removes all of the given Lego pieces from the inventory in a single pass over it.
+     *          Pieces that are not in the inventory are ignored.
+     */
+    public void removePieces(Collection<LegoPiece> pieces) {
+        Map<LegoPiece, Integer> removed;
+        MasterBuilder builder = owner;
+        MutationListener listener = beginChange(builder);
+        lock.lock();
+        try {
+            ensureTotals();
+            removed = store.removeAll(pieces);
+            if (!removed.isEmpty()) {
+                changeCount++;
+            }
+            for (Map.Entry<LegoPiece, Integer> piece : removed.entrySet()) {
+                detach(piece.getKey(), piece.getValue());
+                if (listener != null) {
+                    listener.pieceRemoved(collectionName, piece.getKey(), piece.getValue());
+                }
+            }
+        } finally {
+            lock.unlock();
+            endChange(builder, listener);
+        }
+        for (Map.Entry<LegoPiece, Integer> piece : removed.entrySet()) {
+            logRemoved(piece.getKey(), piece.getValue());
+        }
+    }
+
+    /*
+     * Requires: piece was just taken out of the store holding quantity.
+     * Modifies: this, piece
+     * Effects: Stops observing piece and takes its quantity off this inventory's and the owner's totals.
+     */
+    private void detach(LegoPiece piece, int quantity) {
+        if (piece.getObserver() == pieceObserver) {
+            piece.setObserver(null);
+        }
+        quantityChanged(piece.getKey(), -quantity);
+    }
+
+    /*
+     * Effects: Logs that quantity of piece were removed from this inventory.
+     */
+    private void logRemoved(LegoPiece piece, int quantity) {
+        EventLog.getInstance().log(EventType.INVENTORY_PIECE_REMOVED, quantity, piece,
+                this.collectionName);
+    }
+
+    /*
+     * Requires: amount >= 0, emptied must not be null.
+     * Modifies: this, emptied
+     * Effects: Takes up to amount pieces with the given key out of this inventory by lowering the
+     *          quantity of matching pieces, and returns how many were taken. Pieces that reach a
+     *          quantity of zero are added to emptied and left in the inventory for the caller to
+     *          remove in one batch with removePieces.
+     */
+    int takePieces(PieceKey key, int amount, List<LegoPiece> emptied) {
+        lock.lock();
+        try {
+            int remaining = amount;
+            for (LegoPiece piece : store.findAll(key)) {
+                remaining = takeFrom(piece, remaining, emptied);
+            }
+            return amount - remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Modifies: piece, emptied
+     * Effects: Lowers the quantity of piece by up to amount, adding it to emptied
+     *          if it reaches zero. Returns how much of amount is still to be taken.
+     */
+    private int takeFrom(LegoPiece piece, int amount, List<LegoPiece> emptied) {
+        if (amount == 0 || piece.getQuantity() == 0) {
+            return amount;
+        }
+        int used = Math.min(piece.getQuantity(), amount);
+        piece.setQuantity(piece.getQuantity() - used);
+        if (piece.getQuantity() == 0) {
+            emptied.add(piece);
+        }
+        return amount - used;
+    }
+
+    /*
+     * Requires: piece must not be null.
+     * Modifies: this
+     * Effects: If a piece with the same key is already in the inventory, adds the given piece's
+     *          quantity to it and returns the existing piece. Otherwise adds the given piece and
+     *          returns the piece that now holds it in the inventory.
+     */
+    public LegoPiece addOrMerge(LegoPiece piece) {
+        MasterBuilder builder = owner;
+        MutationListener listener = beginChange(builder);
+        lock.lock();
+        try {
+            LegoPiece existing = store.find(piece.getKey());
+            if (existing == null) {
+                addPiece(piece);
+                return findPiece(piece.getKey());
+            }
+            existing.addQuantity(piece.getQuantity());
+            return existing;
+        } finally {
+            lock.unlock();
+            endChange(builder, listener);
+        }
+    }
+
+    /*
+     * Requires: pieces must not be null.
+     * Modifies: this
+     * Effects: Merges a batch of pieces into the inventory under one hold of the lock: each piece
+     *          whose key matches a piece already here adds its quantity to that piece, and any
+     *          other piece is added, so later pieces of the batch can merge into earlier ones.
+     *          Logs one event per piece of the batch, like addPiece.
+     */
+    public void mergePieces(Collection<LegoPiece> pieces) {
+        MasterBuilder builder = owner;
+        MutationListener listener = beginChange(builder);
+        lock.lock();
+        try {
+            ensureTotals();
+            for (LegoPiece piece : pieces) {
+                int quantity = piece.getQuantity();
+                LegoPiece existing = store.find(piece.getKey());
+                if (existing == null) {
+                    store.add(piece).setObserver(pieceObserver);
+                    quantityChanged(piece.getKey(), quantity);
+                    if (listener != null) {
+                        listener.pieceAdded(collectionName, piece);
+                    }
+                } else {
+                    int delta = existing.applyQuantity(current -> current + quantity);
+                    store.quantityChanged();
+                    quantityChanged(piece.getKey(), delta);
+                    if (listener != null && delta != 0) {
+                        int after = existing.getQuantity();
+                        listener.quantityChanged(collectionName, existing, after - delta, after);
+                    }
+                }
+            }
+            if (!pieces.isEmpty()) {
+                changeCount++;
+            }
+        } finally {
+            lock.unlock();
+            endChange(builder, listener);
+        }
+
+        for (LegoPiece piece : pieces) {
+            EventLog.getInstance().log(EventType.INVENTORY_PIECE_ADDED, piece.getQuantity(), piece,
+                    this.collectionName);
+        }
+    }
+
+    /*
+     * Requires: key must not be null.
+     * Effects: Returns the piece in this inventory with the given key, or null if there is none.
+     */
+    public LegoPiece findPiece(PieceKey key) {
+        lock.lock();
+        try {
+            return store.find(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Sets the builder to be told about changes in available pieces (null for none).
+     */
+    void setOwner(MasterBuilder owner) {
+        this.owner = owner;
+    }
 
-        EventLog.getInstance().logEvent(new Event("Removed " + piece.getQuantity() + "x " + piece.getColor()
-                + " " + piece.getPartType() + " (" + piece.getDimensions() + ") from inventory "
-                + this.collectionName));
+    /*
+     * Modifies: this
+     * Effects: Waits for and takes this inventory's lock. While a thread holds it, no other thread
+     *          can change the inventory or the quantity of its pieces. The lock is reentrant.
+     */
+    void lock() {
+        lock.lock();
     }
 
     /*
-     * Returns the list of Lego pieces in the inventory.
+     * Requires: the current thread holds this inventory's lock.
+     * Modifies: this
+     * Effects: Releases one hold of this inventory's lock.
+     */
+    void unlock() {
+        lock.unlock();
+    }
+
+    /*
+     * Returns the position of this inventory in the global lock order. Code locking several
+     * inventories locks them in increasing order so that it cannot deadlock.
+     */
+    long getLockOrder() {
+        return lockOrder;
+    }
+
+    /*
+     * Modifies: this, piece
+     * Effects: Applies a change to the quantity of one of this inventory's pieces under the lock,
+     *          and records the difference unless the piece has left the inventory meanwhile.
+     */
+    private void applyChange(LegoPiece piece, IntUnaryOperator change) {
+        MasterBuilder builder = owner;
+        MutationListener listener = beginChange(builder);
+        lock.lock();
+        try {
+            ensureTotals();
+            int delta = piece.applyQuantity(change);
+            if (piece.getObserver() == pieceObserver) {
+                store.quantityChanged();
+                changeCount++;
+                quantityChanged(piece.getKey(), delta);
+                if (listener != null && delta != 0) {
+                    int after = piece.getQuantity();
+                    listener.quantityChanged(collectionName, piece, after - delta, after);
+                }
+            }
+        } finally {
+            lock.unlock();
+            endChange(builder, listener);
+        }
+    }
+
+    /*
+     * Effects: Starts a change reported to builder's mutation listener and returns the listener,
+     *          or returns null if there is no builder or listener. Must be called before taking the lock.
+     */
+    private static MutationListener beginChange(MasterBuilder builder) {
+        return builder == null ? null : builder.beginChange();
+    }
+
+    /*
+     * Effects: Ends a change started by beginChange(builder), which returned listener.
+     */
+    private static void endChange(MasterBuilder builder, MutationListener listener) {
+        if (listener != null) {
+            builder.endChange(listener);
+        }
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Works out the totals of a paged inventory from its pieces the first time they are
+     *          needed; does nothing once they are known.
+     */
+    private void ensureTotals() {
+        if (totalsKnown) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!totalsKnown) {
+                for (LegoPiece piece : store.pieces()) {
+                    int quantity = piece.getQuantity();
+                    totalPieces += quantity;
+                    adjustCount(colorCounts, piece.getKey().getColor(), quantity);
+                    adjustCount(partTypeCounts, piece.getKey().getPartType(), quantity);
+                }
+                totalsKnown = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Requires: the current thread holds the lock.
+     * Modifies: this
+     * Effects: Adds delta to the running totals for key and tells the owning builder, if any,
+     *          that the available quantity of key changed by delta.
+     */
+    private void quantityChanged(PieceKey key, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        totalPieces += delta;
+        adjustCount(colorCounts, key.getColor(), delta);
+        adjustCount(partTypeCounts, key.getPartType(), delta);
+        if (owner != null) {
+            owner.availabilityChanged(key, delta);
+        }
+    }
+
+    /*
+     * Modifies: counts
+     * Effects: Adds delta to the count of attribute, dropping the entry when it reaches zero.
+     */
+    private static void adjustCount(Map<String, Integer> counts, String attribute, int delta) {
+        int count = counts.getOrDefault(attribute, 0) + delta;
+        if (count == 0) {
+            counts.remove(attribute);
+        } else {
+            counts.put(attribute, count);
+        }
+    }
+
+    /*
+     * Returns an unmodifiable view of the Lego pieces in the inventory.
+     * Use addPiece, addOrMerge and removePiece to change the inventory. The view is not safe to
+     * iterate while another thread changes the inventory; hold lock() around it in that case.
      */
     public List<LegoPiece> getPieces() {
-        return pieceList;
+        return store.pieces();
+    }
+
+    /*
+     * Requires: action must not change this inventory.
+     * Effects: Calls action on each piece in the inventory, in order, while holding the lock.
+     */
+    public void forEachPiece(Consumer<LegoPiece> action) {
+        lock.lock();
+        try {
+            for (LegoPiece piece : store.pieces()) {
+                action.accept(piece);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /*
@@ -93,8 +639,13 @@ public class LegoInventory implements Writable {
      */
     private JSONArray piecesToJson() {
         JSONArray jsonArray = new JSONArray();
-        for (LegoPiece piece : pieceList) {
-            jsonArray.put(piece.toJson());
+        lock.lock();
+        try {
+            for (LegoPiece piece : store.pieces()) {
+                jsonArray.put(piece.toJson());
+            }
+        } finally {
+            lock.unlock();
         }
         return jsonArray;
     }
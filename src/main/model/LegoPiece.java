@@ -1,5 +1,8 @@
 package model;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.IntUnaryOperator;
+
 import org.json.JSONObject;
 import persistence.Writable;
 
@@ -10,19 +13,98 @@ public class LegoPiece implements Writable {
     private String partType; // e.g., "Brick", "Slope", "Plate"
     private String color; // e.g., "Red", "Blue", "Transparent"
     private String dimensions; // e.g., "2x4", "1x2"
-    private int quantity; // Number of pieces in inventory
+    private volatile int quantity; // Number of pieces in inventory
+    private final PieceKey key; // case-normalized identity of this piece
+    private volatile PieceObserver observer; // owner that applies quantity changes, or null
+
+    private static final AtomicIntegerFieldUpdater<LegoPiece> QUANTITY =
+            AtomicIntegerFieldUpdater.newUpdater(LegoPiece.class, "quantity");
 
     /*
      * Requires: partType, color, dimensions must not be null or empty.
      *           quantity must be non-negative.
      * Modifies: this
-     * Effects: Initializes a LegoPiece with the given attributes.
+     * Effects: Initializes a LegoPiece with the given attributes. Their spelling is kept for
+     *          display, shared with other pieces spelled the same way.
      */
     public LegoPiece(String partType, String color, String dimensions, int quantity) {
+        this.partType = CanonicalStrings.intern(partType);
+        this.color = CanonicalStrings.intern(color);
+        this.dimensions = CanonicalStrings.intern(dimensions);
+        this.quantity = quantity;
+        this.key = new PieceKey(partType, color, dimensions);
+    }
+
+    /*
+     * Requires: key must match partType, color and dimensions.
+     * Modifies: this
+     * Effects: Initializes a LegoPiece that reuses an existing key, for stores that hand out
+     *          views over their own quantity storage.
+     */
+    LegoPiece(String partType, String color, String dimensions, PieceKey key) {
         this.partType = partType;
         this.color = color;
         this.dimensions = dimensions;
-        this.quantity = quantity;
+        this.key = key;
+    }
+
+    /*
+     * Returns the case-normalized key identifying this kind of piece.
+     */
+    public PieceKey getKey() {
+        return key;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Sets the owner that applies changes to this piece's quantity (null for none).
+     */
+    void setObserver(PieceObserver observer) {
+        this.observer = observer;
+    }
+
+    /*
+     * Returns the owner that applies changes to this piece's quantity, or null if there is none.
+     */
+    PieceObserver getObserver() {
+        return observer;
+    }
+
+    /*
+     * Effects: Returns the name of the owner that applies changes to this piece's quantity, or null.
+     */
+    private String ownerName() {
+        PieceObserver current = observer;
+        return current == null ? null : current.getName();
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Changes the quantity by applying change to it, through the owner if there is one.
+     */
+    private void changeQuantity(IntUnaryOperator change) {
+        PieceObserver current = observer;
+        if (current == null) {
+            applyQuantity(change);
+        } else {
+            current.applyChange(this, change);
+        }
+    }
+
+    /*
+     * Requires: change has no side effects.
+     * Modifies: this
+     * Effects: Atomically replaces the quantity with change applied to it and returns by how much
+     *          the quantity changed.
+     */
+    int applyQuantity(IntUnaryOperator change) {
+        int before;
+        int after;
+        do {
+            before = quantity;
+            after = change.applyAsInt(before);
+        } while (!QUANTITY.compareAndSet(this, before, after));
+        return after - before;
     }
 
     /*
@@ -59,10 +141,9 @@ public class LegoPiece implements Writable {
      * Effects: Sets the quantity of the Lego piece.
      */
     public void setQuantity(int quantity) {
-        this.quantity = quantity;
+        changeQuantity(current -> quantity);
 
-        EventLog.getInstance().logEvent(new Event("Set " + quantity + "x as quantity for " + this.getColor()
-                + " " + this.getPartType() + " (" + this.getDimensions() + ")  piece in inventory."));
+        EventLog.getInstance().log(EventType.QUANTITY_SET, quantity, this, ownerName());
     }
 
     /*
@@ -71,10 +152,9 @@ public class LegoPiece implements Writable {
      * Effects: adds quantity to the existing quantity of the Lego piece.
      */
     public void addQuantity(int quantity) {
-        this.quantity += quantity;
+        changeQuantity(current -> current + quantity);
 
-        EventLog.getInstance().logEvent(new Event("Added " + quantity + "x " + this.getColor()
-                + " " + this.getPartType() + " (" + this.getDimensions() + ") to inventory."));
+        EventLog.getInstance().log(EventType.QUANTITY_ADDED, quantity, this, ownerName());
     }
 
     /*
@@ -85,12 +165,9 @@ public class LegoPiece implements Writable {
      *          else leaves original quantity as is.
      */
     public void removeQuantity(int quantity) {
-        if (this.quantity >= quantity) {
-            this.quantity -= quantity;
-        }
+        changeQuantity(current -> current >= quantity ? current - quantity : current);
 
-        EventLog.getInstance().logEvent(new Event("Removed " + quantity + "x " + this.getColor()
-                + " " + this.getPartType() + " (" + this.getDimensions() + ") from inventory."));
+        EventLog.getInstance().log(EventType.QUANTITY_REMOVED, quantity, this, ownerName());
     }
 
     /*
@@ -101,7 +178,7 @@ public class LegoPiece implements Writable {
         json.put("partType", partType);
         json.put("color", color);
         json.put("dimensions", dimensions);
-        json.put("quantity", quantity);
+        json.put("quantity", getQuantity());
         return json;
     }
 }
@@ -0,0 +1,135 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Represents the default piece storage: the LegoPiece objects themselves in a list,
+ * with a hash index from each key to the first piece that has it.
+ */
+class ListPieceStore implements PieceStore {
+    private List<LegoPiece> pieceList; // stored pieces, in the order they were added
+    private Map<PieceKey, LegoPiece> pieceIndex; // first piece in pieceList with each key
+    private boolean hasDuplicates; // true if pieces with equal keys were ever added
+
+    /*
+     * Effects: Initializes an empty store.
+     */
+    ListPieceStore() {
+        this.pieceList = new ArrayList<>();
+        this.pieceIndex = new HashMap<>();
+    }
+
+    @Override
+    public LegoPiece add(LegoPiece piece) {
+        pieceList.add(piece);
+        if (pieceIndex.putIfAbsent(piece.getKey(), piece) != null) {
+            hasDuplicates = true;
+        }
+        return piece;
+    }
+
+    @Override
+    public int remove(LegoPiece piece) {
+        if (!pieceList.remove(piece)) {
+            return -1;
+        }
+        unindex(piece);
+        reindex(piece.getKey());
+        return piece.getQuantity();
+    }
+
+    @Override
+    public Map<LegoPiece, Integer> removeAll(Collection<LegoPiece> pieces) {
+        Set<LegoPiece> toRemove = new HashSet<>(pieces);
+        List<LegoPiece> kept = new ArrayList<>(pieceList.size());
+        Map<LegoPiece, Integer> removed = new LinkedHashMap<>();
+        for (LegoPiece piece : pieceList) {
+            if (toRemove.contains(piece)) {
+                removed.put(piece, piece.getQuantity());
+            } else {
+                kept.add(piece);
+            }
+        }
+        pieceList = kept;
+
+        for (LegoPiece piece : removed.keySet()) {
+            unindex(piece);
+        }
+        for (LegoPiece piece : removed.keySet()) {
+            reindex(piece.getKey());
+        }
+        return removed;
+    }
+
+    @Override
+    public LegoPiece find(PieceKey key) {
+        return pieceIndex.get(key);
+    }
+
+    @Override
+    public List<LegoPiece> findAll(PieceKey key) {
+        LegoPiece first = pieceIndex.get(key);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        if (!hasDuplicates) {
+            return Collections.singletonList(first);
+        }
+        List<LegoPiece> matches = new ArrayList<>();
+        for (LegoPiece piece : pieceList) {
+            if (piece.getKey().equals(key)) {
+                matches.add(piece);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public List<LegoPiece> pieces() {
+        return Collections.unmodifiableList(pieceList);
+    }
+
+    @Override
+    public int totalQuantity() {
+        int total = 0;
+        for (LegoPiece piece : pieceList) {
+            total += piece.getQuantity();
+        }
+        return total;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Drops piece from the index if the index points at it.
+     */
+    private void unindex(LegoPiece piece) {
+        if (pieceIndex.get(piece.getKey()) == piece) {
+            pieceIndex.remove(piece.getKey());
+        }
+    }
+
+    /*
+     * Modifies: this
+     * Effects: If the index has no piece for key, points it at the first remaining piece with
+     *          that key. Only needed when pieces with equal keys were added.
+     */
+    private void reindex(PieceKey key) {
+        if (!hasDuplicates || pieceIndex.containsKey(key)) {
+            return;
+        }
+        for (LegoPiece other : pieceList) {
+            if (other.getKey().equals(key)) {
+                pieceIndex.put(key, other);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Represents piece records read in place from a buffer holding a saved file's fixed-width
+ * records, usually a read-only mapping of the file. Each 16-byte record holds the dictionary
+ * indexes of its part type, color and dimensions and its quantity, in the buffer's byte order.
+ *
+ * Rows are decoded only when read. The first change of any kind copies every row, translated
+ * to columnar ids, into records of the kind given when the records were made, and from then on
+ * the copy is used and the buffer is let go.
+ */
+final class MappedPieceRecords implements PieceRecords {
+    private static final int PART_TYPE = 0;
+    private static final int COLOR = 4;
+    private static final int DIMENSIONS = 8;
+    private static final int QUANTITY = 12;
+
+    private final PieceStorage storage; // kind of records the rows are copied into
+    private final int count; // number of records in the buffer
+    private ByteBuffer mapped; // the saved records, or null once copied
+    private PieceDictionary dictionary; // meaning of the indexes in mapped, or null once copied
+    private PieceRecords copy; // the rows after the first change, or null
+
+    /*
+     * Requires: mapped holds count records whose indexes are in dictionary, starting at its
+     *           position; storage is COLUMNAR or OFF_HEAP.
+     * Effects: Initializes records reading the given buffer, to be copied into heap records
+     *          (COLUMNAR) or off-heap records (OFF_HEAP) on the first change.
+     */
+    MappedPieceRecords(ByteBuffer mapped, int count, PieceDictionary dictionary, PieceStorage storage) {
+        this.mapped = mapped.slice().order(mapped.order());
+        this.count = count;
+        this.dictionary = dictionary;
+        this.storage = storage;
+    }
+
+    @Override
+    public int capacity() {
+        return copy == null ? count : copy.capacity();
+    }
+
+    @Override
+    public void grow(int capacity) {
+        PieceRecords records = copied(capacity);
+        if (records.capacity() < capacity) {
+            records.grow(capacity);
+        }
+    }
+
+    @Override
+    public int partType(int row) {
+        if (copy != null) {
+            return copy.partType(row);
+        }
+        return dictionary.partTypeId(mapped.getInt(row * OffHeapPieceRecords.RECORD_BYTES + PART_TYPE));
+    }
+
+    @Override
+    public int color(int row) {
+        if (copy != null) {
+            return copy.color(row);
+        }
+        return dictionary.colorId(mapped.getInt(row * OffHeapPieceRecords.RECORD_BYTES + COLOR));
+    }
+
+    @Override
+    public int dimensions(int row) {
+        if (copy != null) {
+            return copy.dimensions(row);
+        }
+        return dictionary.dimensionsId(mapped.getInt(row * OffHeapPieceRecords.RECORD_BYTES + DIMENSIONS));
+    }
+
+    @Override
+    public int quantity(int row) {
+        if (copy != null) {
+            return copy.quantity(row);
+        }
+        return mapped.getInt(row * OffHeapPieceRecords.RECORD_BYTES + QUANTITY);
+    }
+
+    @Override
+    public void set(int row, int partType, int color, int dimensions, int quantity) {
+        copied(count).set(row, partType, color, dimensions, quantity);
+    }
+
+    @Override
+    public void setQuantity(int row, int quantity) {
+        copied(count).setQuantity(row, quantity);
+    }
+
+    @Override
+    public void copy(int from, int to) {
+        copied(count).copy(from, to);
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Returns the copy of the rows, first making one with room for at least capacity
+     *          rows if the rows are still read from the saved records.
+     */
+    private PieceRecords copied(int capacity) {
+        if (copy == null) {
+            int room = Math.max(1, Math.max(capacity, count));
+            PieceRecords records = storage == PieceStorage.OFF_HEAP
+                    ? new OffHeapPieceRecords(room) : new HeapPieceRecords(room);
+            for (int row = 0; row < count; row++) {
+                records.set(row, partType(row), color(row), dimensions(row), quantity(row));
+            }
+            copy = records;
+            mapped = null;
+            dictionary = null;
+        }
+        return copy;
+    }
+}
@@ -1,7 +1,17 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -9,11 +19,38 @@ import persistence.Writable;
 
 /*
  * Represents a MasterBuilder, a user who manages Lego inventories and builds.
+ *
+ * Worker threads may update different inventories of one user at the same time. Each inventory
+ * has its own lock; the totals shared by all inventories are split into lock stripes by piece
+ * key. Checking and consuming builds lock every inventory, in a fixed order, so they see one
+ * consistent state of the whole collection.
+ *
+ * Once a MutationListener is set, every change is reported to it while holding the change lock
+ * shared, and whileUnchanged holds it exclusively, so a snapshot taken there matches exactly the
+ * changes reported before it.
+ *
+ * Inventories and builds given to restore are not counted until the builder first needs the
+ * totals: any check, query or change counts them all first, so a large saved collection can be
+ * opened without reading every piece.
  */
 public class MasterBuilder implements Writable {
+    private static final int STRIPES = 64; // number of locks guarding available and buildsNeeding
+
     private String userName; // Name of the user
     private List<LegoInventory> inventories; // List of Lego inventories owned by the user
     private List<Build> builds; // List of builds the user wants to make
+    private Map<PieceKey, Integer> slots; // slot in available of each piece key this user has seen
+    private int slotCount; // number of slots handed out, guarded by slotLock
+    private final Object slotLock = new Object(); // taken to hand out slots, before any stripe
+    private volatile int[] available; // total quantity of each piece across all inventories, by slot
+    private Map<PieceKey, Set<Build>> buildsNeeding; // builds that require each kind of piece
+    private final ReentrantLock[] stripes; // stripe i guards the keys whose stripeOf is i
+    private volatile MutationListener mutationListener; // receiver of every change, or null
+    private final ReentrantReadWriteLock changeLock = new ReentrantReadWriteLock(); // shared by reported changes
+    private volatile boolean uncounted; // true while restored inventories or builds are not counted yet
+    private List<LegoInventory> uncountedInventories; // restored inventories to count, guarded by countLock
+    private List<Build> uncountedBuilds; // restored builds to start tracking, guarded by countLock
+    private final Object countLock = new Object(); // taken to count restored inventories and builds
 
     /*
      * Requires: userName must not be null or empty.
@@ -22,8 +59,15 @@ public class MasterBuilder implements Writable {
      */
     public MasterBuilder(String userName) {
         this.userName = userName;
-        this.inventories = new ArrayList<>();
-        this.builds = new ArrayList<>();
+        this.inventories = new CopyOnWriteArrayList<>();
+        this.builds = new CopyOnWriteArrayList<>();
+        this.slots = new ConcurrentHashMap<>();
+        this.available = new int[16];
+        this.buildsNeeding = new ConcurrentHashMap<>();
+        this.stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
     }
 
     /*
@@ -31,54 +75,508 @@ public class MasterBuilder implements Writable {
      * Effects: Checks if the available pieces in the user's inventories are sufficient to 
      *          fully complete the given build. Returns true if all required pieces are available 
      *          in the necessary quantities, otherwise returns false.
+     *          For builds added to this user this is a counter read once the inventories are locked.
      */
     public boolean isBuildable(Build build) {
-        for (LegoPiece requiredPiece : build.getRequiredPieces()) {
-            int totalAvailable = 0;
-            for (LegoInventory inventory : inventories) {
-                for (LegoPiece ownedPiece : inventory.getPieces()) {
-
-                    String pt = requiredPiece.getPartType().toLowerCase();
-                    String pc = requiredPiece.getColor().toLowerCase();
-                    String pd = requiredPiece.getDimensions();
-                    Boolean partType = ownedPiece.getPartType().toLowerCase().equals(pt);
-                    Boolean partColor = ownedPiece.getColor().toLowerCase().equals(pc);
-                    Boolean partDimension = ownedPiece.getDimensions().equals(pd);
-                    
-                    if (partType && partColor && partDimension) {
-                        totalAvailable += ownedPiece.getQuantity();
-                    }
+        return getMissingUnits(build) == 0;
+    }
+
+    /*
+     * Requires: build is not null
+     * Effects: Returns how many required pieces of the given build are not available in the
+     *          user's inventories. Builds added to this user keep a running count, so this is a
+     *          counter read for them; other builds are checked against the available totals.
+     */
+    public int getMissingUnits(Build build) {
+        List<LegoInventory> locked = lockInventories();
+        try {
+            return missingUnits(build);
+        } finally {
+            unlockInventories(locked);
+        }
+    }
+
+    /*
+     * Effects: Returns how many required pieces of build are not available, without locking.
+     */
+    private int missingUnits(Build build) {
+        if (build.getOwner() == this) {
+            return build.getMissingUnits();
+        }
+        return countMissingUnits(build);
+    }
+
+    /*
+     * Requires: builds is not null and holds no null builds
+     * Effects: Returns the number of missing pieces of each of the given builds, in order.
+     */
+    public int[] getMissingUnits(List<Build> builds) {
+        int[] missing = new int[builds.size()];
+        int[] scratch = new int[0];
+        List<LegoInventory> locked = lockInventories();
+        try {
+            for (int i = 0; i < missing.length; i++) {
+                Build build = builds.get(i);
+                if (build.getOwner() == this) {
+                    missing[i] = build.getMissingUnits();
+                    continue;
+                }
+                int[] required = build.getRequiredAmounts();
+                if (scratch.length < required.length) {
+                    scratch = new int[required.length];
                 }
+                int[] buildSlots = slotsOf(build);
+                ShortfallKernel.gather(available, buildSlots, scratch, required.length);
+                missing[i] = ShortfallKernel.totalShortfall(required, scratch, required.length);
             }
-            if (totalAvailable < requiredPiece.getQuantity()) {
-                return false; // if not enough pieces for this requirement
+        } finally {
+            unlockInventories(locked);
+        }
+        return missing;
+    }
+
+    /*
+     * Requires: build is not null
+     * Effects: Returns how many of each required piece of the build are not available in the
+     *          user's inventories. Pieces that are fully available are left out.
+     */
+    public Map<PieceKey, Integer> getShortfall(Build build) {
+        PieceKey[] keys = build.getRequiredKeys();
+        int[] required = build.getRequiredAmounts();
+        int[] gathered = new int[keys.length];
+        List<LegoInventory> locked = lockInventories();
+        try {
+            int[] buildSlots = slotsOf(build);
+            ShortfallKernel.gather(available, buildSlots, gathered, keys.length);
+        } finally {
+            unlockInventories(locked);
+        }
+        ShortfallKernel.shortfall(required, gathered, gathered, keys.length);
+
+        Map<PieceKey, Integer> shortfall = new LinkedHashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (gathered[i] > 0) {
+                shortfall.put(keys[i], gathered[i]);
             }
         }
-        return true; // if all conditions pass then build can be made
+        return shortfall;
+    }
+
+    /*
+     * Effects: Returns how many required pieces of build are not available, checking every
+     *          requirement against the available totals.
+     */
+    private int countMissingUnits(Build build) {
+        int[] required = build.getRequiredAmounts();
+        int[] gathered = new int[required.length];
+        int[] buildSlots = slotsOf(build);
+        ShortfallKernel.gather(available, buildSlots, gathered, required.length);
+        return ShortfallKernel.totalShortfall(required, gathered, required.length);
+    }
+
+    /*
+     * Modifies: this, build
+     * Effects: Returns the availability slot of each of the build's required keys, giving keys
+     *          this user has not seen yet a slot of their own.
+     */
+    private int[] slotsOf(Build build) {
+        int[] buildSlots = build.getSlots(this);
+        if (buildSlots == null) {
+            PieceKey[] keys = build.getRequiredKeys();
+            buildSlots = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                buildSlots[i] = slotOf(keys[i]);
+            }
+            build.setSlots(this, buildSlots);
+        }
+        return buildSlots;
+    }
+
+    /*
+     * Requires: the current thread holds no stripe lock.
+     * Modifies: this
+     * Effects: Returns the availability slot of key, giving it a new slot if it has none.
+     */
+    private int slotOf(PieceKey key) {
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        synchronized (slotLock) {
+            slot = slots.get(key);
+            if (slot == null) {
+                slot = slotCount++;
+                if (slot == available.length) {
+                    growAvailable();
+                }
+                slots.put(key, slot);
+            }
+            return slot;
+        }
     }
 
     /*
-     * Requires: inventory must not be null.
      * Modifies: this
-     * Effects: Adds a Lego inventory to the user's list.
+     * Effects: Doubles the length of available while holding every stripe, so no update is lost.
+     */
+    private void growAvailable() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        try {
+            available = Arrays.copyOf(available, available.length * 2);
+        } finally {
+            for (ReentrantLock stripe : stripes) {
+                stripe.unlock();
+            }
+        }
+    }
+
+    /*
+     * Effects: Returns the lock guarding the available total of key and the builds needing it.
+     */
+    private ReentrantLock stripeOf(PieceKey key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /*
+     * Modifies: the user's inventories
+     * Effects: Locks every inventory of the user in lock order and returns them in the order
+     *          they were added. No inventory changes until unlockInventories is called.
+     */
+    private List<LegoInventory> lockInventories() {
+        countRestored();
+        return lockInOrder();
+    }
+
+    /*
+     * Modifies: the user's inventories
+     * Effects: Same as lockInventories, but leaves restored inventories uncounted.
+     */
+    private List<LegoInventory> lockInOrder() {
+        List<LegoInventory> snapshot = new ArrayList<>(inventories);
+        List<LegoInventory> ordered = new ArrayList<>(snapshot);
+        ordered.sort(Comparator.comparingLong(LegoInventory::getLockOrder));
+        for (LegoInventory inventory : ordered) {
+            inventory.lock();
+        }
+        return snapshot;
+    }
+
+    /*
+     * Requires: locked was returned by lockInventories on this thread.
+     * Effects: Unlocks the given inventories.
+     */
+    private static void unlockInventories(List<LegoInventory> locked) {
+        for (LegoInventory inventory : locked) {
+            inventory.unlock();
+        }
+    }
+
+    /*
+     * Requires: build is not null
+     * Modifies: this, the user's inventories
+     * Effects: If the build is buildable, takes its required pieces from the user's inventories
+     *          (in the order the inventories were added), removes pieces that run out, and returns
+     *          a completed result saying which inventory each piece came from. Otherwise changes
+     *          nothing and returns a result that is not completed.
+     */
+    public BuildResult consumeBuild(Build build) {
+        MutationListener listener = beginChange();
+        List<LegoInventory> locked = lockInventories();
+        try {
+            if (missingUnits(build) != 0) {
+                return new BuildResult(build, false);
+            }
+            return takeBuild(build, locked);
+        } finally {
+            unlockInventories(locked);
+            endChange(listener);
+        }
+    }
+
+    /*
+     * Requires: build is buildable, the current thread holds the locks of sources.
+     * Modifies: sources
+     * Effects: Takes the build's required pieces from sources, in order, removes pieces that
+     *          run out, and returns a completed result.
+     */
+    private BuildResult takeBuild(Build build, List<LegoInventory> sources) {
+        BuildResult result = new BuildResult(build, true);
+        Map<LegoInventory, List<LegoPiece>> emptied = new LinkedHashMap<>();
+        for (Map.Entry<PieceKey, Integer> required : build.getRequiredQuantities().entrySet()) {
+            int remaining = required.getValue();
+            for (int i = 0; i < sources.size() && remaining > 0; i++) {
+                LegoInventory inventory = sources.get(i);
+                List<LegoPiece> emptiedHere = emptied.computeIfAbsent(inventory, inv -> new ArrayList<>());
+                int taken = inventory.takePieces(required.getKey(), remaining, emptiedHere);
+                if (taken > 0) {
+                    result.recordTaken(inventory, required.getKey(), taken);
+                    remaining -= taken;
+                }
+            }
+        }
+
+        for (Map.Entry<LegoInventory, List<LegoPiece>> inventory : emptied.entrySet()) {
+            if (!inventory.getValue().isEmpty()) {
+                inventory.getKey().removePieces(inventory.getValue());
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Effects: Returns how many pieces are missing when required are needed and available are owned.
+     */
+    private static int shortfall(int required, int available) {
+        return Math.max(0, required - available);
+    }
+
+    /*
+     * Requires: key must not be null.
+     * Effects: Returns the total quantity of the given piece across all of the user's inventories.
+     */
+    public int getAvailableQuantity(PieceKey key) {
+        countRestored();
+        Integer slot = slots.get(key);
+        return slot == null ? 0 : available[slot];
+    }
+
+    /*
+     * Modifies: this, builds needing key
+     * Effects: Updates the total available quantity of key by delta, and the missing count of every
+     *          build that needs key. Called by the user's inventories whenever a piece is added,
+     *          removed or changes quantity.
+     */
+    void availabilityChanged(PieceKey key, int delta) {
+        int slot = slotOf(key);
+        ReentrantLock stripe = stripeOf(key);
+        stripe.lock();
+        try {
+            int[] totals = available;
+            int before = totals[slot];
+            int after = before + delta;
+            totals[slot] = after;
+
+            Set<Build> affected = buildsNeeding.get(key);
+            if (affected != null) {
+                for (Build build : affected) {
+                    int required = build.getRequiredQuantity(key);
+                    build.addMissingUnits(shortfall(required, after) - shortfall(required, before));
+                }
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /*
+     * Modifies: this, build
+     * Effects: Updates the missing count of build after quantity more of key became required.
+     *          Called by builds owned by this user.
+     */
+    void requirementAdded(Build build, PieceKey key, int quantity) {
+        int required = build.getRequiredQuantity(key);
+        int slot = slotOf(key);
+        ReentrantLock stripe = stripeOf(key);
+        stripe.lock();
+        try {
+            int onHand = available[slot];
+            buildsNeeding.computeIfAbsent(key, k -> new HashSet<>()).add(build);
+            build.addMissingUnits(shortfall(required, onHand) - shortfall(required - quantity, onHand));
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /*
+     * Requires: inventory must not be null.
+     * Modifies: this, inventory
+     * Effects: Adds a Lego inventory to the user's list and counts its pieces as available.
      */
     public void addInventory(LegoInventory inventory) {
+        MutationListener listener = beginChange();
         inventories.add(inventory);
+        inventory.lock();
+        try {
+            inventory.setOwner(this);
+            if (listener != null) {
+                listener.inventoryAdded(inventory.getCollectionName(), inventory.getStorage());
+            }
+            for (LegoPiece piece : inventory.getPieces()) {
+                availabilityChanged(piece.getKey(), piece.getQuantity());
+                if (listener != null) {
+                    listener.pieceAdded(inventory.getCollectionName(), piece);
+                }
+            }
+        } finally {
+            inventory.unlock();
+            endChange(listener);
+        }
 
-        EventLog.getInstance().logEvent(new Event("Added inventory: " + inventory.getCollectionName()
-                + " to " + userName + "'s list of inventories."));
+        EventLog.getInstance().log(EventType.INVENTORY_ADDED, 0,
+                inventory.getCollectionName(), userName);
     }
 
     /*
      * Requires: build must not be null.
-     * Modifies: this
-     * Effects: Adds a build to the user's list.
+     * Modifies: this, build
+     * Effects: Adds a build to the user's list and starts tracking how many of its pieces are missing.
      */
     public void addBuild(Build build) {
-        builds.add(build);
+        MutationListener listener = beginChange();
+        try {
+            builds.add(build);
+            track(build);
+            if (listener != null) {
+                listener.buildAdded(build.getBuildId());
+                for (LegoPiece piece : build.getRequiredPieces()) {
+                    listener.requirementAdded(build.getBuildId(), piece);
+                }
+            }
+        } finally {
+            endChange(listener);
+        }
 
-        EventLog.getInstance().logEvent(new Event("Added build: " + build.getBuildId()
-                + " to " + userName + "'s list of builds."));
+        EventLog.getInstance().log(EventType.BUILD_ADDED, build.getBuildId(), null, userName);
+    }
+
+    /*
+     * Modifies: this, build
+     * Effects: Starts tracking how many of the build's pieces are missing and makes this its owner.
+     */
+    private void track(Build build) {
+        PieceKey[] keys = build.getRequiredKeys();
+        int[] required = build.getRequiredAmounts();
+        int[] buildSlots = slotsOf(build);
+        build.setMissingUnits(0);
+        for (int i = 0; i < keys.length; i++) {
+            ReentrantLock stripe = stripeOf(keys[i]);
+            stripe.lock();
+            try {
+                buildsNeeding.computeIfAbsent(keys[i], k -> new HashSet<>()).add(build);
+                build.addMissingUnits(shortfall(required[i], available[buildSlots[i]]));
+            } finally {
+                stripe.unlock();
+            }
+        }
+        build.setOwner(this);
+    }
+
+    /*
+     * Requires: this user has no inventories, builds or mutation listener yet and no other thread
+     *           uses it until restore returns; the inventories and builds belong to no other user,
+     *           have distinct names and ids, and are changed only through this user from now on.
+     * Modifies: this, inventories, builds
+     * Effects: Adds inventories and builds read from a saved file, logging an event for each
+     *          like addInventory and addBuild. Their pieces are counted as available, and the
+     *          builds' missing pieces worked out, only when this user first needs the totals.
+     */
+    public void restore(List<LegoInventory> inventories, List<Build> builds) {
+        synchronized (countLock) {
+            this.inventories.addAll(inventories);
+            this.builds.addAll(builds);
+            for (LegoInventory inventory : inventories) {
+                inventory.setOwner(this);
+            }
+            for (Build build : builds) {
+                build.setOwner(this);
+            }
+            uncountedInventories = new ArrayList<>(inventories);
+            uncountedBuilds = new ArrayList<>(builds);
+            uncounted = true;
+        }
+
+        for (LegoInventory inventory : inventories) {
+            EventLog.getInstance().log(EventType.INVENTORY_ADDED, 0, inventory.getCollectionName(), userName);
+        }
+        for (Build build : builds) {
+            EventLog.getInstance().log(EventType.BUILD_ADDED, build.getBuildId(), null, userName);
+        }
+    }
+
+    /*
+     * Modifies: this, restored inventories and builds
+     * Effects: Counts the pieces of restored inventories as available and starts tracking
+     *          restored builds, if that has not been done yet. Every change of a restored
+     *          inventory or build begins here first, so none can be under way while they are counted.
+     */
+    private void countRestored() {
+        if (!uncounted) {
+            return;
+        }
+        synchronized (countLock) {
+            if (!uncounted) {
+                return;
+            }
+            for (LegoInventory inventory : uncountedInventories) {
+                for (LegoPiece piece : inventory.getPieces()) {
+                    availabilityChanged(piece.getKey(), piece.getQuantity());
+                }
+            }
+            for (Build build : uncountedBuilds) {
+                track(build);
+            }
+            uncountedInventories = null;
+            uncountedBuilds = null;
+            uncounted = false;
+        }
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Sets the listener told about every later change to this user's inventories and
+     *          builds (null for none). Call it while no other thread changes them.
+     */
+    public void setMutationListener(MutationListener listener) {
+        this.mutationListener = listener;
+    }
+
+    /*
+     * Requires: action must not change this user's inventories or builds.
+     * Effects: Runs action while every inventory of the user is locked and no change reported to
+     *          the mutation listener is in progress or can start, e.g., to take a snapshot that
+     *          matches the changes reported so far. Inventories may still be read from action.
+     */
+    public void whileUnchanged(Runnable action) {
+        changeLock.writeLock().lock();
+        try {
+            List<LegoInventory> locked = lockInOrder();
+            try {
+                action.run();
+            } finally {
+                unlockInventories(locked);
+            }
+        } finally {
+            changeLock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Modifies: this
+     * Effects: If there is a mutation listener, takes the change lock shared and returns the
+     *          listener; otherwise returns null. Every call must be matched by endChange with the
+     *          result, and changes must begin before they take any inventory lock. Counts
+     *          restored inventories and builds first if there are any.
+     */
+    MutationListener beginChange() {
+        countRestored();
+        MutationListener listener = mutationListener;
+        if (listener != null) {
+            changeLock.readLock().lock();
+        }
+        return listener;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Ends a change started by beginChange, which returned listener.
+     */
+    void endChange(MutationListener listener) {
+        if (listener != null) {
+            changeLock.readLock().unlock();
+        }
     }
 
     /*
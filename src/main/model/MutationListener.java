@@ -0,0 +1,43 @@
+package model;
+
+/*
+ * Represents a receiver of every change made to a MasterBuilder's inventories and builds, in the
+ * order the changes were applied to each inventory and build, e.g., a write-ahead log.
+ *
+ * Changes are reported while they are still guarded: a change to an inventory is reported under
+ * that inventory's lock, and no snapshot taken with MasterBuilder.whileUnchanged can start until
+ * the report returns. Listeners must therefore be quick and must not change the builder.
+ */
+public interface MutationListener {
+
+    /*
+     * Effects: Records that an empty inventory with the given name, storing its pieces the given
+     *          way, was added.
+     */
+    void inventoryAdded(String inventory, PieceStorage storage);
+
+    /*
+     * Effects: Records that piece, with its current quantity, was added to the named inventory.
+     */
+    void pieceAdded(String inventory, LegoPiece piece);
+
+    /*
+     * Effects: Records that piece, holding quantity, was removed from the named inventory.
+     */
+    void pieceRemoved(String inventory, LegoPiece piece, int quantity);
+
+    /*
+     * Effects: Records that the quantity of piece in the named inventory went from before to after.
+     */
+    void quantityChanged(String inventory, LegoPiece piece, int before, int after);
+
+    /*
+     * Effects: Records that a build with no required pieces and the given id was added.
+     */
+    void buildAdded(int buildId);
+
+    /*
+     * Effects: Records that piece, with its current quantity, became required by the given build.
+     */
+    void requirementAdded(int buildId, LegoPiece piece);
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * Represents piece records kept outside the Java heap, in a direct buffer of 16-byte records
+ * (part type id, color id, dimensions id, quantity). The garbage collector sees one small
+ * buffer object however many records there are; the memory is released when the store holding
+ * the buffer is collected.
+ */
+final class OffHeapPieceRecords implements PieceRecords {
+    static final int RECORD_BYTES = 16;
+    private static final int PART_TYPE = 0;
+    private static final int COLOR = 4;
+    private static final int DIMENSIONS = 8;
+    private static final int QUANTITY = 12;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / RECORD_BYTES;
+
+    private ByteBuffer records; // direct buffer holding every record
+
+    /*
+     * Requires: 0 < capacity <= Integer.MAX_VALUE / RECORD_BYTES
+     * Effects: Initializes records with room for capacity rows.
+     */
+    OffHeapPieceRecords(int capacity) {
+        this.records = allocate(capacity);
+    }
+
+    /*
+     * Effects: Returns a zeroed direct buffer with room for capacity rows.
+     */
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * RECORD_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public int capacity() {
+        return records.capacity() / RECORD_BYTES;
+    }
+
+    @Override
+    public void grow(int capacity) {
+        ByteBuffer grown = allocate(Math.min(capacity, MAX_CAPACITY));
+        records.clear();
+        grown.put(records);
+        grown.clear();
+        records = grown;
+    }
+
+    @Override
+    public int partType(int row) {
+        return records.getInt(row * RECORD_BYTES + PART_TYPE);
+    }
+
+    @Override
+    public int color(int row) {
+        return records.getInt(row * RECORD_BYTES + COLOR);
+    }
+
+    @Override
+    public int dimensions(int row) {
+        return records.getInt(row * RECORD_BYTES + DIMENSIONS);
+    }
+
+    @Override
+    public int quantity(int row) {
+        return records.getInt(row * RECORD_BYTES + QUANTITY);
+    }
+
+    @Override
+    public void set(int row, int partType, int color, int dimensions, int quantity) {
+        int offset = row * RECORD_BYTES;
+        records.putInt(offset + PART_TYPE, partType);
+        records.putInt(offset + COLOR, color);
+        records.putInt(offset + DIMENSIONS, dimensions);
+        records.putInt(offset + QUANTITY, quantity);
+    }
+
+    @Override
+    public void setQuantity(int row, int quantity) {
+        records.putInt(row * RECORD_BYTES + QUANTITY, quantity);
+    }
+}
@@ -0,0 +1,125 @@
+package model;
+
+import java.lang.ref.SoftReference;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Represents the storage of a paged inventory: its pieces are read from a PieceSource into a
+ * columnar store the first time they are needed, and that store is held only softly while it
+ * matches the source, so the garbage collector may drop it again when memory runs short and it
+ * is read again on the next access.
+ *
+ * The views handed out by a columnar store refer to it, so a store is never dropped while any of
+ * its pieces or lists of pieces is still in use, and a change made through one always lands in
+ * the store the inventory is using. Once the pieces change, the store is kept for good.
+ */
+class PagedPieceStore implements PieceStore {
+    private final PieceSource source; // where the pieces are read from
+    private final PieceObserver observer; // observer given to every view
+    private SoftReference<ColumnarPieceStore> page = new SoftReference<>(null); // pieces last read
+    private ColumnarPieceStore pinned; // pieces changed since they were read, or null
+    private int reads; // number of times the pieces were read from the source
+
+    /*
+     * Effects: Initializes a store whose pieces are read from source when first needed, and
+     *          whose views report quantity changes to observer.
+     */
+    PagedPieceStore(PieceSource source, PieceObserver observer) {
+        this.source = source;
+        this.observer = observer;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Returns the store holding the pieces, reading them from the source if it is not
+     *          in memory.
+     */
+    private synchronized ColumnarPieceStore page() {
+        if (pinned != null) {
+            return pinned;
+        }
+        ColumnarPieceStore store = page.get();
+        if (store == null) {
+            ColumnarPieceStore read = new ColumnarPieceStore(observer);
+            source.readPieces(read::add);
+            store = read;
+            page = new SoftReference<>(store);
+            reads++;
+        }
+        return store;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Returns the store holding the pieces and keeps it from being dropped from now on.
+     */
+    private synchronized ColumnarPieceStore pin() {
+        pinned = page();
+        return pinned;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Reads the pieces from the source if they are not in memory and keeps them from
+     *          then on, so the source is not read again.
+     */
+    void detach() {
+        pin();
+    }
+
+    /*
+     * Effects: Returns the number of times the pieces were read from the source.
+     */
+    synchronized int getReads() {
+        return reads;
+    }
+
+    /*
+     * Effects: Returns true if the pieces are in memory now.
+     */
+    synchronized boolean isResident() {
+        return pinned != null || page.get() != null;
+    }
+
+    @Override
+    public LegoPiece add(LegoPiece piece) {
+        return pin().add(piece);
+    }
+
+    @Override
+    public int remove(LegoPiece piece) {
+        return pin().remove(piece);
+    }
+
+    @Override
+    public Map<LegoPiece, Integer> removeAll(Collection<LegoPiece> pieces) {
+        return pin().removeAll(pieces);
+    }
+
+    @Override
+    public LegoPiece find(PieceKey key) {
+        return page().find(key);
+    }
+
+    @Override
+    public List<LegoPiece> findAll(PieceKey key) {
+        return page().findAll(key);
+    }
+
+    @Override
+    public List<LegoPiece> pieces() {
+        return page().pieces();
+    }
+
+    @Override
+    public int totalQuantity() {
+        return page().totalQuantity();
+    }
+
+    @Override
+    public void quantityChanged() {
+        pin();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package model;
+
+import java.util.List;
+
+/*
+ * Represents the part types, colors and dimensions that the fixed-width piece records of a saved
+ * file refer to by index.
+ *
+ * Each spelling is entered into the dictionaries shared by columnar stores once, when the
+ * dictionary is made, so records read from the file can be used in place by translating their
+ * indexes. One dictionary serves every inventory read from the same file.
+ */
+public final class PieceDictionary {
+    private final int[] partTypes; // columnar part type id of each index
+    private final int[] colors; // columnar color id of each index
+    private final int[] dimensions; // columnar dimensions id of each index
+
+    /*
+     * Requires: the lists and their elements must not be null.
+     * Effects: Initializes a dictionary in which index i of a record's part type, color and
+     *          dimensions stands for element i of the matching list.
+     */
+    public PieceDictionary(List<String> partTypes, List<String> colors, List<String> dimensions) {
+        this.partTypes = idsOf(ColumnarPieceStore.PART_TYPES, partTypes);
+        this.colors = idsOf(ColumnarPieceStore.COLORS, colors);
+        this.dimensions = idsOf(ColumnarPieceStore.DIMENSIONS, dimensions);
+    }
+
+    /*
+     * Modifies: dictionary
+     * Effects: Returns the id in dictionary of each of the given spellings, adding those it lacks.
+     */
+    private static int[] idsOf(StringDictionary dictionary, List<String> spellings) {
+        int[] ids = new int[spellings.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dictionary.idOf(spellings.get(i));
+        }
+        return ids;
+    }
+
+    /*
+     * Returns the number of part types in the dictionary.
+     */
+    public int getPartTypeCount() {
+        return partTypes.length;
+    }
+
+    /*
+     * Returns the number of colors in the dictionary.
+     */
+    public int getColorCount() {
+        return colors.length;
+    }
+
+    /*
+     * Returns the number of dimensions in the dictionary.
+     */
+    public int getDimensionsCount() {
+        return dimensions.length;
+    }
+
+    /*
+     * Requires: 0 <= index < getPartTypeCount()
+     * Effects: Returns the columnar part type id of the given index.
+     */
+    int partTypeId(int index) {
+        return partTypes[index];
+    }
+
+    /*
+     * Requires: 0 <= index < getColorCount()
+     * Effects: Returns the columnar color id of the given index.
+     */
+    int colorId(int index) {
+        return colors[index];
+    }
+
+    /*
+     * Requires: 0 <= index < getDimensionsCount()
+     * Effects: Returns the columnar dimensions id of the given index.
+     */
+    int dimensionsId(int index) {
+        return dimensions[index];
+    }
+}
@@ -0,0 +1,98 @@
+package model;
+
+import java.util.Locale;
+
+/*
+ * Represents the identity of a Lego piece: its part type, color and dimensions.
+ *
+ * Attributes are trimmed and lower-cased when the key is made, so "Red Brick (2x4)" and
+ * "red BRICK (2X4)" share a key. The canonical attributes come from CanonicalStrings, so equal
+ * attributes are the same instance and keys compare them by reference. Keys are immutable and
+ * safe to use in hash-based collections.
+ */
+public final class PieceKey {
+    private final String partType; // canonical part type, e.g., "brick"
+    private final String color; // canonical color, e.g., "red"
+    private final String dimensions; // canonical dimensions, e.g., "2x4"
+    private final int hash; // cached hash code
+
+    /*
+     * Requires: partType, color, dimensions must not be null.
+     * Effects: Initializes a key with the pooled, case-normalized form of the given attributes.
+     */
+    public PieceKey(String partType, String color, String dimensions) {
+        this.partType = CanonicalStrings.canonical(partType);
+        this.color = CanonicalStrings.canonical(color);
+        this.dimensions = CanonicalStrings.canonical(dimensions);
+        this.hash = hash(this.partType, this.color, this.dimensions);
+    }
+
+    /*
+     * Effects: Returns the hash code of a key with the given canonical attributes. String hash
+     *          codes are themselves sums of powers of 31, so combining them with 31 again makes
+     *          keys such as ("part 12", "color 3", "2x4") collide by the thousand; a large odd
+     *          multiplier and a final mix keep them apart.
+     */
+    private static int hash(String partType, String color, String dimensions) {
+        int h = partType.hashCode();
+        h = h * 0x9E3779B1 + color.hashCode();
+        h = h * 0x9E3779B1 + dimensions.hashCode();
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    /*
+     * Effects: returns the canonical form of an attribute (trimmed and lower case).
+     */
+    static String normalize(String attribute) {
+        return attribute.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /*
+     * Returns the canonical part type of this key.
+     */
+    public String getPartType() {
+        return partType;
+    }
+
+    /*
+     * Returns the canonical color of this key.
+     */
+    public String getColor() {
+        return color;
+    }
+
+    /*
+     * Returns the canonical dimensions of this key.
+     */
+    public String getDimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PieceKey)) {
+            return false;
+        }
+        PieceKey otherKey = (PieceKey) other;
+        // attributes are pooled, so equal attributes are the same instance
+        return hash == otherKey.hash
+                && partType == otherKey.partType
+                && color == otherKey.color
+                && dimensions == otherKey.dimensions;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return color + " " + partType + " (" + dimensions + ")";
+    }
+}
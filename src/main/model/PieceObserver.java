@@ -0,0 +1,25 @@
+package model;
+
+import java.util.function.IntUnaryOperator;
+
+/*
+ * Represents an owner of Lego pieces that applies every change to a piece's quantity itself, so
+ * that it can keep its own totals in step and guard the change with its own lock.
+ */
+interface PieceObserver {
+
+    /*
+     * Requires: piece must not be null, change has no side effects.
+     * Modifies: piece
+     * Effects: Changes the quantity of piece with piece.applyQuantity(change) and reacts to the
+     *          difference.
+     */
+    void applyChange(LegoPiece piece, IntUnaryOperator change);
+
+    /*
+     * Effects: Returns the name logged with quantity changes applied by this observer, or null.
+     */
+    default String getName() {
+        return null;
+    }
+}
\ No newline at end of file
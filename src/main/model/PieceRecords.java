@@ -0,0 +1,67 @@
+package model;
+
+/*
+ * Represents fixed-width piece records used by ColumnarPieceStore: for each row, the
+ * dictionary ids of its part type, color and dimensions and its quantity.
+ */
+interface PieceRecords {
+
+    /*
+     * Effects: Returns the number of rows that fit without growing.
+     */
+    int capacity();
+
+    /*
+     * Requires: capacity >= capacity()
+     * Modifies: this
+     * Effects: Makes room for capacity rows, keeping the existing ones.
+     */
+    void grow(int capacity);
+
+    /*
+     * Requires: 0 <= row < capacity()
+     * Effects: Returns the part type id of the row.
+     */
+    int partType(int row);
+
+    /*
+     * Requires: 0 <= row < capacity()
+     * Effects: Returns the color id of the row.
+     */
+    int color(int row);
+
+    /*
+     * Requires: 0 <= row < capacity()
+     * Effects: Returns the dimensions id of the row.
+     */
+    int dimensions(int row);
+
+    /*
+     * Requires: 0 <= row < capacity()
+     * Effects: Returns the quantity of the row.
+     */
+    int quantity(int row);
+
+    /*
+     * Requires: 0 <= row < capacity()
+     * Modifies: this
+     * Effects: Writes every field of the row.
+     */
+    void set(int row, int partType, int color, int dimensions, int quantity);
+
+    /*
+     * Requires: 0 <= row < capacity()
+     * Modifies: this
+     * Effects: Writes the quantity of the row.
+     */
+    void setQuantity(int row, int quantity);
+
+    /*
+     * Requires: 0 <= from, to < capacity()
+     * Modifies: this
+     * Effects: Copies row from into row to.
+     */
+    default void copy(int from, int to) {
+        set(to, partType(from), color(from), dimensions(from), quantity(from));
+    }
+}
@@ -0,0 +1,18 @@
+package model;
+
+import java.util.function.Consumer;
+
+/*
+ * Represents the place the pieces of a paged inventory are read from each time they are needed,
+ * such as the stretch of a saved file that holds them.
+ */
+@FunctionalInterface
+public interface PieceSource {
+
+    /*
+     * Requires: sink must not be null.
+     * Effects: Reads every piece kept in the source and passes each to sink, in order. Throws
+     *          UncheckedIOException if the source cannot be read.
+     */
+    void readPieces(Consumer<LegoPiece> sink);
+}
\ No newline at end of file
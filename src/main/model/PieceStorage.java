@@ -0,0 +1,10 @@
+package model;
+
+/*
+ * Represents the ways a LegoInventory can store its pieces.
+ */
+public enum PieceStorage {
+    LIST,     // LegoPiece objects in a list with a hash index on their keys (default)
+    COLUMNAR, // dictionary-encoded ids and quantities in int arrays, for very large inventories
+    OFF_HEAP  // like COLUMNAR, but the records live in native memory outside the Java heap
+}
@@ -0,0 +1,64 @@
+package model;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Represents the storage behind a LegoInventory: the pieces it holds and an index on their keys.
+ * The inventory takes care of observers, owners and event logging; a store only keeps pieces.
+ */
+interface PieceStore {
+
+    /*
+     * Requires: piece must not be null.
+     * Modifies: this
+     * Effects: Stores the piece and returns the piece that now represents it in the store
+     *          (the piece itself, or a view over the store's own storage).
+     */
+    LegoPiece add(LegoPiece piece);
+
+    /*
+     * Requires: piece must not be null.
+     * Modifies: this
+     * Effects: Removes the piece from the store and returns the quantity it held for it,
+     *          or -1 if the piece was not there.
+     */
+    int remove(LegoPiece piece);
+
+    /*
+     * Requires: pieces must not be null.
+     * Modifies: this
+     * Effects: Removes all of the given pieces in a single pass and returns those that were there,
+     *          each with the quantity the store held for it.
+     */
+    Map<LegoPiece, Integer> removeAll(Collection<LegoPiece> pieces);
+
+    /*
+     * Effects: Returns the first stored piece with the given key, or null if there is none.
+     */
+    LegoPiece find(PieceKey key);
+
+    /*
+     * Effects: Returns every stored piece with the given key, first one first.
+     */
+    List<LegoPiece> findAll(PieceKey key);
+
+    /*
+     * Effects: Returns an unmodifiable view of the stored pieces.
+     */
+    List<LegoPiece> pieces();
+
+    /*
+     * Effects: Returns the sum of the quantities of all stored pieces.
+     */
+    int totalQuantity();
+
+    /*
+     * Modifies: this
+     * Effects: Records that the quantity of a stored piece was changed through the piece. Stores
+     *          that may drop their pieces and read them again must keep them from then on.
+     */
+    default void quantityChanged() {
+    }
+}
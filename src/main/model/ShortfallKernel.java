@@ -0,0 +1,48 @@
+package model;
+
+/*
+ * Holds the array kernels used to check builds against the quantities a user has available.
+ *
+ * The compare/subtract loops are branch-free counted loops over plain int arrays, the shape the
+ * JIT compiler turns into SIMD instructions. Reading available quantities by slot (gather) is a
+ * separate scalar pass so that it does not stop the other loops from being vectorized.
+ */
+final class ShortfallKernel {
+
+    private ShortfallKernel() {
+    }
+
+    /*
+     * Requires: values, indices and out hold at least length elements; every index is in values.
+     * Modifies: out
+     * Effects: Sets out[i] to values[indices[i]] for every i below length.
+     */
+    static void gather(int[] values, int[] indices, int[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = values[indices[i]];
+        }
+    }
+
+    /*
+     * Requires: required, available and out hold at least length elements.
+     * Modifies: out
+     * Effects: Sets out[i] to how many of required[i] are not covered by available[i].
+     */
+    static void shortfall(int[] required, int[] available, int[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = Math.max(required[i] - available[i], 0);
+        }
+    }
+
+    /*
+     * Requires: required and available hold at least length elements.
+     * Effects: Returns the sum over i of how many of required[i] are not covered by available[i].
+     */
+    static int totalShortfall(int[] required, int[] available, int length) {
+        int total = 0;
+        for (int i = 0; i < length; i++) {
+            total += Math.max(required[i] - available[i], 0);
+        }
+        return total;
+    }
+}
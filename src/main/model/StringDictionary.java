@@ -0,0 +1,96 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Represents a table of distinct strings, each identified by a small int id.
+ *
+ * Every spelling gets its own id so it can be shown as it was entered, and canonicalId maps
+ * an id to the id of its case-normalized spelling so that matching ignores case.
+ * Ids are never reused, so they can be shared by every store that uses the dictionary.
+ */
+final class StringDictionary {
+    private final Map<String, Integer> ids; // id of each spelling
+    private volatile String[] strings; // spelling of each id
+    private volatile int[] canonicalIds; // id of the case-normalized spelling of each id
+    private int size; // number of ids handed out
+
+    /*
+     * Effects: Initializes an empty dictionary.
+     */
+    StringDictionary() {
+        this.ids = new HashMap<>();
+        this.strings = new String[16];
+        this.canonicalIds = new int[16];
+    }
+
+    /*
+     * Requires: value must not be null.
+     * Modifies: this
+     * Effects: Returns the id of value, adding it (and its case-normalized spelling) if needed.
+     */
+    synchronized int idOf(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        String canonical = PieceKey.normalize(value);
+        int canonicalId = canonical.equals(value) ? size : idOf(canonical);
+        return append(value, canonicalId);
+    }
+
+    /*
+     * Requires: value must not be null.
+     * Effects: Returns the id of value, or -1 if it is not in the dictionary.
+     */
+    synchronized int find(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    /*
+     * Requires: id was returned by idOf.
+     * Effects: Returns the spelling with the given id.
+     */
+    String get(int id) {
+        return strings[id];
+    }
+
+    /*
+     * Requires: id was returned by idOf.
+     * Effects: Returns the id of the case-normalized spelling of the given id.
+     */
+    int canonicalId(int id) {
+        return canonicalIds[id];
+    }
+
+    /*
+     * Effects: Returns the number of spellings in the dictionary.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /*
+     * Modifies: this
+     * Effects: Gives value the next id, whose canonical id is canonicalId, and returns it.
+     */
+    private int append(String value, int canonicalId) {
+        if (size == strings.length) {
+            String[] grownStrings = new String[size * 2];
+            int[] grownCanonicalIds = new int[size * 2];
+            System.arraycopy(strings, 0, grownStrings, 0, size);
+            System.arraycopy(canonicalIds, 0, grownCanonicalIds, 0, size);
+            grownStrings[size] = value;
+            grownCanonicalIds[size] = canonicalId;
+            strings = grownStrings;
+            canonicalIds = grownCanonicalIds;
+        } else {
+            strings[size] = value;
+            canonicalIds[size] = canonicalId;
+        }
+        ids.put(value, size);
+        return size++;
+    }
+}
@@ -0,0 +1,143 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+// Represents the ways a JSON save can be compressed on disk.
+//
+// Writers choose the format from the extension of the file they write, or are told it; readers
+// tell it from the first two bytes of the file, which can never start a JSON document, so any
+// file can be read whatever its name. Data is compressed and decompressed as it streams through,
+// never a whole document at a time.
+public enum Compression {
+    NONE(""),           // plain UTF-8 JSON
+    GZIP(".gz"),        // gzip format, readable by gzip and most tools
+    DEFLATE(".deflate"); // zlib format: deflate with a two-byte header and no file name or time
+
+    public static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String extension;
+
+    Compression(String extension) {
+        this.extension = extension;
+    }
+
+    // EFFECTS: returns the extension that selects this format, or "" for NONE
+    public String getExtension() {
+        return extension;
+    }
+
+    // EFFECTS: returns the format selected by the extension of file: GZIP for .gz, DEFLATE for
+    // .deflate, NONE for anything else
+    public static Compression forFile(String file) {
+        if (file.endsWith(GZIP.extension)) {
+            return GZIP;
+        } else if (file.endsWith(DEFLATE.extension)) {
+            return DEFLATE;
+        }
+        return NONE;
+    }
+
+    // REQUIRES: level is DEFAULT_LEVEL or from 0 to 9
+    // EFFECTS: returns a stream compressing what is written to it at level into out, or out
+    // itself for NONE; closing the stream, or finish, ends the compressed data and frees the
+    // compressor. Throws IOException if a header cannot be written to out
+    public OutputStream compress(OutputStream out, int level) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE) {
+                    {
+                        def.setLevel(level);
+                    }
+
+                    @Override
+                    public void finish() throws IOException {
+                        if (!def.finished()) {
+                            super.finish();
+                        }
+                        def.end();
+                    }
+                };
+            case DEFLATE:
+                return new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE) {
+                    @Override
+                    public void finish() throws IOException {
+                        if (!def.finished()) {
+                            super.finish();
+                        }
+                        def.end();
+                    }
+                };
+            default:
+                return out;
+        }
+    }
+
+    // MODIFIES: stream
+    // EFFECTS: ends the compressed data written to a stream returned by compress, without
+    // closing the stream beneath; does nothing if it is not compressed
+    static void finish(OutputStream stream) throws IOException {
+        if (stream instanceof DeflaterOutputStream) {
+            ((DeflaterOutputStream) stream).finish();
+        }
+    }
+
+    // EFFECTS: returns a stream of the JSON held in in, decompressing it if its first bytes
+    // show that it is compressed; closing it closes in. Throws IOException if in cannot be read
+    // or its compressed header is damaged
+    public static InputStream decompress(InputStream in) throws IOException {
+        PushbackInputStream stream = new PushbackInputStream(in, 2);
+        byte[] header = new byte[2];
+        int read = stream.readNBytes(header, 0, 2);
+        stream.unread(header, 0, read);
+        switch (detect(header, read)) {
+            case GZIP:
+                return new GZIPInputStream(stream, BUFFER_SIZE);
+            case DEFLATE:
+                return new InflaterInputStream(stream, new Inflater(), BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        inf.end();
+                    }
+                };
+            default:
+                return stream;
+        }
+    }
+
+    // EFFECTS: returns the format of the file open in channel, told from its first bytes
+    static Compression detect(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(2);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading until both bytes are in or the file ends
+        }
+        return detect(header.array(), header.position());
+    }
+
+    // EFFECTS: returns the format whose header starts with the first length bytes of header
+    private static Compression detect(byte[] header, int length) {
+        if (length < 2) {
+            return NONE;
+        }
+        int first = header[0] & 0xff;
+        int second = header[1] & 0xff;
+        if (first == 0x1f && second == 0x8b) {
+            return GZIP;
+        } else if ((first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0) {
+            return DEFLATE;
+        }
+        return NONE;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,487 @@
+package persistence;
+
+import model.BulkEventScope;
+import model.EventLog;
+import model.EventType;
+import model.LegoInventory;
+import model.LegoPiece;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Represents an importer that streams a CSV file of pieces into an inventory.
+//
+// Each row holds a part type, color, dimensions and quantity separated by commas. Fields may be
+// quoted, with "" standing for a quote inside them; spaces around fields are ignored, as are blank
+// lines and a first row naming the columns. The file may be compressed (see Compression).
+//
+// Rows are parsed straight from the bytes of the file. The quantities of rows that spell a piece
+// the same way are summed in a table of the importer's own, and every batch of rows (by default
+// DEFAULT_BATCH_ROWS) the sums are merged into the inventory in one call to
+// LegoInventory.mergePieces. A batch therefore costs one
+// LegoPiece, one lookup in the inventory and one event per distinct piece rather than per row,
+// and the spellings are decoded to strings once per import rather than once per row.
+public class CsvImporter {
+    public static final int DEFAULT_BATCH_ROWS = 1 << 20;
+    private static final int MAX_REPORTED = 100;
+    private static final int MAX_REPORTED_TEXT = 200;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_SPELLINGS = 1 << 20; // distinct spellings kept between batches
+    private static final byte[] QUANTITY_HEADER = "quantity".getBytes(StandardCharsets.US_ASCII);
+
+    private final String source;
+    private final int batchRows;
+
+    // EFFECTS: constructs importer to read from source file in batches of DEFAULT_BATCH_ROWS rows
+    public CsvImporter(String source) {
+        this(source, DEFAULT_BATCH_ROWS);
+    }
+
+    // REQUIRES: batchRows > 0
+    // EFFECTS: constructs importer to read from source file, merging every batchRows rows
+    public CsvImporter(String source, int batchRows) {
+        this.source = source;
+        this.batchRows = batchRows;
+    }
+
+    // MODIFIES: inventory
+    // EFFECTS: merges the pieces of every valid row of the file into inventory and returns a report
+    // of the rows imported and rejected, logging one summary event instead of an event per piece;
+    // throws IOException if the file cannot be read, in which case the batches merged before the
+    // error stay merged
+    public ImportReport importInto(LegoInventory inventory) throws IOException {
+        BulkEventScope scope = EventLog.getInstance().openBulkScope(
+                "Merged {0} batched pieces into inventory " + inventory.getCollectionName() + " from " + source,
+                EventType.INVENTORY_PIECE_ADDED);
+        try (InputStream in = Compression.decompress(Files.newInputStream(Paths.get(source)))) {
+            Import run = new Import(inventory, in, batchRows);
+            run.readAll();
+            return run.report;
+        } finally {
+            scope.close();
+        }
+    }
+
+    // Represents one import of the file, with the state of its parser and of its batch
+    private static final class Import {
+        private final LegoInventory inventory;
+        private final InputStream in;
+        private final int batchSize; // rows merged at a time
+        private final ImportReport report = new ImportReport(MAX_REPORTED);
+
+        private byte[] buf = new byte[BUFFER_SIZE]; // bytes read from the file
+        private int limit; // end of the bytes read into buf
+        private boolean eof; // true once the file has no more bytes
+        private long nextLine = 1; // line the next row starts on
+        private boolean headerChecked; // true once the first row has been looked at
+
+        private byte[] row = new byte[256]; // fields of the current row, unquoted, one after another
+        private int rowSize;
+        private final int[] fieldStart = new int[4];
+        private final int[] fieldLength = new int[4];
+        private int fieldCount;
+        private boolean firstQuoted; // true if the first field was quoted
+        private int rowLines; // lines the current row spans
+        private String problem; // why the current row cannot be read, or null
+
+        private int[] slots = new int[1 << 12]; // spelling number + 1 by hash, or 0
+        private byte[] spellingBytes = new byte[1 << 14]; // the spellings, one after another
+        private int spellingBytesSize;
+        private int[] spellingStart = new int[1 << 11];
+        private int[] spellingLengths = new int[3 << 11]; // lengths of the three fields of each
+        private int[] spellingHash = new int[1 << 11];
+        private String[] spellingStrings = new String[3 << 11]; // fields decoded, or null
+        private long[] sums = new long[1 << 11]; // quantity in this batch of each spelling
+        private int spellings;
+        private int[] touched = new int[1 << 11]; // spellings with a quantity in this batch
+        private int touchedCount;
+        private int batchRows;
+
+        Import(LegoInventory inventory, InputStream in, int batchSize) {
+            this.inventory = inventory;
+            this.in = in;
+            this.batchSize = batchSize;
+        }
+
+        // MODIFIES: this, inventory
+        // EFFECTS: reads every row of the file and merges the last batch
+        void readAll() throws IOException {
+            fill();
+            int pos = 0;
+            if (limit >= 3 && buf[0] == (byte) 0xef && buf[1] == (byte) 0xbb && buf[2] == (byte) 0xbf) {
+                pos = 3;
+            }
+            while (pos < limit || !eof) {
+                int end = pos < limit ? parseRow(pos) : -1;
+                if (end < 0) {
+                    System.arraycopy(buf, pos, buf, 0, limit - pos);
+                    limit -= pos;
+                    pos = 0;
+                    fill();
+                    continue;
+                }
+                handleRow(pos, end);
+                pos = end;
+            }
+            flush();
+        }
+
+        // MODIFIES: this
+        // EFFECTS: reads more of the file after the bytes in buf, growing buf if it is full
+        private void fill() throws IOException {
+            if (limit == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            while (!eof && limit < buf.length) {
+                int read = in.read(buf, limit, buf.length - limit);
+                if (read < 0) {
+                    eof = true;
+                } else if (read > 0) {
+                    limit += read;
+                    return;
+                }
+            }
+        }
+
+        // MODIFIES: this
+        // EFFECTS: parses the row starting at start into the fields of this import and returns
+        // the index just past its line break, or -1 if buf ends before the row does and the file
+        // has more
+        private int parseRow(int start) {
+            int p = start;
+            rowSize = 0;
+            fieldCount = 0;
+            firstQuoted = false;
+            rowLines = 1;
+            problem = null;
+            while (true) {
+                while (p < limit && (buf[p] == ' ' || buf[p] == '\t')) {
+                    p++;
+                }
+                int fieldBegin = rowSize;
+                if (p < limit && buf[p] == '"') {
+                    p = parseQuoted(p + 1);
+                    if (p < 0) {
+                        return -1;
+                    }
+                    if (fieldCount == 0) {
+                        firstQuoted = true;
+                    }
+                } else {
+                    int begin = p;
+                    while (p < limit && buf[p] != ',' && buf[p] != '\n' && buf[p] != '\r') {
+                        p++;
+                    }
+                    int end = p;
+                    while (end > begin && (buf[end - 1] == ' ' || buf[end - 1] == '\t')) {
+                        end--;
+                    }
+                    append(buf, begin, end - begin);
+                }
+                endField(fieldBegin);
+                if (p >= limit) {
+                    return eof ? limit : -1;
+                }
+                if (buf[p] == ',') {
+                    p++;
+                } else if (buf[p] == '\r') {
+                    if (p + 1 == limit && !eof) {
+                        return -1;
+                    }
+                    return p + 1 < limit && buf[p + 1] == '\n' ? p + 2 : p + 1;
+                } else {
+                    return p + 1;
+                }
+            }
+        }
+
+        // MODIFIES: this
+        // EFFECTS: parses the rest of a quoted field starting at p, just past its opening quote,
+        // and returns the index of the comma or line break after it, or -1 if buf ends first
+        // and the file has more
+        private int parseQuoted(int p) {
+            while (true) {
+                if (p >= limit) {
+                    if (!eof) {
+                        return -1;
+                    }
+                    problem = "unterminated quoted field";
+                    return limit;
+                }
+                byte b = buf[p++];
+                if (b == '"') {
+                    if (p == limit && !eof) {
+                        return -1;
+                    }
+                    if (p < limit && buf[p] == '"') {
+                        append(buf, p, 1);
+                        p++;
+                    } else {
+                        break;
+                    }
+                } else {
+                    if (b == '\n') {
+                        rowLines++;
+                    }
+                    append(buf, p - 1, 1);
+                }
+            }
+            while (p < limit && (buf[p] == ' ' || buf[p] == '\t')) {
+                p++;
+            }
+            if (p < limit && buf[p] != ',' && buf[p] != '\n' && buf[p] != '\r') {
+                if (problem == null) {
+                    problem = "text after a closing quote";
+                }
+                while (p < limit && buf[p] != ',' && buf[p] != '\n' && buf[p] != '\r') {
+                    p++;
+                }
+            }
+            return p;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: appends length bytes of bytes from start to the current row
+        private void append(byte[] bytes, int start, int length) {
+            if (rowSize + length > row.length) {
+                row = Arrays.copyOf(row, Math.max(row.length * 2, rowSize + length));
+            }
+            System.arraycopy(bytes, start, row, rowSize, length);
+            rowSize += length;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: ends the field that started at fieldBegin in the current row, dropping the
+        // bytes of fields after the fourth
+        private void endField(int fieldBegin) {
+            if (fieldCount < 4) {
+                fieldStart[fieldCount] = fieldBegin;
+                fieldLength[fieldCount] = rowSize - fieldBegin;
+            } else {
+                rowSize = fieldBegin;
+            }
+            fieldCount++;
+        }
+
+        // MODIFIES: this, inventory
+        // EFFECTS: adds the row parsed from buf between start and end to the batch, or rejects it
+        private void handleRow(int start, int end) {
+            long line = nextLine;
+            nextLine += rowLines;
+            if (fieldCount == 1 && fieldLength[0] == 0 && !firstQuoted && problem == null) {
+                return;
+            }
+            if (!headerChecked) {
+                headerChecked = true;
+                if (fieldCount == 4 && isQuantityHeader()) {
+                    return;
+                }
+            }
+            String reason = problem;
+            long quantity = 0;
+            if (reason == null) {
+                if (fieldCount != 4) {
+                    reason = "expected 4 fields but found " + fieldCount;
+                } else if (fieldLength[0] == 0) {
+                    reason = "missing part type";
+                } else if (fieldLength[1] == 0) {
+                    reason = "missing color";
+                } else if (fieldLength[2] == 0) {
+                    reason = "missing dimensions";
+                } else {
+                    quantity = parseQuantity();
+                    if (quantity <= 0) {
+                        reason = "quantity is not a whole number from 1 to " + Integer.MAX_VALUE;
+                    }
+                }
+            }
+            if (reason != null) {
+                report.addRejected(line, reason, rowText(start, end));
+            } else {
+                add(quantity);
+            }
+        }
+
+        // EFFECTS: returns true if the fourth field of the current row is "quantity" in any case
+        private boolean isQuantityHeader() {
+            if (fieldLength[3] != QUANTITY_HEADER.length) {
+                return false;
+            }
+            for (int i = 0; i < QUANTITY_HEADER.length; i++) {
+                if ((row[fieldStart[3] + i] | 0x20) != QUANTITY_HEADER[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // EFFECTS: returns the quantity in the fourth field of the current row, or -1 if it is
+        // not a whole number of at most Integer.MAX_VALUE written in digits
+        private long parseQuantity() {
+            int length = fieldLength[3];
+            if (length == 0 || length > 10) {
+                return -1;
+            }
+            long value = 0;
+            for (int i = fieldStart[3]; i < fieldStart[3] + length; i++) {
+                int digit = row[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value > Integer.MAX_VALUE ? -1 : value;
+        }
+
+        // EFFECTS: returns the text of the row between start and end, without its line break,
+        // shortened to MAX_REPORTED_TEXT characters
+        private String rowText(int start, int end) {
+            while (end > start && (buf[end - 1] == '\n' || buf[end - 1] == '\r')) {
+                end--;
+            }
+            String text = new String(buf, start, end - start, StandardCharsets.UTF_8);
+            return text.length() > MAX_REPORTED_TEXT ? text.substring(0, MAX_REPORTED_TEXT) + "..." : text;
+        }
+
+        // MODIFIES: this, inventory
+        // EFFECTS: adds quantity to the sum of the current row's spelling in this batch, merging
+        // the batch first if the sum would not fit in an int, and after it if it is full
+        private void add(long quantity) {
+            int spelling = findSpelling();
+            if (sums[spelling] + quantity > Integer.MAX_VALUE) {
+                flush();
+                spelling = findSpelling();
+            }
+            if (sums[spelling] == 0) {
+                touched[touchedCount++] = spelling;
+            }
+            sums[spelling] += quantity;
+            report.addImported(1);
+            if (++batchRows == batchSize) {
+                flush();
+            }
+        }
+
+        // MODIFIES: this
+        // EFFECTS: returns the number of the spelling of the first three fields of the current
+        // row, adding it to the table if it is new
+        private int findSpelling() {
+            int keyLength = fieldLength[0] + fieldLength[1] + fieldLength[2];
+            int hash = fieldLength[0] * 961 + fieldLength[1] * 31 + fieldLength[2];
+            for (int i = 0; i < keyLength; i++) {
+                hash = 31 * hash + row[i];
+            }
+            hash ^= hash >>> 16;
+            int mask = slots.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int spelling = slots[slot] - 1;
+                if (spelling < 0) {
+                    spelling = addSpelling(hash, keyLength);
+                    slots[slot] = spelling + 1;
+                    if (spellings * 2 > slots.length) {
+                        rehash();
+                    }
+                    return spelling;
+                }
+                if (spellingHash[spelling] == hash && matches(spelling, keyLength)) {
+                    return spelling;
+                }
+            }
+        }
+
+        // EFFECTS: returns true if spelling is spelled like the first three fields of the current row
+        private boolean matches(int spelling, int keyLength) {
+            int start = spellingStart[spelling];
+            return spellingLengths[3 * spelling] == fieldLength[0]
+                    && spellingLengths[3 * spelling + 1] == fieldLength[1]
+                    && spellingLengths[3 * spelling + 2] == fieldLength[2]
+                    && Arrays.equals(spellingBytes, start, start + keyLength, row, 0, keyLength);
+        }
+
+        // MODIFIES: this
+        // EFFECTS: adds the spelling of the first three fields of the current row and returns its number
+        private int addSpelling(int hash, int keyLength) {
+            if (spellings == spellingStart.length) {
+                int capacity = spellings * 2;
+                spellingStart = Arrays.copyOf(spellingStart, capacity);
+                spellingLengths = Arrays.copyOf(spellingLengths, 3 * capacity);
+                spellingHash = Arrays.copyOf(spellingHash, capacity);
+                spellingStrings = Arrays.copyOf(spellingStrings, 3 * capacity);
+                sums = Arrays.copyOf(sums, capacity);
+                touched = Arrays.copyOf(touched, capacity);
+            }
+            if (spellingBytesSize + keyLength > spellingBytes.length) {
+                spellingBytes = Arrays.copyOf(spellingBytes, Math.max(spellingBytes.length * 2,
+                        spellingBytesSize + keyLength));
+            }
+            System.arraycopy(row, 0, spellingBytes, spellingBytesSize, keyLength);
+            int spelling = spellings++;
+            spellingStart[spelling] = spellingBytesSize;
+            spellingBytesSize += keyLength;
+            for (int field = 0; field < 3; field++) {
+                spellingLengths[3 * spelling + field] = fieldLength[field];
+            }
+            spellingHash[spelling] = hash;
+            return spelling;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: doubles the slots of the table
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int spelling = 0; spelling < spellings; spelling++) {
+                int slot = spellingHash[spelling] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = spelling + 1;
+            }
+        }
+
+        // MODIFIES: this, inventory
+        // EFFECTS: merges the pieces summed in this batch into the inventory and starts a new batch;
+        // forgets the spellings once there are more than MAX_SPELLINGS
+        private void flush() {
+            List<LegoPiece> pieces = new ArrayList<>(touchedCount);
+            for (int i = 0; i < touchedCount; i++) {
+                int spelling = touched[i];
+                pieces.add(new LegoPiece(field(spelling, 0), field(spelling, 1), field(spelling, 2),
+                        (int) sums[spelling]));
+                sums[spelling] = 0;
+            }
+            touchedCount = 0;
+            batchRows = 0;
+            if (!pieces.isEmpty()) {
+                inventory.mergePieces(pieces);
+            }
+            if (spellings > MAX_SPELLINGS) {
+                Arrays.fill(slots, 0);
+                Arrays.fill(spellingStrings, null);
+                spellings = 0;
+                spellingBytesSize = 0;
+            }
+        }
+
+        // MODIFIES: this
+        // EFFECTS: returns field 0, 1 or 2 of spelling as a string, decoding it the first time
+        private String field(int spelling, int field) {
+            String text = spellingStrings[3 * spelling + field];
+            if (text == null) {
+                int start = spellingStart[spelling];
+                for (int i = 0; i < field; i++) {
+                    start += spellingLengths[3 * spelling + i];
+                }
+                text = new String(spellingBytes, start, spellingLengths[3 * spelling + field], StandardCharsets.UTF_8);
+                spellingStrings[3 * spelling + field] = text;
+            }
+            return text;
+        }
+    }
+}
\ No newline at end of file
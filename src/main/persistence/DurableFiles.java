@@ -0,0 +1,75 @@
+package persistence;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Represents the steps shared by writers that must never leave a torn file behind: write a file
+// and wait until it is on disk, then move it over the file it replaces in one step.
+final class DurableFiles {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // An action writing the contents of a JSON file
+    interface Contents {
+        void writeTo(JsonEmitter json) throws IOException;
+    }
+
+    private DurableFiles() {
+    }
+
+    // MODIFIES: file
+    // EFFECTS: writes contents to file as JSON indented by indentFactor spaces per level (none if 0)
+    // and waits until it is on disk; throws IOException if the file cannot be written
+    static void write(Path file, int indentFactor, Contents contents) throws IOException {
+        write(file, indentFactor, Compression.NONE, contents);
+    }
+
+    // MODIFIES: file
+    // EFFECTS: writes contents to file like write, compressed in the given format at its default level
+    static void write(Path file, int indentFactor, Compression compression, Contents contents)
+            throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file.toFile())) {
+            OutputStream stream = compression.compress(out, Compression.DEFAULT_LEVEL);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+            try {
+                contents.writeTo(new JsonEmitter(writer, indentFactor));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+            Compression.finish(stream);
+            out.getFD().sync();
+        }
+    }
+
+    // MODIFIES: temporary, destination
+    // EFFECTS: moves temporary over destination in one step and waits until the move is on disk;
+    // throws IOException if it cannot be moved
+    static void replace(Path temporary, Path destination) throws IOException {
+        Files.move(temporary, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Path directory = destination.toAbsolutePath().getParent();
+        if (directory != null) {
+            syncDirectory(directory);
+        }
+    }
+
+    // EFFECTS: fsyncs directory so that a move into it is on disk; does nothing where directories
+    // cannot be opened for that
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on this platform; the move is still atomic
+        }
+    }
+}
\ No newline at end of file
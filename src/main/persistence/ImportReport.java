@@ -0,0 +1,82 @@
+package persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Represents the outcome of importing a CSV file into an inventory: how many rows were imported
+// and rejected, and the first rejected rows with the reason each was rejected.
+public class ImportReport {
+    private long rowsImported;
+    private long rowsRejected;
+    private final int maxReported; // rejected rows kept at most
+    private final List<RejectedRow> rejectedRows = new ArrayList<>();
+
+    // Represents a row that was not imported
+    public static final class RejectedRow {
+        private final long line;
+        private final String reason;
+        private final String text;
+
+        RejectedRow(long line, String reason, String text) {
+            this.line = line;
+            this.reason = reason;
+            this.text = text;
+        }
+
+        // EFFECTS: returns the number of the line the row starts on, counting from 1
+        public long getLine() {
+            return line;
+        }
+
+        // EFFECTS: returns why the row was rejected
+        public String getReason() {
+            return reason;
+        }
+
+        // EFFECTS: returns the text of the row
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + reason + ": " + text;
+        }
+    }
+
+    // EFFECTS: constructs an empty report keeping up to maxReported rejected rows
+    ImportReport(int maxReported) {
+        this.maxReported = maxReported;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts rows imported rows
+    void addImported(long rows) {
+        rowsImported += rows;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts a rejected row, keeping it if fewer than maxReported are kept
+    void addRejected(long line, String reason, String text) {
+        rowsRejected++;
+        if (rejectedRows.size() < maxReported) {
+            rejectedRows.add(new RejectedRow(line, reason, text));
+        }
+    }
+
+    // EFFECTS: returns the number of rows imported
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    // EFFECTS: returns the number of rows rejected
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    // EFFECTS: returns the first rejected rows, in file order; there may be more than these
+    public List<RejectedRow> getRejectedRows() {
+        return Collections.unmodifiableList(rejectedRows);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,174 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+// Represents a writer of JSON tokens straight to a Writer, the counterpart of JsonTokenizer, so
+// that a document can be written while walking the objects it describes without building a tree
+// or a string of it first.
+//
+// The caller opens objects and arrays, names members with name and writes values; commas are
+// added between members and elements. With an indent of 0 the output has no whitespace at all;
+// otherwise it is laid out like org.json's toString(indent).
+class JsonEmitter {
+    private final Writer out;
+    private final int indent; // spaces per nesting level, or 0 for compact output
+    private boolean[] empty = new boolean[16]; // per nesting level, true until it has a member or element
+    private int depth; // number of objects and arrays open
+    private boolean afterName; // true if a member name was just written
+    private char[] lineBreak = {'\n'}; // a line break followed by enough spaces for the deepest level so far
+
+    // REQUIRES: indent >= 0
+    // EFFECTS: constructs an emitter writing to out, indenting nested levels by indent spaces
+    JsonEmitter(Writer out, int indent) {
+        this.out = out;
+        this.indent = indent;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the start of an object
+    void beginObject() throws IOException {
+        open('{');
+    }
+
+    // REQUIRES: an object is open
+    // MODIFIES: this
+    // EFFECTS: writes the end of the innermost object
+    void endObject() throws IOException {
+        close('}');
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the start of an array
+    void beginArray() throws IOException {
+        open('[');
+    }
+
+    // REQUIRES: an array is open
+    // MODIFIES: this
+    // EFFECTS: writes the end of the innermost array
+    void endArray() throws IOException {
+        close(']');
+    }
+
+    // REQUIRES: an object is open
+    // MODIFIES: this
+    // EFFECTS: writes the name of the next member of the innermost object
+    void name(String name) throws IOException {
+        startValue();
+        writeString(name);
+        out.write(indent > 0 ? ": " : ":");
+        afterName = true;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes a string value
+    void value(String value) throws IOException {
+        startValue();
+        writeString(value);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes a number value
+    void value(long value) throws IOException {
+        startValue();
+        out.write(Long.toString(value));
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the separator and line break that go before a member or element
+    private void startValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) {
+            return;
+        }
+        if (!empty[depth - 1]) {
+            out.write(',');
+        }
+        empty[depth - 1] = false;
+        newLine(depth);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes bracket and starts a nesting level
+    private void open(char bracket) throws IOException {
+        startValue();
+        out.write(bracket);
+        if (depth == empty.length) {
+            empty = Arrays.copyOf(empty, depth * 2);
+        }
+        empty[depth++] = true;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: ends a nesting level and writes bracket, on its own line unless the level was empty
+    private void close(char bracket) throws IOException {
+        depth--;
+        if (!empty[depth]) {
+            newLine(depth);
+        }
+        out.write(bracket);
+    }
+
+    // EFFECTS: starts a new line indented for the given level, unless the output is compact
+    private void newLine(int level) throws IOException {
+        if (indent == 0) {
+            return;
+        }
+        int length = 1 + level * indent;
+        if (length > lineBreak.length) {
+            lineBreak = Arrays.copyOf(lineBreak, length * 2);
+            Arrays.fill(lineBreak, 1, lineBreak.length, ' ');
+        }
+        out.write(lineBreak, 0, length);
+    }
+
+    // EFFECTS: writes s as a quoted JSON string, escaping quotes, backslashes and control characters
+    private void writeString(String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                out.write(s, start, i - start);
+                writeEscape(c);
+                start = i + 1;
+            }
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+
+    // EFFECTS: writes the escape sequence for c
+    private void writeEscape(char c) throws IOException {
+        switch (c) {
+            case '"':
+                out.write("\\\"");
+                break;
+            case '\\':
+                out.write("\\\\");
+                break;
+            case '\n':
+                out.write("\\n");
+                break;
+            case '\r':
+                out.write("\\r");
+                break;
+            case '\t':
+                out.write("\\t");
+                break;
+            case '\b':
+                out.write("\\b");
+                break;
+            case '\f':
+                out.write("\\f");
+                break;
+            default:
+                out.write(String.format("\\u%04x", (int) c));
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package persistence;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Represents the top level of a MasterBuilder JSON document held in memory, or mapped, as UTF-8
+// bytes: the user name, the log generation, and where its inventories and builds start and end.
+//
+// The scan looks only at quotes, backslashes, brackets and commas, none of which can occur inside
+// a multi-byte UTF-8 character, so it finds the boundaries without decoding any piece. Consecutive
+// elements of each array are grouped into runs of about RUN_BYTES, and each run can then be
+// parsed on its own, as a JSON array, while the others are parsed by other threads.
+final class JsonLayout {
+    static final int RUN_BYTES = 1 << 20;
+
+    private final ByteBuffer bytes;
+    private int position; // next unscanned byte
+    private int lastValueEnd; // end of the last value skipped
+    private String userName; // user name, or null if there is none
+    private long logGeneration; // generation of MutationLog recorded in the document, or 0
+    private final Runs inventories = new Runs();
+    private final Runs builds = new Runs();
+    private final List<String> inventoryNames = new ArrayList<>(); // name of each inventory, or null
+    private final Runs inventoryPieces = new Runs(); // pieces array of each inventory, or -1 to -1
+
+    // Represents runs of consecutive array elements, each from the start of its first element to
+    // the end of its last
+    static final class Runs {
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int size;
+
+        // MODIFIES: this
+        // EFFECTS: appends a run
+        private void add(int start, int end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        // EFFECTS: returns the number of runs
+        int size() {
+            return size;
+        }
+    }
+
+    private JsonLayout(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    // EFFECTS: scans the document held in bytes, from index 0 to the limit, and returns its
+    // layout; throws JSONException if its top level is not a well-formed object with a user name
+    static JsonLayout scan(ByteBuffer bytes) throws IOException {
+        JsonLayout layout = new JsonLayout(bytes);
+        layout.scanDocument();
+        return layout;
+    }
+
+    // EFFECTS: returns the user name
+    String getUserName() {
+        return userName;
+    }
+
+    // EFFECTS: returns the generation of MutationLog recorded in the document, or 0
+    long getLogGeneration() {
+        return logGeneration;
+    }
+
+    // EFFECTS: returns the runs of inventories
+    Runs getInventories() {
+        return inventories;
+    }
+
+    // EFFECTS: returns the runs of builds
+    Runs getBuilds() {
+        return builds;
+    }
+
+    // EFFECTS: returns the name of each inventory, in order, or null for one without a name
+    List<String> getInventoryNames() {
+        return inventoryNames;
+    }
+
+    // EFFECTS: returns the index at which the pieces array of inventory i starts, or -1 if it
+    // has none
+    int getPiecesStart(int i) {
+        return inventoryPieces.starts[i];
+    }
+
+    // EFFECTS: returns the index just past the end of the pieces array of inventory i
+    int getPiecesEnd(int i) {
+        return inventoryPieces.ends[i];
+    }
+
+    // EFFECTS: opens a tokenizer reading run i of runs as a JSON array
+    JsonTokenizer openRun(Runs runs, int i) {
+        byte[] run = new byte[runs.ends[i] - runs.starts[i] + 2];
+        run[0] = '[';
+        bytes.get(runs.starts[i], run, 1, run.length - 2);
+        run[run.length - 1] = ']';
+        return new JsonTokenizer(new InputStreamReader(new ByteArrayInputStream(run), StandardCharsets.UTF_8));
+    }
+
+    // MODIFIES: this
+    // EFFECTS: scans the top-level object, recording its members
+    private void scanDocument() throws IOException {
+        expect('{');
+        if (!endOf('}')) {
+            do {
+                skipWhitespace();
+                int keyStart = position;
+                skipString();
+                String key = decodeString(keyStart, position);
+                expect(':');
+                scanMember(key);
+            } while (next('}'));
+        }
+        skipWhitespace();
+        if (position < bytes.limit()) {
+            throw syntaxError("Unexpected text after the document");
+        }
+        if (userName == null) {
+            throw new JSONException("JSONObject[\"userName\"] not found.");
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: scans the value of the top-level member named key
+    private void scanMember(String key) throws IOException {
+        skipWhitespace();
+        int start = position;
+        switch (key) {
+            case "userName":
+                skipValue();
+                try (JsonTokenizer json = open(start, position)) {
+                    userName = json.nextString();
+                }
+                break;
+            case MutationLog.GENERATION_KEY:
+                skipValue();
+                try (JsonTokenizer json = open(start, position)) {
+                    logGeneration = json.nextLong();
+                }
+                break;
+            case "inventories":
+                scanArray(inventories, true);
+                break;
+            case "builds":
+                scanArray(builds, false);
+                break;
+            default:
+                skipValue();
+        }
+    }
+
+    // MODIFIES: this, runs
+    // EFFECTS: scans an array, grouping its elements into runs of about RUN_BYTES; records the
+    // header of each element if they are inventories
+    private void scanArray(Runs runs, boolean inventoryArray) throws IOException {
+        expect('[');
+        if (endOf(']')) {
+            return;
+        }
+        int runStart = -1;
+        do {
+            skipWhitespace();
+            if (runStart < 0) {
+                runStart = position;
+            }
+            if (inventoryArray) {
+                scanInventory();
+            } else {
+                skipValue();
+            }
+            if (position - runStart >= RUN_BYTES) {
+                runs.add(runStart, position);
+                runStart = -1;
+            }
+        } while (next(']'));
+        if (runStart >= 0) {
+            runs.add(runStart, lastValueEnd);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: scans the inventory that starts at the current position, recording its name and
+    // where its pieces are; records a null name if it has none, and no pieces if it has none
+    private void scanInventory() throws IOException {
+        String name = null;
+        int piecesStart = -1;
+        int piecesEnd = -1;
+        if (position < bytes.limit() && bytes.get(position) != '{') {
+            skipValue();
+        } else {
+            expect('{');
+            if (!endOf('}')) {
+                do {
+                    skipWhitespace();
+                    int keyStart = position;
+                    skipString();
+                    String key = decodeString(keyStart, position);
+                    expect(':');
+                    skipWhitespace();
+                    int valueStart = position;
+                    if (key.equals("collectionName")) {
+                        skipString();
+                        name = decodeString(valueStart, position);
+                    } else {
+                        skipValue();
+                        if (key.equals("pieces")) {
+                            piecesStart = valueStart;
+                            piecesEnd = position;
+                        }
+                    }
+                } while (next('}'));
+            }
+            lastValueEnd = position;
+        }
+        inventoryNames.add(name);
+        inventoryPieces.add(piecesStart, piecesEnd);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: skips the value that starts at the current position
+    private void skipValue() {
+        skipWhitespace();
+        if (position == bytes.limit()) {
+            throw syntaxError("Unexpected end of document");
+        }
+        byte b = bytes.get(position);
+        if (b == '"') {
+            skipString();
+        } else if (b == '{' || b == '[') {
+            skipNested();
+        } else {
+            int start = position;
+            while (position < bytes.limit() && !isDelimiter(bytes.get(position))) {
+                position++;
+            }
+            if (position == start) {
+                throw syntaxError("Expected a value");
+            }
+        }
+        lastValueEnd = position;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: skips the object or array that starts at the current position
+    private void skipNested() {
+        int depth = 0;
+        while (position < bytes.limit()) {
+            byte b = bytes.get(position);
+            if (b == '"') {
+                skipString();
+                continue;
+            }
+            position++;
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && --depth == 0) {
+                return;
+            }
+        }
+        throw syntaxError("Unexpected end of document");
+    }
+
+    // MODIFIES: this
+    // EFFECTS: skips the string that starts at the current position
+    private void skipString() {
+        if (position == bytes.limit() || bytes.get(position) != '"') {
+            throw syntaxError("Expected '\"'");
+        }
+        position++;
+        while (position < bytes.limit()) {
+            byte b = bytes.get(position++);
+            if (b == '"') {
+                return;
+            } else if (b == '\\') {
+                position++;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    // EFFECTS: returns the string written from start to end, quotes included
+    private String decodeString(int start, int end) throws IOException {
+        for (int i = start + 1; i < end - 1; i++) {
+            if (bytes.get(i) == '\\') {
+                try (JsonTokenizer json = open(start, end)) {
+                    return json.nextString();
+                }
+            }
+        }
+        byte[] text = new byte[end - start - 2];
+        bytes.get(start + 1, text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    // EFFECTS: opens a tokenizer over the bytes from start to end
+    private JsonTokenizer open(int start, int end) {
+        byte[] text = new byte[end - start];
+        bytes.get(start, text);
+        return new JsonTokenizer(new InputStreamReader(new ByteArrayInputStream(text), StandardCharsets.UTF_8));
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the , before the next member or element and returns true, or reads close and
+    // returns false
+    private boolean next(char close) {
+        skipWhitespace();
+        if (position < bytes.limit() && bytes.get(position) == ',') {
+            position++;
+            return true;
+        }
+        expect(close);
+        return false;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns true and reads close if it comes next; otherwise returns false
+    private boolean endOf(char close) {
+        skipWhitespace();
+        if (position < bytes.limit() && bytes.get(position) == close) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: skips whitespace and reads c, failing if the next byte is anything else
+    private void expect(char c) {
+        skipWhitespace();
+        if (position == bytes.limit() || bytes.get(position) != c) {
+            throw syntaxError("Expected '" + c + "'");
+        }
+        position++;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: skips spaces, tabs and line breaks
+    private void skipWhitespace() {
+        while (position < bytes.limit() && isWhitespace(bytes.get(position))) {
+            position++;
+        }
+    }
+
+    // EFFECTS: returns true if b is a space, tab or line break
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    // EFFECTS: returns true if b can end a number or literal
+    private static boolean isDelimiter(byte b) {
+        return b == ',' || b == '}' || b == ']' || isWhitespace(b);
+    }
+
+    // EFFECTS: returns an exception describing a syntax error at the current position
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at byte " + position);
+    }
+}
\ No newline at end of file
@@ -1,132 +1,453 @@
 package persistence;
 
+import model.BulkEventScope;
+import model.EventLog;
+import model.EventType;
 import model.LegoInventory;
 import model.LegoPiece;
 import model.MasterBuilder;
+import model.PieceSource;
+import model.PieceStorage;
 import model.Build;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.stream.Stream;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
 
-import org.json.*;
+import org.json.JSONException;
 
-// Represents a reader that reads MasterBuilder data from JSON file
-public class JsonReader {
+// Represents a reader that reads MasterBuilder data from JSON file.
+// The file is parsed as a stream of tokens and model objects are created as their JSON is read,
+// so reading never holds the text of the file or a JSON tree of it in memory. A compressed file
+// is recognized by its first bytes and decompressed as it is read (see Compression).
+// A reader that has opened files with readLazy keeps them open until it is closed.
+public class JsonReader implements Closeable {
     private String source;
+    private long logGeneration; // generation of MutationLog recorded in the last file read, or 0
+    private final List<FileChannel> openFiles = new ArrayList<>(); // files kept open by readLazy
+    private final List<LegoInventory> pagedInventories = new ArrayList<>(); // inventories reading from them
 
     // EFFECTS: constructs reader to read from source file
     public JsonReader(String source) {
         this.source = source;
     }
 
-    // EFFECTS: reads MasterBuilder from file and returns it;
+    // EFFECTS: reads MasterBuilder from file and returns it, logging one summary event
+    // instead of an event per inventory, build and piece;
     // throws IOException if an error occurs reading data from file
     public MasterBuilder read() throws IOException {
-        String jsonData = readFile(source);
-        JSONObject jsonObject = new JSONObject(jsonData);
-        return parseMasterBuilder(jsonObject);
+        BulkEventScope scope = EventLog.getInstance().openBulkScope(
+                "Loaded {0} pieces into {1} inventories and {2} builds from " + source,
+                EventType.INVENTORY_PIECE_ADDED, EventType.INVENTORY_ADDED, EventType.BUILD_ADDED);
+        try {
+            return readFile(source);
+        } finally {
+            scope.close();
+        }
+    }
+
+    // EFFECTS: reads MasterBuilder from file like read, but parses its inventories and builds
+    // on several threads at the same time and adds them in the order they appear in the file;
+    // the whole file is held in memory while it is parsed, decompressed if it is compressed, and
+    // a single inventory is parsed by one thread. Throws IOException if an error occurs reading data from file
+    public MasterBuilder readParallel() throws IOException {
+        try (BulkEventScope scope = EventLog.getInstance().openBulkScope(
+                "Loaded {0} pieces into {1} inventories and {2} builds from " + source,
+                EventType.INVENTORY_PIECE_ADDED, EventType.INVENTORY_ADDED, EventType.BUILD_ADDED)) {
+            JsonLayout layout;
+            try (FileChannel channel = FileChannel.open(Paths.get(source), StandardOpenOption.READ)) {
+                if (Compression.detect(channel) == Compression.NONE) {
+                    layout = JsonLayout.scan(map(channel));
+                } else {
+                    try (InputStream in = Compression.decompress(Channels.newInputStream(channel))) {
+                        layout = JsonLayout.scan(ByteBuffer.wrap(in.readAllBytes()));
+                    }
+                }
+            }
+            logGeneration = layout.getLogGeneration();
+            JsonLayout.Runs inventoryRuns = layout.getInventories();
+            JsonLayout.Runs buildRuns = layout.getBuilds();
+            List<List<LegoInventory>> inventories = new ArrayList<>(Collections.nCopies(inventoryRuns.size(), null));
+            List<List<Build>> builds = new ArrayList<>(Collections.nCopies(buildRuns.size(), null));
+            List<ParallelLoad.Section> sections = new ArrayList<>();
+            for (int i = 0; i < inventoryRuns.size(); i++) {
+                int run = i;
+                sections.add(() -> {
+                    List<LegoInventory> parsed = new ArrayList<>();
+                    try (JsonTokenizer json = layout.openRun(inventoryRuns, run)) {
+                        addInventories(parsed, json);
+                        json.endDocument();
+                    }
+                    inventories.set(run, parsed);
+                });
+            }
+            for (int i = 0; i < buildRuns.size(); i++) {
+                int run = i;
+                sections.add(() -> {
+                    List<Build> parsed = new ArrayList<>();
+                    try (JsonTokenizer json = layout.openRun(buildRuns, run)) {
+                        addBuilds(parsed, json);
+                        json.endDocument();
+                    }
+                    builds.set(run, parsed);
+                });
+            }
+            ParallelLoad.run(sections, scope);
+
+            MasterBuilder masterBuilder = new MasterBuilder(layout.getUserName());
+            masterBuilder.restore(concat(inventories), concat(builds));
+            return masterBuilder;
+        }
+    }
+
+    // EFFECTS: opens MasterBuilder from file reading only the names of its inventories and its
+    // builds, and returns it, logging one summary event; the pieces of each inventory are read
+    // from the file when first needed and may be dropped from memory again while unchanged (see
+    // LegoInventory.paged). The file is kept open for that until this reader is closed, so it can
+    // be replaced by a new save meanwhile where the platform allows it, but must not be written
+    // in place. A compressed file cannot be read from the middle, so it is read in full like
+    // read. Throws IOException if an error occurs reading data from file
+    public MasterBuilder readLazy() throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(source), StandardOpenOption.READ)) {
+            if (Compression.detect(channel) != Compression.NONE) {
+                return read();
+            }
+        }
+        BulkEventScope scope = EventLog.getInstance().openBulkScope(
+                "Opened {0} inventories and {1} builds from " + source,
+                EventType.INVENTORY_ADDED, EventType.BUILD_ADDED);
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(source), StandardOpenOption.READ);
+            try {
+                JsonLayout layout = JsonLayout.scan(map(channel));
+                logGeneration = layout.getLogGeneration();
+                List<LegoInventory> inventories = new ArrayList<>();
+                List<LegoInventory> paged = new ArrayList<>();
+                for (int i = 0; i < layout.getInventoryNames().size(); i++) {
+                    String name = layout.getInventoryNames().get(i);
+                    if (name == null) {
+                        throw new JSONException("JSONObject[\"collectionName\"] not found.");
+                    }
+                    int start = layout.getPiecesStart(i);
+                    if (start < 0) {
+                        inventories.add(LegoInventory.paged(name, sink -> { }));
+                    } else {
+                        LegoInventory inventory = LegoInventory.paged(name,
+                                new FilePieces(channel, start, layout.getPiecesEnd(i) - start));
+                        inventories.add(inventory);
+                        paged.add(inventory);
+                    }
+                }
+                List<Build> builds = new ArrayList<>();
+                for (int i = 0; i < layout.getBuilds().size(); i++) {
+                    try (JsonTokenizer json = layout.openRun(layout.getBuilds(), i)) {
+                        addBuilds(builds, json);
+                        json.endDocument();
+                    }
+                }
+                MasterBuilder masterBuilder = new MasterBuilder(layout.getUserName());
+                masterBuilder.restore(inventories, builds);
+                openFiles.add(channel);
+                pagedInventories.addAll(paged);
+                return masterBuilder;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the pieces of every inventory opened by readLazy that are not in memory and
+    // keeps them there, then closes the files readLazy kept open. Throws IOException if the
+    // pieces cannot be read, in which case the files are closed all the same
+    @Override
+    public void close() throws IOException {
+        try {
+            for (LegoInventory inventory : pagedInventories) {
+                inventory.detachSource();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pagedInventories.clear();
+            for (FileChannel channel : openFiles) {
+                channel.close();
+            }
+            openFiles.clear();
+        }
     }
 
-    // EFFECTS: reads source file as string and returns it
-    private String readFile(String source) throws IOException {
-        StringBuilder contentBuilder = new StringBuilder();
+    // Represents the pieces array of an inventory in a file opened by readLazy
+    private static final class FilePieces implements PieceSource {
+        private final FileChannel channel;
+        private final long start;
+        private final int length;
+
+        FilePieces(FileChannel channel, long start, int length) {
+            this.channel = channel;
+            this.start = start;
+            this.length = length;
+        }
+
+        // EFFECTS: reads the pieces array from the file and passes each piece to sink;
+        // throws UncheckedIOException if the file cannot be read
+        @Override
+        public void readPieces(Consumer<LegoPiece> sink) {
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            try {
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, start + bytes.position()) < 0) {
+                        throw new EOFException("File ended before the pieces of an inventory");
+                    }
+                }
+                try (JsonTokenizer json = new JsonTokenizer(new InputStreamReader(
+                        new ByteArrayInputStream(bytes.array()), StandardCharsets.UTF_8))) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        sink.accept(parsePiece(json));
+                    }
+                    json.endDocument();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // EFFECTS: returns a read-only mapping of the whole file open in channel
+    private ByteBuffer map(FileChannel channel) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("File too large to map: " + source);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    // EFFECTS: returns the elements of lists, in order, as one list
+    private static <T> List<T> concat(List<List<T>> lists) {
+        List<T> all = new ArrayList<>();
+        for (List<T> list : lists) {
+            all.addAll(list);
+        }
+        return all;
+    }
 
-        try (Stream<String> stream = Files.lines(Paths.get(source), StandardCharsets.UTF_8)) {
-            stream.forEach(contentBuilder::append);
+    // EFFECTS: reads MasterBuilder from the snapshot in source file, then replays the changes
+    // recorded after it by a MutationLog kept next to it, logging one summary event;
+    // throws IOException if an error occurs reading data from the files
+    public MasterBuilder recover() throws IOException {
+        BulkEventScope scope = EventLog.getInstance().openBulkScope(
+                "Recovered {0} pieces into {1} inventories and {2} builds from " + source,
+                EventType.INVENTORY_PIECE_ADDED, EventType.INVENTORY_ADDED, EventType.BUILD_ADDED);
+        try {
+            MasterBuilder masterBuilder = readFile(source);
+            if (logGeneration > 0) {
+                MutationLog.replay(masterBuilder, Paths.get(source), logGeneration);
+            }
+            return masterBuilder;
+        } finally {
+            scope.close();
         }
+    }
 
-        return contentBuilder.toString();
+    // MODIFIES: this
+    // EFFECTS: parses MasterBuilder from source file and returns it
+    private MasterBuilder readFile(String source) throws IOException {
+        try (JsonTokenizer json = new JsonTokenizer(
+                new InputStreamReader(Compression.decompress(Files.newInputStream(Paths.get(source))),
+                        StandardCharsets.UTF_8))) {
+            MasterBuilder masterBuilder = parseMasterBuilder(json);
+            json.endDocument();
+            return masterBuilder;
+        }
     }
 
-    // EFFECTS: parses MasterBuilder from JSON object and returns it
-    private MasterBuilder parseMasterBuilder(JSONObject jsonObject) {
-        String name = jsonObject.getString("userName");
+    // MODIFIES: this
+    // EFFECTS: parses MasterBuilder from JSON object and returns it; inventories and builds are
+    // added once the user name is known, since members may come in any order
+    private MasterBuilder parseMasterBuilder(JsonTokenizer json) throws IOException {
+        String name = null;
+        List<LegoInventory> inventories = new ArrayList<>();
+        List<Build> builds = new ArrayList<>();
+        logGeneration = 0;
+        json.beginObject();
+        for (String key = json.nextKey(); key != null; key = json.nextKey()) {
+            switch (key) {
+                case "userName":
+                    name = json.nextString();
+                    break;
+                case "inventories":
+                    addInventories(inventories, json);
+                    break;
+                case "builds":
+                    addBuilds(builds, json);
+                    break;
+                case MutationLog.GENERATION_KEY:
+                    logGeneration = json.nextLong();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        if (name == null) {
+            throw new JSONException("JSONObject[\"userName\"] not found.");
+        }
         MasterBuilder masterBuilder = new MasterBuilder(name);
-        addInventories(masterBuilder, jsonObject);
-        addBuilds(masterBuilder, jsonObject);
+        for (LegoInventory inventory : inventories) {
+            masterBuilder.addInventory(inventory);
+        }
+        for (Build build : builds) {
+            masterBuilder.addBuild(build);
+        }
         return masterBuilder;
     }
 
-    // MODIFIES: masterBuilder
-    // EFFECTS: parses inventories from JSON object and adds them to masterBuilder
-    private void addInventories(MasterBuilder masterBuilder, JSONObject jsonObject) {
-        JSONArray jsonArray = jsonObject.getJSONArray("inventories");
-        for (Object json : jsonArray) {
-            JSONObject nextInventory = (JSONObject) json;
-            addInventory(masterBuilder, nextInventory);
+    // MODIFIES: inventories
+    // EFFECTS: parses inventories from JSON array and adds them to inventories
+    private static void addInventories(List<LegoInventory> inventories, JsonTokenizer json) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            inventories.add(parseInventory(json, PieceStorage.LIST));
         }
     }
 
-    // MODIFIES: masterBuilder
-    // EFFECTS: parses inventory from JSON object and adds it to masterBuilder
-    private void addInventory(MasterBuilder masterBuilder, JSONObject jsonObject) {
-        String name = jsonObject.getString("collectionName");
-        LegoInventory inventory = new LegoInventory(name);
-        addPieces(inventory, jsonObject);
-        masterBuilder.addInventory(inventory);
+    // EFFECTS: parses inventory from JSON object and returns it, storing its pieces the given way
+    // unless the object names a storage before its collectionName, as MutationLog snapshots do
+    static LegoInventory parseInventory(JsonTokenizer json, PieceStorage storage) throws IOException {
+        List<LegoPiece> pieces = null;
+        LegoInventory inventory = null;
+        PieceStorage stored = storage;
+        json.beginObject();
+        for (String key = json.nextKey(); key != null; key = json.nextKey()) {
+            if (key.equals("storage") && inventory == null) {
+                stored = PieceStorage.valueOf(json.nextString());
+            } else if (key.equals("collectionName")) {
+                inventory = new LegoInventory(json.nextString(), stored);
+                if (pieces != null) {
+                    addPieces(inventory, pieces);
+                }
+            } else if (key.equals("pieces")) {
+                pieces = parsePieces(inventory, json);
+            } else {
+                json.skipValue();
+            }
+        }
+        if (inventory == null) {
+            throw new JSONException("JSONObject[\"collectionName\"] not found.");
+        }
+        return inventory;
     }
 
     // MODIFIES: inventory
-    // EFFECTS: parses Lego pieces from JSON object and adds them to inventory
-    private void addPieces(LegoInventory inventory, JSONObject jsonObject) {
-        JSONArray jsonArray = jsonObject.getJSONArray("pieces");
-        for (Object json : jsonArray) {
-            JSONObject nextPiece = (JSONObject) json;
-            addPiece(inventory, nextPiece);
+    // EFFECTS: parses Lego pieces from JSON array and adds them to inventory; returns the pieces
+    // instead if inventory is still null because its name has not been read yet
+    private static List<LegoPiece> parsePieces(LegoInventory inventory, JsonTokenizer json) throws IOException {
+        List<LegoPiece> pending = inventory == null ? new ArrayList<>() : null;
+        json.beginArray();
+        while (json.hasNext()) {
+            LegoPiece piece = parsePiece(json);
+            if (inventory == null) {
+                pending.add(piece);
+            } else {
+                inventory.addPiece(piece);
+            }
         }
+        return pending;
     }
 
     // MODIFIES: inventory
-    // EFFECTS: parses Lego piece from JSON object and adds it to inventory
-    private void addPiece(LegoInventory inventory, JSONObject jsonObject) {
-        String partType = jsonObject.getString("partType");
-        String color = jsonObject.getString("color");
-        String dimensions = jsonObject.getString("dimensions");
-        int quantity = jsonObject.getInt("quantity");
-        LegoPiece piece = new LegoPiece(partType, color, dimensions, quantity);
-        inventory.addPiece(piece);
-    }
-
-    // MODIFIES: masterBuilder
-    // EFFECTS: parses builds from JSON object and adds them to masterBuilder
-    private void addBuilds(MasterBuilder masterBuilder, JSONObject jsonObject) {
-        JSONArray jsonArray = jsonObject.getJSONArray("builds");
-        for (Object json : jsonArray) {
-            JSONObject nextBuild = (JSONObject) json;
-            addBuild(masterBuilder, nextBuild);
-        }
-    }
-
-    // MODIFIES: masterBuilder
-    // EFFECTS: parses build from JSON object and adds it to masterBuilder
-    private void addBuild(MasterBuilder masterBuilder, JSONObject jsonObject) {
-        int buildId = jsonObject.getInt("buildId");
-        Build build = new Build(buildId);
-        addRequiredPieces(build, jsonObject);
-        masterBuilder.addBuild(build);
-    }
-
-    // MODIFIES: build
-    // EFFECTS: parses required Lego pieces from JSON object and adds them to build
-    private void addRequiredPieces(Build build, JSONObject jsonObject) {
-        JSONArray jsonArray = jsonObject.getJSONArray("requiredPieces");
-        for (Object json : jsonArray) {
-            JSONObject nextPiece = (JSONObject) json;
-            addRequiredPiece(build, nextPiece);
-        }
-    }
-
-    // MODIFIES: build
-    // EFFECTS: parses required Lego piece from JSON object and adds it to build
-    private void addRequiredPiece(Build build, JSONObject jsonObject) {
-        String partType = jsonObject.getString("partType");
-        String color = jsonObject.getString("color");
-        String dimensions = jsonObject.getString("dimensions");
-        int quantity = jsonObject.getInt("quantity");
-        LegoPiece piece = new LegoPiece(partType, color, dimensions, quantity);
-        build.addRequiredPiece(piece);
+    // EFFECTS: adds pieces to inventory
+    private static void addPieces(LegoInventory inventory, List<LegoPiece> pieces) {
+        for (LegoPiece piece : pieces) {
+            inventory.addPiece(piece);
+        }
+    }
+
+    // EFFECTS: parses Lego piece from JSON object and returns it
+    private static LegoPiece parsePiece(JsonTokenizer json) throws IOException {
+        String partType = null;
+        String color = null;
+        String dimensions = null;
+        long quantity = 0;
+        boolean hasQuantity = false; // true once quantity is read; it may be negative
+        json.beginObject();
+        for (String key = json.nextKey(); key != null; key = json.nextKey()) {
+            switch (key) {
+                case "partType":
+                    partType = json.nextString();
+                    break;
+                case "color":
+                    color = json.nextString();
+                    break;
+                case "dimensions":
+                    dimensions = json.nextString();
+                    break;
+                case "quantity":
+                    quantity = json.nextLong();
+                    hasQuantity = true;
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        if (partType == null || color == null || dimensions == null || !hasQuantity) {
+            throw new JSONException("Lego piece needs partType, color, dimensions and quantity");
+        }
+        return new LegoPiece(partType, color, dimensions, (int) quantity);
+    }
+
+    // MODIFIES: builds
+    // EFFECTS: parses builds from JSON array and adds them to builds
+    private static void addBuilds(List<Build> builds, JsonTokenizer json) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            builds.add(parseBuild(json));
+        }
+    }
+
+    // EFFECTS: parses build from JSON object and returns it
+    static Build parseBuild(JsonTokenizer json) throws IOException {
+        long buildId = 0;
+        boolean hasBuildId = false; // true once buildId is read; it may be negative
+        List<LegoPiece> requiredPieces = new ArrayList<>();
+        json.beginObject();
+        for (String key = json.nextKey(); key != null; key = json.nextKey()) {
+            if (key.equals("buildId")) {
+                buildId = json.nextLong();
+                hasBuildId = true;
+            } else if (key.equals("requiredPieces")) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    requiredPieces.add(parsePiece(json));
+                }
+            } else {
+                json.skipValue();
+            }
+        }
+        if (!hasBuildId) {
+            throw new JSONException("JSONObject[\"buildId\"] not found.");
+        }
+        Build build = new Build((int) buildId);
+        for (LegoPiece piece : requiredPieces) {
+            build.addRequiredPiece(piece);
+        }
+        return build;
     }
 }
\ No newline at end of file
@@ -0,0 +1,265 @@
+package persistence;
+
+import org.json.JSONException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+// Represents a pull parser that reads JSON from a Reader one token at a time, so that a document
+// can be turned into objects as it is read without holding its text or a tree of it in memory.
+//
+// The caller walks the document: beginObject, then nextKey until it returns null; beginArray,
+// then hasNext before each element. Values are read with nextString and nextLong, or skipped with
+// skipValue. Syntax errors are reported with JSONException, like org.json does.
+class JsonTokenizer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position; // next unread character in buffer
+    private int limit; // number of characters in buffer
+    private long consumed; // characters read before the start of buffer
+    private boolean first; // true if no element or member has been read since the last { or [
+    private final StringBuilder text = new StringBuilder(); // reused by nextString and nextLong
+
+    // EFFECTS: constructs a tokenizer reading from in
+    JsonTokenizer(Reader in) {
+        this.in = in;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the { that starts an object
+    void beginObject() throws IOException {
+        expect('{');
+        first = true;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the next member name of the current object and the : after it, or reads the
+    // closing } and returns null if the object has no more members
+    String nextKey() throws IOException {
+        if (endOf('}')) {
+            return null;
+        }
+        String key = nextString();
+        expect(':');
+        return key;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the [ that starts an array
+    void beginArray() throws IOException {
+        expect('[');
+        first = true;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns true if the current array has another element, reading the , before it;
+    // otherwise reads the closing ] and returns false
+    boolean hasNext() throws IOException {
+        return !endOf(']');
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads a string value and returns it
+    String nextString() throws IOException {
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            if (position == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            int start = position;
+            while (position < limit && buffer[position] != '"' && buffer[position] != '\\') {
+                position++;
+            }
+            text.append(buffer, start, position - start);
+            if (position == limit) {
+                continue;
+            }
+            if (buffer[position++] == '"') {
+                first = false;
+                return text.toString();
+            }
+            text.append(readEscape());
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads an integer value and returns it; a value with a fraction or exponent is
+    // truncated, as org.json's getInt and getLong do
+    long nextLong() throws IOException {
+        skipWhitespace();
+        long start = consumed + position;
+        text.setLength(0);
+        boolean integer = true;
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+') {
+                text.append(c);
+            } else if (c == '.' || c == 'e' || c == 'E') {
+                text.append(c);
+                integer = false;
+            } else {
+                break;
+            }
+            position++;
+        }
+        first = false;
+        try {
+            return integer ? Long.parseLong(text, 0, text.length(), 10) : (long) Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            throw new JSONException("Expected a number at character " + start);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads and discards the next value, whatever its type
+    void skipValue() throws IOException {
+        char c = peek();
+        if (c == '"') {
+            nextString();
+        } else if (c == '{') {
+            beginObject();
+            while (nextKey() != null) {
+                skipValue();
+            }
+        } else if (c == '[') {
+            beginArray();
+            while (hasNext()) {
+                skipValue();
+            }
+        } else {
+            while ((position < limit || fill()) && ",}] \t\r\n".indexOf(buffer[position]) < 0) {
+                position++;
+            }
+        }
+        first = false;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the end of the document, failing if anything but whitespace is left
+    void endDocument() throws IOException {
+        skipWhitespace();
+        if (position < limit) {
+            throw syntaxError("Unexpected text after the document");
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes the underlying reader
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns true and reads close if the current object or array ends here; otherwise
+    // reads the , before the next member or element (unless it is the first) and returns false
+    private boolean endOf(char close) throws IOException {
+        if (peek() == close) {
+            position++;
+            first = false;
+            return true;
+        }
+        if (!first) {
+            expect(',');
+        }
+        first = false;
+        return false;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the escape sequence after a backslash and returns the character it stands for
+    private char readEscape() throws IOException {
+        char c = nextChar();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(nextChar(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Bad \\u escape");
+                    }
+                    code = code * 16 + digit;
+                }
+                return (char) code;
+            default:
+                return c;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: skips whitespace and reads c, failing if the next character is anything else
+    private void expect(char c) throws IOException {
+        if (peek() != c) {
+            throw syntaxError("Expected '" + c + "'");
+        }
+        position++;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: skips whitespace and returns the next character without reading it
+    private char peek() throws IOException {
+        skipWhitespace();
+        if (position == limit) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return buffer[position];
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads and returns the next character
+    private char nextChar() throws IOException {
+        if (position == limit && !fill()) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return buffer[position++];
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads past spaces, tabs and line breaks
+    private void skipWhitespace() throws IOException {
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    // REQUIRES: position == limit
+    // MODIFIES: this
+    // EFFECTS: reads the next block of characters into the buffer; returns false at the end of input
+    private boolean fill() throws IOException {
+        consumed += limit;
+        position = 0;
+        limit = 0;
+        int read = in.read(buffer, 0, buffer.length);
+        while (read == 0) {
+            read = in.read(buffer, 0, buffer.length);
+        }
+        if (read < 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    // EFFECTS: returns an exception describing a syntax error at the current position
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + (consumed + position));
+    }
+}
@@ -3,44 +3,253 @@ package persistence;
 import model.LegoInventory;
 import model.LegoPiece;
 import model.MasterBuilder;
+import model.PieceStorage;
 import model.Build;
-import org.json.JSONObject;
-import java.io.*;
 
-// Represents a writer that writes JSON representation of MasterBuilder to file
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// Represents a writer that writes JSON representation of MasterBuilder to file.
+// The model is walked and written token by token through a large buffer, without building a
+// JSON tree or a string of the whole document first. A destination ending in .gz or .deflate is
+// compressed as it is written (see Compression). The document goes to a temporary file next to
+// the destination and is moved over it when the writer is closed, so the file being replaced is
+// never truncated while something, such as an inventory opened by JsonReader.readLazy, may still
+// be reading it.
 public class JsonWriter {
-    private static final int TAB = 4;
-    private PrintWriter writer;
+    static final int TAB = 4;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private Writer writer;
+    private FileOutputStream file; // the temporary file writer writes to
+    private OutputStream stream; // compressing stream between writer and file, or file itself
+    private boolean written; // true once a whole document has been written since open
     private String destination;
+    private String temporary;
+    private boolean compact;
+    private int compressionLevel;
 
-    // EFFECTS: constructs writer to write to destination file
+    // EFFECTS: constructs writer to write indented JSON to destination file
     public JsonWriter(String destination) {
+        this(destination, false);
+    }
+
+    // EFFECTS: constructs writer to write to destination file, without any whitespace if compact
+    public JsonWriter(String destination, boolean compact) {
+        this(destination, compact, Compression.DEFAULT_LEVEL);
+    }
+
+    // REQUIRES: compressionLevel is Compression.DEFAULT_LEVEL or from 0 to 9
+    // EFFECTS: constructs writer to write to destination file, without any whitespace if compact,
+    // compressing at compressionLevel if the extension of destination selects a compression
+    public JsonWriter(String destination, boolean compact, int compressionLevel) {
         this.destination = destination;
+        this.temporary = destination + ".tmp";
+        this.compact = compact;
+        this.compressionLevel = compressionLevel;
     }
 
     // MODIFIES: this
-    // EFFECTS: opens writer; throws FileNotFoundException if destination file cannot
-    // be opened for writing
+    // EFFECTS: opens writer on the temporary file; throws FileNotFoundException if it cannot
+    // be opened for writing, or UncheckedIOException if its compression header cannot be written
     public void open() throws FileNotFoundException {
-        writer = new PrintWriter(new File(destination));
+        FileOutputStream out = new FileOutputStream(temporary);
+        try {
+            stream = Compression.forFile(destination).compress(out, compressionLevel);
+        } catch (IOException e) {
+            try {
+                out.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException(e);
+        }
+        file = out;
+        written = false;
+        writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
     }
 
     // MODIFIES: this
-    // EFFECTS: writes JSON representation of MasterBuilder to file
+    // EFFECTS: writes JSON representation of MasterBuilder to file;
+    // throws UncheckedIOException if the file cannot be written
     public void write(MasterBuilder masterBuilder) {
-        JSONObject json = masterBuilder.toJson();
-        saveToFile(json.toString(TAB));
+        JsonEmitter json = new JsonEmitter(writer, compact ? 0 : TAB);
+        try {
+            writeMasterBuilder(json, masterBuilder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        written = true;
     }
 
     // MODIFIES: this
-    // EFFECTS: closes writer
+    // EFFECTS: if a whole document was written, flushes writer, waits until the temporary file is
+    // on disk and moves it over the destination file; otherwise, such as after write threw,
+    // deletes the temporary file and leaves the destination file as it was. Closes writer either
+    // way; throws UncheckedIOException if the file cannot be written, moved or deleted
     public void close() {
-        writer.close();
+        try {
+            if (written) {
+                try {
+                    writer.flush();
+                    Compression.finish(stream);
+                    file.getFD().sync();
+                } finally {
+                    writer.close();
+                }
+                DurableFiles.replace(Paths.get(temporary), Paths.get(destination));
+            } else {
+                try {
+                    writer.close();
+                } finally {
+                    Files.deleteIfExists(Paths.get(temporary));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     // MODIFIES: this
-    // EFFECTS: writes string to file
-    private void saveToFile(String json) {
-        writer.print(json);
+    // EFFECTS: writes masterBuilder as a JSON object
+    private void writeMasterBuilder(JsonEmitter json, MasterBuilder masterBuilder) throws IOException {
+        writeDocument(json, masterBuilder.getUserName(), inventories -> {
+            for (LegoInventory inventory : masterBuilder.getInventories()) {
+                writeInventory(inventories, inventory);
+            }
+        }, builds -> {
+            for (Build build : masterBuilder.getBuilds()) {
+                writeBuild(builds, build);
+            }
+        });
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes the JSON object of a whole save: userName, then an array of the inventories
+    // written by inventories, then an array of the builds written by builds. This is the one place
+    // the layout of a save is written, shared by every writer of one
+    static void writeDocument(JsonEmitter json, String userName, DurableFiles.Contents inventories,
+                              DurableFiles.Contents builds) throws IOException {
+        writeDocument(json, userName, inventories, builds, 0);
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes a whole save like writeDocument, followed by the generation of the mutation
+    // log it was written for unless logGeneration is 0
+    static void writeDocument(JsonEmitter json, String userName, DurableFiles.Contents inventories,
+                              DurableFiles.Contents builds, long logGeneration) throws IOException {
+        json.beginObject();
+        json.name("userName");
+        json.value(userName);
+        json.name("inventories");
+        json.beginArray();
+        inventories.writeTo(json);
+        json.endArray();
+        json.name("builds");
+        json.beginArray();
+        builds.writeTo(json);
+        json.endArray();
+        if (logGeneration != 0) {
+            json.name(MutationLog.GENERATION_KEY);
+            json.value(logGeneration);
+        }
+        json.endObject();
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes inventory as a JSON object, holding its lock while its pieces are written
+    static void writeInventory(JsonEmitter json, LegoInventory inventory) throws IOException {
+        writeInventory(json, inventory.getCollectionName(), pieces -> {
+            try {
+                inventory.forEachPiece(piece -> writePiece(pieces, piece));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes an inventory named collectionName as a JSON object, with an array of the
+    // pieces written by pieces
+    static void writeInventory(JsonEmitter json, String collectionName, DurableFiles.Contents pieces)
+            throws IOException {
+        writeInventory(json, collectionName, null, pieces);
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes an inventory like writeInventory, preceded by how it stores its pieces unless
+    // storage is null, so that JsonReader reads the storage before it creates the inventory
+    static void writeInventory(JsonEmitter json, String collectionName, PieceStorage storage,
+                               DurableFiles.Contents pieces) throws IOException {
+        json.beginObject();
+        if (storage != null) {
+            json.name("storage");
+            json.value(storage.name());
+        }
+        json.name("collectionName");
+        json.value(collectionName);
+        json.name("pieces");
+        json.beginArray();
+        pieces.writeTo(json);
+        json.endArray();
+        json.endObject();
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes build as a JSON object
+    static void writeBuild(JsonEmitter json, Build build) throws IOException {
+        writeBuild(json, build.getBuildId(), pieces -> {
+            for (LegoPiece piece : build.getRequiredPieces()) {
+                writePiece(pieces, piece);
+            }
+        });
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes a build with buildId as a JSON object, with an array of the required pieces
+    // written by requiredPieces
+    static void writeBuild(JsonEmitter json, int buildId, DurableFiles.Contents requiredPieces) throws IOException {
+        json.beginObject();
+        json.name("buildId");
+        json.value(buildId);
+        json.name("requiredPieces");
+        json.beginArray();
+        requiredPieces.writeTo(json);
+        json.endArray();
+        json.endObject();
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes piece as a JSON object; throws UncheckedIOException if the file cannot be written
+    private static void writePiece(JsonEmitter json, LegoPiece piece) {
+        try {
+            writePiece(json, piece.getPartType(), piece.getColor(), piece.getDimensions(), piece.getQuantity());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes a piece with the given fields as a JSON object
+    static void writePiece(JsonEmitter json, String partType, String color, String dimensions, int quantity)
+            throws IOException {
+        json.beginObject();
+        json.name("partType");
+        json.value(partType);
+        json.name("color");
+        json.value(color);
+        json.name("dimensions");
+        json.value(dimensions);
+        json.name("quantity");
+        json.value(quantity);
+        json.endObject();
     }
-}
+}
\ No newline at end of file
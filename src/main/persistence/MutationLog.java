@@ -0,0 +1,624 @@
+package persistence;
+
+import model.Build;
+import model.LegoInventory;
+import model.LegoPiece;
+import model.MasterBuilder;
+import model.MutationListener;
+import model.PieceStorage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Represents an append-only, binary write-ahead log of the changes made to a MasterBuilder,
+// kept next to its JSON snapshot so that saving a change costs one small record instead of a
+// rewrite of the whole file.
+//
+// Changes are encoded into an in-memory buffer as they happen; a background thread writes the
+// buffer to the current log file and fsyncs it every flush interval, so one fsync covers every
+// change made since the last. Once the log grows past its compaction size, the full snapshot is
+// written again and a new log file is started.
+//
+// Log files are named <snapshot>.<generation>.wal. A snapshot records the generation of the log
+// that was started with it, so recovery (JsonReader.recover) loads the snapshot and replays that
+// log and every later one. Each record is framed by its length and a CRC32, so a record torn by a
+// crash ends the replay instead of corrupting it. The snapshot and the records of added inventories
+// carry how each inventory stores its pieces, so replayed pieces merge just as they did live.
+public class MutationLog implements MutationListener, AutoCloseable {
+    public static final String GENERATION_KEY = "logGeneration";
+    private static final long DEFAULT_FLUSH_MILLIS = 20;
+    private static final long DEFAULT_COMPACT_BYTES = 4L * 1024 * 1024;
+    private static final int MAGIC = 0x4C545741; // "LTWA"
+    private static final byte VERSION = 2;
+    private static final byte INVENTORY_ADDED = 1;
+    private static final byte PIECE_ADDED = 2;
+    private static final byte PIECE_REMOVED = 3;
+    private static final byte QUANTITY_CHANGED = 4;
+    private static final byte BUILD_ADDED = 5;
+    private static final byte REQUIREMENT_ADDED = 6;
+
+    private final Path snapshot;
+    private final long flushMillis;
+    private final long compactBytes;
+    private final Object ioLock = new Object(); // guards channel and logBytes, taken before this
+    private final Object compactLock = new Object(); // held by one compaction at a time
+    private final Object wakeup = new Object(); // notified to wake the flusher when closing
+    private MasterBuilder builder;
+    private FileChannel channel; // current log file, guarded by ioLock
+    private long generation; // generation of the current log file, guarded by this
+    private long logBytes; // bytes written to the current log file, guarded by ioLock
+    private byte[] pending = new byte[8192]; // encoded records not yet written, guarded by this
+    private int pendingSize; // bytes in use in pending, guarded by this
+    private int recordStart; // offset in pending of the record being encoded, guarded by this
+    private final Map<String, Integer> strings = new HashMap<>(); // ids of strings in the current log
+    private final CRC32 crc = new CRC32();
+    private Thread flusher;
+    private volatile boolean closing;
+    private volatile IOException failure;
+
+    // EFFECTS: constructs a log kept next to the given JSON snapshot file, with default flush
+    // interval and compaction size
+    public MutationLog(String snapshot) {
+        this(snapshot, DEFAULT_FLUSH_MILLIS, DEFAULT_COMPACT_BYTES);
+    }
+
+    // REQUIRES: flushMillis > 0, compactBytes > 0
+    // EFFECTS: constructs a log kept next to the given JSON snapshot file, that fsyncs pending
+    // changes every flushMillis and writes a new snapshot once a log file is over compactBytes
+    public MutationLog(String snapshot, long flushMillis, long compactBytes) {
+        this.snapshot = Paths.get(snapshot);
+        this.flushMillis = flushMillis;
+        this.compactBytes = compactBytes;
+    }
+
+    // REQUIRES: no other thread changes masterBuilder during the call; this log is not attached
+    // MODIFIES: this, masterBuilder, files next to the snapshot
+    // EFFECTS: writes a snapshot of masterBuilder, starts a new log file after every existing one,
+    // records every later change to masterBuilder and starts the background flusher
+    public void attach(MasterBuilder masterBuilder) throws IOException {
+        this.builder = masterBuilder;
+        synchronized (this) {
+            generation = lastGeneration(snapshot);
+        }
+        compact(true);
+        flusher = new Thread(this::run, "mutation-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // EFFECTS: returns the error that stopped the background flusher, or null if there was none
+    public IOException getFailure() {
+        return failure;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes every change recorded so far to the log file and waits until it is on disk
+    public void sync() throws IOException {
+        synchronized (ioLock) {
+            byte[] chunk = takePending();
+            write(chunk);
+            channel.force(false);
+        }
+    }
+
+    // MODIFIES: this, files next to the snapshot
+    // EFFECTS: writes a new snapshot of the attached builder, starts a new log file and deletes
+    // the log files the snapshot replaces
+    public void compact() throws IOException {
+        compact(false);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops the background flusher, writes and fsyncs every recorded change, stops
+    // recording and closes the log file
+    @Override
+    public void close() throws IOException {
+        synchronized (wakeup) {
+            closing = true;
+            wakeup.notifyAll();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        builder.setMutationListener(null);
+        synchronized (ioLock) {
+            sync();
+            channel.close();
+        }
+    }
+
+    @Override
+    public void inventoryAdded(String inventory, PieceStorage storage) {
+        synchronized (this) {
+            begin(INVENTORY_ADDED);
+            writeString(inventory);
+            writeString(storage.name());
+            end();
+        }
+    }
+
+    @Override
+    public void pieceAdded(String inventory, LegoPiece piece) {
+        synchronized (this) {
+            begin(PIECE_ADDED);
+            writeString(inventory);
+            writePiece(piece, piece.getQuantity());
+            end();
+        }
+    }
+
+    @Override
+    public void pieceRemoved(String inventory, LegoPiece piece, int quantity) {
+        synchronized (this) {
+            begin(PIECE_REMOVED);
+            writeString(inventory);
+            writePiece(piece, quantity);
+            end();
+        }
+    }
+
+    @Override
+    public void quantityChanged(String inventory, LegoPiece piece, int before, int after) {
+        synchronized (this) {
+            begin(QUANTITY_CHANGED);
+            writeString(inventory);
+            writePiece(piece, before);
+            writeVarint(after);
+            end();
+        }
+    }
+
+    @Override
+    public void buildAdded(int buildId) {
+        synchronized (this) {
+            begin(BUILD_ADDED);
+            writeVarint(buildId);
+            end();
+        }
+    }
+
+    @Override
+    public void requirementAdded(int buildId, LegoPiece piece) {
+        synchronized (this) {
+            begin(REQUIREMENT_ADDED);
+            writeVarint(buildId);
+            writePiece(piece, piece.getQuantity());
+            end();
+        }
+    }
+
+    // MODIFIES: this, files next to the snapshot
+    // EFFECTS: starts a new log file and writes a snapshot matching the changes recorded in the
+    // older ones, then deletes them; when attaching, also starts recording changes
+    private void compact(boolean attaching) throws IOException {
+        synchronized (compactLock) {
+            SaveService.Snapshot[] copy = new SaveService.Snapshot[1];
+            long[] started = new long[1];
+            IOException[] error = new IOException[1];
+            builder.whileUnchanged(() -> {
+                try {
+                    started[0] = startLog();
+                    copy[0] = SaveService.Snapshot.takeForLog(builder, started[0]);
+                    if (attaching) {
+                        builder.setMutationListener(this);
+                    }
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+            writeSnapshot(copy[0]);
+            deleteLogsBefore(started[0]);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the pending records to the current log file and fsyncs it, then makes a new,
+    // empty log file of the next generation current and returns its generation
+    private long startLog() throws IOException {
+        synchronized (ioLock) {
+            long started;
+            if (channel != null) {
+                sync();
+                channel.close();
+            }
+            synchronized (this) {
+                started = ++generation;
+                strings.clear();
+            }
+            channel = FileChannel.open(logFile(snapshot, started), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(13).putInt(MAGIC).put(VERSION).putLong(started);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+            logBytes = 0;
+            return started;
+        }
+    }
+
+    // MODIFIES: files next to the snapshot
+    // EFFECTS: writes copy to a temporary file, compressed if the name of the snapshot selects a
+    // compression, and moves it over the snapshot once both are on disk, so the snapshot is always
+    // either the old one or the new one
+    private void writeSnapshot(SaveService.Snapshot copy) throws IOException {
+        Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        DurableFiles.write(temp, 0, Compression.forFile(snapshot.toString()), copy::writeTo);
+        DurableFiles.replace(temp, snapshot);
+    }
+
+    // EFFECTS: deletes the log files older than the given generation
+    private void deleteLogsBefore(long oldest) throws IOException {
+        for (Map.Entry<Long, Path> log : logFiles(snapshot).entrySet()) {
+            if (log.getKey() < oldest) {
+                Files.deleteIfExists(log.getValue());
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes and fsyncs pending records every flush interval, and compacts once the log
+    // file is large enough, until the log is closed or fails
+    private void run() {
+        while (!closing) {
+            try {
+                synchronized (wakeup) {
+                    if (!closing) {
+                        wakeup.wait(flushMillis);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                boolean full;
+                synchronized (ioLock) {
+                    sync();
+                    full = logBytes >= compactBytes;
+                }
+                if (full) {
+                    compact(false);
+                }
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: removes and returns the records encoded since the last call
+    private synchronized byte[] takePending() {
+        byte[] chunk = Arrays.copyOf(pending, pendingSize);
+        pendingSize = 0;
+        return chunk;
+    }
+
+    // REQUIRES: the current thread holds ioLock
+    // MODIFIES: this
+    // EFFECTS: appends chunk to the current log file
+    private void write(byte[] chunk) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(chunk);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        logBytes += chunk.length;
+    }
+
+    // REQUIRES: the current thread holds this
+    // MODIFIES: this
+    // EFFECTS: starts encoding a record of the given kind
+    private void begin(byte kind) {
+        ensureRoom(4);
+        recordStart = pendingSize;
+        pendingSize += 4;
+        writeByte(kind);
+    }
+
+    // REQUIRES: the current thread holds this
+    // MODIFIES: this
+    // EFFECTS: appends the record being encoded to the pending records, framed by its length and CRC32
+    private void end() {
+        int length = pendingSize - recordStart - 4;
+        crc.reset();
+        crc.update(pending, recordStart + 4, length);
+        putInt(recordStart, length);
+        ensureRoom(4);
+        putInt(pendingSize, (int) crc.getValue());
+        pendingSize += 4;
+    }
+
+    // REQUIRES: the current thread holds this
+    // MODIFIES: this
+    // EFFECTS: encodes the display attributes of piece and the given quantity
+    private void writePiece(LegoPiece piece, int quantity) {
+        writeString(piece.getPartType());
+        writeString(piece.getColor());
+        writeString(piece.getDimensions());
+        writeVarint(quantity);
+    }
+
+    // REQUIRES: the current thread holds this
+    // MODIFIES: this
+    // EFFECTS: encodes s as its id in the current log file, plus its characters the first time
+    private void writeString(String s) {
+        Integer id = strings.get(s);
+        if (id != null) {
+            writeVarint(id + 1);
+            return;
+        }
+        strings.put(s, strings.size());
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(0);
+        writeVarint(bytes.length);
+        ensureRoom(bytes.length);
+        System.arraycopy(bytes, 0, pending, pendingSize, bytes.length);
+        pendingSize += bytes.length;
+    }
+
+    // REQUIRES: the current thread holds this
+    // MODIFIES: this
+    // EFFECTS: encodes value in 1 to 5 bytes, 7 bits at a time
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    // REQUIRES: the current thread holds this
+    // MODIFIES: this
+    // EFFECTS: appends the low byte of value to the pending records
+    private void writeByte(int value) {
+        ensureRoom(1);
+        pending[pendingSize++] = (byte) value;
+    }
+
+    // REQUIRES: the current thread holds this, offset + 4 <= pending.length
+    // MODIFIES: this
+    // EFFECTS: stores value at offset in the pending records, high byte first
+    private void putInt(int offset, int value) {
+        pending[offset] = (byte) (value >>> 24);
+        pending[offset + 1] = (byte) (value >>> 16);
+        pending[offset + 2] = (byte) (value >>> 8);
+        pending[offset + 3] = (byte) value;
+    }
+
+    // REQUIRES: the current thread holds this
+    // MODIFIES: this
+    // EFFECTS: grows the pending records so that bytes more fit
+    private void ensureRoom(int bytes) {
+        if (pendingSize + bytes > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingSize + bytes));
+        }
+    }
+
+    // EFFECTS: returns the log file of the given generation kept next to snapshot
+    private static Path logFile(Path snapshot, long generation) {
+        return snapshot.resolveSibling(snapshot.getFileName() + "." + generation + ".wal");
+    }
+
+    // EFFECTS: returns the log files kept next to snapshot, by generation
+    private static TreeMap<Long, Path> logFiles(Path snapshot) throws IOException {
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        Path dir = snapshot.toAbsolutePath().getParent();
+        String prefix = snapshot.getFileName() + ".";
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(".wal")) {
+                    try {
+                        logs.put(Long.parseLong(name.substring(prefix.length(), name.length() - 4)), file);
+                    } catch (NumberFormatException e) {
+                        // not one of ours
+                    }
+                }
+            }
+        }
+        return logs;
+    }
+
+    // EFFECTS: returns the newest generation of log file kept next to snapshot, or 0 if there is none
+    private static long lastGeneration(Path snapshot) throws IOException {
+        TreeMap<Long, Path> logs = logFiles(snapshot);
+        return logs.isEmpty() ? 0 : logs.lastKey();
+    }
+
+    // MODIFIES: masterBuilder
+    // EFFECTS: applies to masterBuilder, which was loaded from snapshot, the changes in the log
+    // files started with or after the snapshot, in order; stops at the first missing generation or
+    // torn record
+    static void replay(MasterBuilder masterBuilder, Path snapshot, long firstGeneration) throws IOException {
+        TreeMap<Long, Path> logs = logFiles(snapshot);
+        for (long generation = firstGeneration; logs.containsKey(generation); generation++) {
+            if (!replayFile(masterBuilder, logs.get(generation), generation)) {
+                return;
+            }
+        }
+    }
+
+    // MODIFIES: masterBuilder
+    // EFFECTS: applies the changes in one log file to masterBuilder; returns false if the file ends
+    // in a torn or corrupt record, true if it ends cleanly
+    private static boolean replayFile(MasterBuilder masterBuilder, Path file, long generation) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            try {
+                if (in.readInt() != MAGIC || in.readByte() != VERSION || in.readLong() != generation) {
+                    throw new IOException("Not a log file of generation " + generation + ": " + file);
+                }
+            } catch (EOFException e) {
+                return false;
+            }
+            List<String> strings = new ArrayList<>();
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] bytes;
+                try {
+                    bytes = readRecord(in, crc);
+                } catch (EOFException e) {
+                    return false;
+                }
+                if (bytes == null) {
+                    return true;
+                }
+                if (bytes.length == 0) {
+                    return false;
+                }
+                apply(masterBuilder, new DataInputStream(new ByteArrayInputStream(bytes)), strings);
+            }
+        }
+    }
+
+    // EFFECTS: reads the next record, returning null at a clean end of file and an empty array if
+    // the record is corrupt; throws EOFException if the record is cut short
+    private static byte[] readRecord(DataInputStream in, CRC32 crc) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        int length = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8)
+                | in.readUnsignedByte();
+        if (length <= 0 || length > 1 << 20) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        int expected = in.readInt();
+        crc.reset();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue() == expected ? bytes : new byte[0];
+    }
+
+    // MODIFIES: masterBuilder, strings
+    // EFFECTS: applies one decoded record to masterBuilder; an added piece is merged into a piece
+    // with its key unless the inventory stores its pieces in a LIST, like LegoInventory.addPiece
+    private static void apply(MasterBuilder masterBuilder, DataInputStream in, List<String> strings)
+            throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case INVENTORY_ADDED: {
+                String name = readString(in, strings);
+                masterBuilder.addInventory(new LegoInventory(name, PieceStorage.valueOf(readString(in, strings))));
+                break;
+            }
+            case PIECE_ADDED: {
+                LegoInventory inventory = masterBuilder.getAnInventory(readString(in, strings));
+                LegoPiece piece = readPiece(in, strings);
+                if (inventory.getStorage() == PieceStorage.LIST) {
+                    inventory.addPiece(piece);
+                } else {
+                    inventory.addOrMerge(piece);
+                }
+                break;
+            }
+            case PIECE_REMOVED: {
+                LegoInventory inventory = masterBuilder.getAnInventory(readString(in, strings));
+                LegoPiece removed = find(inventory, readPiece(in, strings));
+                if (removed != null) {
+                    inventory.removePiece(removed);
+                }
+                break;
+            }
+            case QUANTITY_CHANGED: {
+                LegoInventory inventory = masterBuilder.getAnInventory(readString(in, strings));
+                LegoPiece changed = find(inventory, readPiece(in, strings));
+                int after = readVarint(in);
+                if (changed != null) {
+                    changed.setQuantity(after);
+                }
+                break;
+            }
+            case BUILD_ADDED:
+                masterBuilder.addBuild(new Build(readVarint(in)));
+                break;
+            case REQUIREMENT_ADDED:
+                masterBuilder.getABuild(readVarint(in)).addRequiredPiece(readPiece(in, strings));
+                break;
+            default:
+                throw new IOException("Unknown log record: " + kind);
+        }
+    }
+
+    // EFFECTS: returns the piece in inventory with the key and quantity of logged, or else the first
+    // piece with its key, or null if there is none
+    private static LegoPiece find(LegoInventory inventory, LegoPiece logged) {
+        LegoPiece found = inventory.findPiece(logged.getKey());
+        if (found == null || found.getQuantity() == logged.getQuantity()) {
+            return found;
+        }
+        for (LegoPiece piece : inventory.getPieces()) {
+            if (piece.getKey().equals(logged.getKey()) && piece.getQuantity() == logged.getQuantity()) {
+                return piece;
+            }
+        }
+        return found;
+    }
+
+    // MODIFIES: strings
+    // EFFECTS: decodes a piece written by writePiece
+    private static LegoPiece readPiece(DataInputStream in, List<String> strings) throws IOException {
+        String partType = readString(in, strings);
+        String color = readString(in, strings);
+        String dimensions = readString(in, strings);
+        return new LegoPiece(partType, color, dimensions, readVarint(in));
+    }
+
+    // MODIFIES: strings
+    // EFFECTS: decodes a string written by writeString
+    private static String readString(DataInputStream in, List<String> strings) throws IOException {
+        int id = readVarint(in);
+        if (id > 0) {
+            return strings.get(id - 1);
+        }
+        byte[] bytes = new byte[readVarint(in)];
+        in.readFully(bytes);
+        String s = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(s);
+        return s;
+    }
+
+    // EFFECTS: decodes an int written by writeVarint
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed log record");
+    }
+}
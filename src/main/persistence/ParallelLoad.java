@@ -0,0 +1,83 @@
+package persistence;
+
+import model.BulkEventScope;
+import model.EventLog;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Represents the parsing of independent sections of a saved MasterBuilder at the same time on a
+// fork-join pool.
+//
+// Each section stores what it parses in a place of its own, so the caller can merge the results
+// in section order once all are done, whichever thread parsed them and in whatever order. The
+// events of every helping thread are counted in the caller's bulk scope. If sections fail, the
+// error of the first failing one in section order is thrown, so a bad file always reports the
+// same error.
+final class ParallelLoad {
+    // A section parsed on its own, storing its result where the caller will find it
+    interface Section {
+        void parse() throws IOException;
+    }
+
+    private final List<Section> sections;
+    private final BulkEventScope scope;
+    private final Exception[] errors; // error of each section, or null
+
+    private ParallelLoad(List<Section> sections, BulkEventScope scope) {
+        this.sections = sections;
+        this.scope = scope;
+        this.errors = new Exception[sections.size()];
+    }
+
+    // Represents the parsing of sections lo until hi, split in halves until one is left
+    private final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+
+        Task(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Task(lo, mid), new Task(mid, hi));
+                return;
+            }
+            BulkEventScope joined = EventLog.getInstance().joinBulkScope(scope);
+            try {
+                sections.get(lo).parse();
+            } catch (IOException | RuntimeException e) {
+                errors[lo] = e;
+            } finally {
+                joined.close();
+            }
+        }
+    }
+
+    // REQUIRES: scope is open on the calling thread
+    // MODIFIES: whatever the sections store their results in
+    // EFFECTS: parses every section on the common fork-join pool and returns once all are done;
+    // throws the error of the first failing section, in section order, if any fails
+    static void run(List<Section> sections, BulkEventScope scope) throws IOException {
+        if (sections.isEmpty()) {
+            return;
+        }
+        ParallelLoad load = new ParallelLoad(sections, scope);
+        ForkJoinPool.commonPool().invoke(load.new Task(0, sections.size()));
+        for (Exception error : load.errors) {
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error != null) {
+                throw (RuntimeException) error;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,201 @@
+package persistence;
+
+import model.Event;
+import model.EventSink;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Represents an event sink that appends events to a log file from a background thread.
+// Logging threads only offer events to a bounded queue and never wait: when the queue is full
+// the event is dropped and counted. The writer thread takes events off the queue in batches,
+// writes them through a buffer, flushes after each batch and, once the file grows past its
+// size limit, renames it to file.1 (file.1 to file.2, and so on) and starts a new one.
+public class RollingFileEventAppender implements EventSink, AutoCloseable {
+    public static final String DEFAULT_FILE = "./data/events.log";
+    private static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    private static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    private static final int DEFAULT_BACKUPS = 3;
+    private static final int BATCH_SIZE = 512;
+    private static final long POLL_MILLIS = 100;
+
+    private final Path file;
+    private final long maxBytes;
+    private final int backups;
+    private final BlockingQueue<Event> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closing;
+    private volatile IOException failure;
+    private BufferedWriter out; // used by the writer thread only
+    private long written; // bytes in the current file, counted as characters
+
+    // EFFECTS: constructs an appender writing to DEFAULT_FILE with default limits
+    public RollingFileEventAppender() {
+        this(DEFAULT_FILE, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BYTES, DEFAULT_BACKUPS);
+    }
+
+    // REQUIRES: queueCapacity > 0, maxBytes > 0, backups >= 0
+    // EFFECTS: constructs an appender writing to file, holding up to queueCapacity events that
+    // are not yet written, rotating the file once it grows past about maxBytes and keeping
+    // backups older files; starts its writer thread
+    public RollingFileEventAppender(String file, int queueCapacity, long maxBytes, int backups) {
+        this.file = Paths.get(file);
+        this.maxBytes = maxBytes;
+        this.backups = backups;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(this::run, "event-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: queues event for writing without waiting; drops it if the queue is full or the
+    // appender is closing
+    @Override
+    public void accept(Event event) {
+        if (closing || !queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // EFFECTS: returns how many events were dropped because the queue was full or the appender
+    // was closed
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // EFFECTS: returns the error that stopped the writer, or null if there was none
+    public IOException getFailure() {
+        return failure;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: registers a shutdown hook that closes this appender when the JVM exits, so events
+    // still in the queue reach the file
+    public void closeOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "event-log-shutdown"));
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops taking events, waits for the writer to write and flush every queued event,
+    // and closes the file
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes queued events in batches until the appender is closed and the queue is empty
+    private void run() {
+        List<Event> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (!closing || !queue.isEmpty()) {
+                Event first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeFile();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes a batch of events, rotating the file when it is full, and flushes
+    private void writeBatch(List<Event> batch) throws IOException {
+        for (Event event : batch) {
+            String line = format(event);
+            if (out != null && written > 0 && written + line.length() > maxBytes) {
+                rotate();
+            }
+            if (out == null) {
+                open();
+            }
+            out.write(line);
+            written += line.length();
+        }
+        out.flush();
+    }
+
+    // EFFECTS: returns event as one line of the log file
+    private static String format(Event event) {
+        String description = event.getDescription().replace("\r", "\\r").replace("\n", "\\n");
+        return Instant.ofEpochMilli(event.getTimestamp()) + " " + event.getType().getLevel() + " "
+                + event.getType().getCategory() + " " + description + System.lineSeparator();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: opens the log file for appending
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        written = Files.size(file);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes the log file, shifts the backups up by one (dropping the oldest) and
+    // moves the log file to file.1
+    private void rotate() throws IOException {
+        out.close();
+        out = null;
+        if (backups == 0) {
+            Files.delete(file);
+            return;
+        }
+        Files.deleteIfExists(backup(backups));
+        for (int i = backups - 1; i >= 1; i--) {
+            if (Files.exists(backup(i))) {
+                Files.move(backup(i), backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // EFFECTS: returns the path of the i-th backup
+    private Path backup(int i) {
+        return file.resolveSibling(file.getFileName() + "." + i);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: flushes and closes the log file if it is open
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+            out = null;
+        }
+    }
+}
\ No newline at end of file
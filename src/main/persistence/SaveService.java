@@ -0,0 +1,298 @@
+package persistence;
+
+import model.Build;
+import model.LegoInventory;
+import model.LegoPiece;
+import model.MasterBuilder;
+import model.PieceStorage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Represents a service that saves a MasterBuilder to a JSON file in the background.
+//
+// A save copies the model on the calling thread, which must be the thread that changes it, while
+// MasterBuilder.whileUnchanged holds every inventory still, so the copy is one consistent state and
+// takes time for the pieces but not for the file. The copy is then written on the service's own
+// thread to a temporary file next to the destination, fsynced and moved over the destination in
+// one step, so a crash at any point leaves the previous save whole. A save that is still waiting
+// for an earlier one to finish is replaced by a later save, which takes over its future. A
+// destination ending in .gz or .deflate is compressed as it is written (see Compression).
+//
+// With autosave on, every call to changed restarts a delay, and the save is taken only once the
+// delay passes without another change, so a burst of edits is written once.
+public class SaveService implements AutoCloseable {
+    private final Path destination;
+    private final Path temporary;
+    private final int indentFactor;
+    private final Compression compression;
+    private final ScheduledExecutorService worker; // the one thread that writes files
+    private Snapshot pending; // copy waiting to be written, or null; guarded by this
+    private CompletableFuture<Void> pendingResult; // future of pending, or null; guarded by this
+    private long autosaveDelay; // milliseconds of quiet before an autosave, or 0 if off
+    private Executor modelThread; // runs autosaves on the thread that changes the model
+    private MasterBuilder autosaveTarget; // builder changed since the last save, or null
+    private ScheduledFuture<?> autosave; // scheduled autosave, or null
+    private boolean closed;
+
+    // Represents a copy of the pieces of an inventory or build
+    private static final class PieceCopy {
+        private final String name; // collection name of an inventory, or null for a build
+        private final PieceStorage storage; // how the inventory stores its pieces, or null for a build
+        private final int buildId;
+        private String[] partTypes = new String[8];
+        private String[] colors = new String[8];
+        private String[] dimensions = new String[8];
+        private int[] quantities = new int[8];
+        private int size;
+
+        PieceCopy(String name, PieceStorage storage, int buildId) {
+            this.name = name;
+            this.storage = storage;
+            this.buildId = buildId;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: appends the fields of piece
+        void add(LegoPiece piece) {
+            if (size == quantities.length) {
+                int capacity = size * 2;
+                partTypes = Arrays.copyOf(partTypes, capacity);
+                colors = Arrays.copyOf(colors, capacity);
+                dimensions = Arrays.copyOf(dimensions, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+            }
+            partTypes[size] = piece.getPartType();
+            colors[size] = piece.getColor();
+            dimensions[size] = piece.getDimensions();
+            quantities[size] = piece.getQuantity();
+            size++;
+        }
+
+        // MODIFIES: json
+        // EFFECTS: writes each copied piece as a JSON object
+        void writePieces(JsonEmitter json) throws IOException {
+            for (int i = 0; i < size; i++) {
+                JsonWriter.writePiece(json, partTypes[i], colors[i], dimensions[i], quantities[i]);
+            }
+        }
+    }
+
+    // Represents a copy of a MasterBuilder taken while it could not change, also written by
+    // MutationLog as the snapshot its log files are replayed onto
+    static final class Snapshot {
+        private final String userName;
+        private final long logGeneration; // generation of the log started with this copy, or 0
+        private final List<PieceCopy> inventories = new ArrayList<>();
+        private final List<PieceCopy> builds = new ArrayList<>();
+
+        private Snapshot(String userName, long logGeneration) {
+            this.userName = userName;
+            this.logGeneration = logGeneration;
+        }
+
+        // EFFECTS: copies masterBuilder while its inventories are locked
+        static Snapshot take(MasterBuilder masterBuilder) {
+            Snapshot snapshot = new Snapshot(masterBuilder.getUserName(), 0);
+            masterBuilder.whileUnchanged(() -> snapshot.copy(masterBuilder));
+            return snapshot;
+        }
+
+        // REQUIRES: called from an action run by masterBuilder.whileUnchanged; logGeneration > 0
+        // EFFECTS: copies masterBuilder as the snapshot the log of logGeneration was started with
+        static Snapshot takeForLog(MasterBuilder masterBuilder, long logGeneration) {
+            Snapshot snapshot = new Snapshot(masterBuilder.getUserName(), logGeneration);
+            snapshot.copy(masterBuilder);
+            return snapshot;
+        }
+
+        // REQUIRES: masterBuilder cannot change during the call
+        // MODIFIES: this
+        // EFFECTS: copies the pieces of every inventory and build of masterBuilder
+        private void copy(MasterBuilder masterBuilder) {
+            for (LegoInventory inventory : masterBuilder.getInventories()) {
+                PieceCopy copy = new PieceCopy(inventory.getCollectionName(), inventory.getStorage(), 0);
+                inventory.forEachPiece(copy::add);
+                inventories.add(copy);
+            }
+            for (Build build : masterBuilder.getBuilds()) {
+                PieceCopy copy = new PieceCopy(null, null, build.getBuildId());
+                build.getRequiredPieces().forEach(copy::add);
+                builds.add(copy);
+            }
+        }
+
+        // MODIFIES: json
+        // EFFECTS: writes the copy in the layout of JsonWriter; a copy taken for a log also records
+        // its log generation and the storage of each inventory
+        void writeTo(JsonEmitter json) throws IOException {
+            JsonWriter.writeDocument(json, userName, inventoryArray -> {
+                for (PieceCopy inventory : inventories) {
+                    PieceStorage storage = logGeneration != 0 ? inventory.storage : null;
+                    JsonWriter.writeInventory(inventoryArray, inventory.name, storage, inventory::writePieces);
+                }
+            }, buildArray -> {
+                for (PieceCopy build : builds) {
+                    JsonWriter.writeBuild(buildArray, build.buildId, build::writePieces);
+                }
+            }, logGeneration);
+        }
+    }
+
+    // EFFECTS: constructs a service saving indented JSON to destination file, with autosave off
+    public SaveService(String destination) {
+        this(destination, false);
+    }
+
+    // EFFECTS: constructs a service saving to destination file, without any whitespace if
+    // compact, with autosave off
+    public SaveService(String destination, boolean compact) {
+        this.destination = Paths.get(destination);
+        this.temporary = Paths.get(destination + ".tmp");
+        this.indentFactor = compact ? 0 : JsonWriter.TAB;
+        this.compression = Compression.forFile(destination);
+        this.worker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "save-service");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // REQUIRES: called on the thread that changes masterBuilder
+    // MODIFIES: this
+    // EFFECTS: copies masterBuilder and queues the copy to be written; returns a future that
+    // completes once the destination file holds this copy or a later one, or completes
+    // exceptionally with the IOException if the file cannot be written. Throws
+    // IllegalStateException if the service is closed
+    public CompletableFuture<Void> save(MasterBuilder masterBuilder) {
+        Snapshot snapshot = Snapshot.take(masterBuilder);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Save service is closed");
+            }
+            if (autosaveTarget == masterBuilder) {
+                cancelAutosave();
+            }
+            pending = snapshot;
+            if (pendingResult == null) {
+                pendingResult = new CompletableFuture<>();
+                worker.execute(this::writePending);
+            }
+            return pendingResult;
+        }
+    }
+
+    // REQUIRES: delayMillis >= 0
+    // MODIFIES: this
+    // EFFECTS: turns autosave on with the given delay, or off if delayMillis is 0; autosaves are
+    // copied on modelThread, the executor running tasks on the thread that changes the model
+    public synchronized void setAutosave(long delayMillis, Executor modelThread) {
+        this.autosaveDelay = delayMillis;
+        this.modelThread = modelThread;
+        if (delayMillis == 0) {
+            cancelAutosave();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: if autosave is on, saves masterBuilder once delay milliseconds pass without another
+    // call; does nothing otherwise
+    public synchronized void changed(MasterBuilder masterBuilder) {
+        if (autosaveDelay == 0 || closed) {
+            return;
+        }
+        if (autosave != null) {
+            autosave.cancel(false);
+        }
+        autosaveTarget = masterBuilder;
+        autosave = worker.schedule(() -> runAutosave(masterBuilder), autosaveDelay, TimeUnit.MILLISECONDS);
+    }
+
+    // EFFECTS: hands the autosave of masterBuilder to the model thread, unless it was taken over
+    // by a later change or save
+    private void runAutosave(MasterBuilder masterBuilder) {
+        Executor executor;
+        synchronized (this) {
+            if (autosaveTarget != masterBuilder || closed) {
+                return;
+            }
+            executor = modelThread;
+        }
+        executor.execute(() -> {
+            synchronized (this) {
+                if (autosaveTarget != masterBuilder || closed) {
+                    return;
+                }
+            }
+            save(masterBuilder);
+        });
+    }
+
+    // MODIFIES: this
+    // EFFECTS: drops the scheduled autosave, if any
+    private void cancelAutosave() {
+        if (autosave != null) {
+            autosave.cancel(false);
+            autosave = null;
+        }
+        autosaveTarget = null;
+    }
+
+    // MODIFIES: this, destination file
+    // EFFECTS: writes the pending copy and completes its future
+    private void writePending() {
+        Snapshot snapshot;
+        CompletableFuture<Void> result;
+        synchronized (this) {
+            snapshot = pending;
+            result = pendingResult;
+            pending = null;
+            pendingResult = null;
+        }
+        try {
+            DurableFiles.write(temporary, indentFactor, compression, snapshot::writeTo);
+            DurableFiles.replace(temporary, destination);
+            result.complete(null);
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    // REQUIRES: called on the thread that changes the model
+    // MODIFIES: this, destination file
+    // EFFECTS: saves now if an autosave is waiting, then waits for every queued save to finish and
+    // stops the service's thread
+    @Override
+    public void close() {
+        MasterBuilder target;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            target = autosaveTarget;
+            cancelAutosave();
+        }
+        if (target != null) {
+            save(target);
+        }
+        synchronized (this) {
+            closed = true;
+        }
+        worker.shutdown();
+        try {
+            worker.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,379 @@
+package persistence;
+
+import model.Build;
+import model.BulkEventScope;
+import model.EventLog;
+import model.EventType;
+import model.LegoInventory;
+import model.MasterBuilder;
+import model.PieceStorage;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Represents a save layout that keeps each inventory, and each group of up to BUILD_GROUP_SIZE
+// builds, in a JSON segment file of its own inside a directory, with a small manifest naming the
+// segments that make up the current save.
+//
+// The store remembers the change count of every inventory and build as it was when its segment
+// was written, so a save writes only the segments whose contents changed and then the manifest;
+// its cost follows the amount of change rather than the size of the collection. Segments are
+// never overwritten: a changed segment goes to a new file, and the manifest is written to a
+// temporary file, fsynced and moved over the old one, so a crash at any point leaves the previous
+// save whole. Files the new manifest no longer names are deleted after it is in place.
+//
+// Segments can be written compressed; the small manifest never is. A store reads segments in any
+// format, so the choice can change between saves.
+public class SegmentedStore {
+    public static final String MANIFEST = "manifest.json";
+    private static final int BUILD_GROUP_SIZE = 64;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".json";
+
+    private final Path directory;
+    private final Compression compression; // format new segments are written in
+    private final Map<LegoInventory, Segment> inventorySegments = new IdentityHashMap<>(); // last saved
+    private final List<BuildGroup> buildGroups = new ArrayList<>(); // last saved, by group number
+    private long nextSegment; // number of the next segment file
+    private int segmentsWritten; // segment files written by the last save
+
+    // Represents a segment file and the change count of the inventory it holds
+    private static final class Segment {
+        private final String file;
+        private final long changeCount;
+
+        Segment(String file, long changeCount) {
+            this.file = file;
+            this.changeCount = changeCount;
+        }
+    }
+
+    // Represents a segment file and the builds it holds, with their change counts
+    private static final class BuildGroup {
+        private final String file;
+        private final List<Build> builds;
+        private final long[] changeCounts;
+
+        BuildGroup(String file, List<Build> builds) {
+            this.file = file;
+            this.builds = builds;
+            this.changeCounts = new long[builds.size()];
+            for (int i = 0; i < changeCounts.length; i++) {
+                changeCounts[i] = builds.get(i).getChangeCount();
+            }
+        }
+
+        // EFFECTS: returns true if this group holds exactly builds, unchanged since it was written
+        boolean holds(List<Build> builds) {
+            if (builds.size() != this.builds.size()) {
+                return false;
+            }
+            for (int i = 0; i < changeCounts.length; i++) {
+                if (builds.get(i) != this.builds.get(i) || builds.get(i).getChangeCount() != changeCounts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // EFFECTS: constructs a store keeping its segments and manifest in the given directory
+    public SegmentedStore(String directory) {
+        this(directory, Compression.NONE);
+    }
+
+    // EFFECTS: constructs a store keeping its segments and manifest in the given directory,
+    // writing new segments compressed in the given format
+    public SegmentedStore(String directory, Compression compression) {
+        this.directory = Paths.get(directory);
+        this.compression = compression;
+    }
+
+    // EFFECTS: returns the number of segment files written by the last save
+    public synchronized int getSegmentsWritten() {
+        return segmentsWritten;
+    }
+
+    // MODIFIES: this, files in the directory
+    // EFFECTS: saves masterBuilder, writing a segment for every inventory and build group that
+    // changed since this store last saved or loaded it, then the manifest; deletes the segments
+    // the manifest no longer names. Throws IOException if a file cannot be written, in which
+    // case the previous save is left as it was.
+    public synchronized void save(MasterBuilder masterBuilder) throws IOException {
+        Files.createDirectories(directory);
+        segmentsWritten = 0;
+        List<LegoInventory> inventories = new ArrayList<>(masterBuilder.getInventories());
+        Map<LegoInventory, Segment> saved = new IdentityHashMap<>();
+        for (LegoInventory inventory : inventories) {
+            Segment segment = inventorySegments.get(inventory);
+            long changeCount = inventory.getChangeCount();
+            if (segment == null || segment.changeCount != changeCount) {
+                segment = new Segment(writeSegment(json -> JsonWriter.writeInventory(json, inventory)), changeCount);
+                inventorySegments.put(inventory, segment);
+            }
+            saved.put(inventory, segment);
+        }
+
+        List<Build> builds = new ArrayList<>(masterBuilder.getBuilds());
+        int groups = (builds.size() + BUILD_GROUP_SIZE - 1) / BUILD_GROUP_SIZE;
+        for (int group = 0; group < groups; group++) {
+            List<Build> members = builds.subList(group * BUILD_GROUP_SIZE,
+                    Math.min(builds.size(), (group + 1) * BUILD_GROUP_SIZE));
+            if (group < buildGroups.size() && buildGroups.get(group).holds(members)) {
+                continue;
+            }
+            BuildGroup written = new BuildGroup(writeSegment(json -> writeBuilds(json, members)),
+                    new ArrayList<>(members));
+            if (group < buildGroups.size()) {
+                buildGroups.set(group, written);
+            } else {
+                buildGroups.add(written);
+            }
+        }
+        buildGroups.subList(groups, buildGroups.size()).clear();
+
+        writeManifest(masterBuilder.getUserName(), inventories, saved);
+        inventorySegments.keySet().retainAll(saved.keySet());
+        deleteUnnamedSegments(saved);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the MasterBuilder saved in the directory and returns it, logging one summary
+    // event; later saves by this store write only what changes after this. Throws IOException if
+    // a file cannot be read
+    public synchronized MasterBuilder load() throws IOException {
+        return load(false);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the MasterBuilder saved in the directory like load, but parses its segments
+    // on several threads at the same time and adds their inventories and builds in manifest
+    // order. Throws IOException if a file cannot be read
+    public synchronized MasterBuilder loadParallel() throws IOException {
+        return load(true);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the MasterBuilder saved in the directory, parsing the segments in order on
+    // this thread, or at the same time if parallel
+    private MasterBuilder load(boolean parallel) throws IOException {
+        try (BulkEventScope scope = EventLog.getInstance().openBulkScope(
+                "Loaded {0} pieces into {1} inventories and {2} builds from " + directory,
+                EventType.INVENTORY_PIECE_ADDED, EventType.INVENTORY_ADDED, EventType.BUILD_ADDED)) {
+            Manifest manifest = readManifest();
+            LegoInventory[] inventories = new LegoInventory[manifest.inventoryFiles.size()];
+            List<List<Build>> groups = new ArrayList<>(Collections.nCopies(manifest.buildFiles.size(), null));
+            List<ParallelLoad.Section> sections = new ArrayList<>();
+            for (int i = 0; i < inventories.length; i++) {
+                int index = i;
+                sections.add(() -> {
+                    try (JsonTokenizer json = openSegment(manifest.inventoryFiles.get(index))) {
+                        inventories[index] = JsonReader.parseInventory(json, manifest.storages.get(index));
+                        json.endDocument();
+                    }
+                });
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                int index = i;
+                sections.add(() -> {
+                    List<Build> members = new ArrayList<>();
+                    try (JsonTokenizer json = openSegment(manifest.buildFiles.get(index))) {
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            members.add(JsonReader.parseBuild(json));
+                        }
+                        json.endDocument();
+                    }
+                    groups.set(index, members);
+                });
+            }
+            if (parallel) {
+                ParallelLoad.run(sections, scope);
+            } else {
+                for (ParallelLoad.Section section : sections) {
+                    section.parse();
+                }
+            }
+
+            inventorySegments.clear();
+            for (int i = 0; i < inventories.length; i++) {
+                inventorySegments.put(inventories[i],
+                        new Segment(manifest.inventoryFiles.get(i), inventories[i].getChangeCount()));
+            }
+            List<Build> builds = new ArrayList<>();
+            buildGroups.clear();
+            for (int i = 0; i < groups.size(); i++) {
+                builds.addAll(groups.get(i));
+                buildGroups.add(new BuildGroup(manifest.buildFiles.get(i), groups.get(i)));
+            }
+            nextSegment = manifest.nextSegment;
+            MasterBuilder masterBuilder = new MasterBuilder(manifest.userName);
+            masterBuilder.restore(Arrays.asList(inventories), builds);
+            return masterBuilder;
+        }
+    }
+
+    // Represents the contents of a manifest
+    private static final class Manifest {
+        private String userName;
+        private long nextSegment;
+        private final List<String> inventoryFiles = new ArrayList<>();
+        private final List<PieceStorage> storages = new ArrayList<>();
+        private final List<String> buildFiles = new ArrayList<>();
+    }
+
+    // EFFECTS: reads the manifest
+    private Manifest readManifest() throws IOException {
+        Manifest manifest = new Manifest();
+        try (JsonTokenizer json = openSegment(MANIFEST)) {
+            json.beginObject();
+            for (String key = json.nextKey(); key != null; key = json.nextKey()) {
+                switch (key) {
+                    case "userName":
+                        manifest.userName = json.nextString();
+                        break;
+                    case "nextSegment":
+                        manifest.nextSegment = json.nextLong();
+                        break;
+                    case "inventories":
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            readInventoryEntry(json, manifest);
+                        }
+                        break;
+                    case "buildGroups":
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            manifest.buildFiles.add(json.nextString());
+                        }
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endDocument();
+        }
+        if (manifest.userName == null) {
+            throw new JSONException("JSONObject[\"userName\"] not found.");
+        }
+        return manifest;
+    }
+
+    // MODIFIES: manifest
+    // EFFECTS: reads the segment and storage of an inventory from its manifest entry
+    private static void readInventoryEntry(JsonTokenizer json, Manifest manifest) throws IOException {
+        String file = null;
+        PieceStorage storage = PieceStorage.LIST;
+        json.beginObject();
+        for (String key = json.nextKey(); key != null; key = json.nextKey()) {
+            if (key.equals("segment")) {
+                file = json.nextString();
+            } else if (key.equals("storage")) {
+                storage = PieceStorage.valueOf(json.nextString());
+            } else {
+                json.skipValue();
+            }
+        }
+        if (file == null) {
+            throw new JSONException("JSONObject[\"segment\"] not found.");
+        }
+        manifest.inventoryFiles.add(file);
+        manifest.storages.add(storage);
+    }
+
+    // EFFECTS: opens a tokenizer over the named file in the directory
+    private JsonTokenizer openSegment(String file) throws IOException {
+        return new JsonTokenizer(new InputStreamReader(
+                Compression.decompress(Files.newInputStream(directory.resolve(file))), StandardCharsets.UTF_8));
+    }
+
+    // MODIFIES: this, files in the directory
+    // EFFECTS: writes a new segment file with the given contents, fsyncs it and returns its name
+    private String writeSegment(DurableFiles.Contents contents) throws IOException {
+        String file = SEGMENT_PREFIX + nextSegment++ + SEGMENT_SUFFIX + compression.getExtension();
+        DurableFiles.write(directory.resolve(file), 0, compression, contents);
+        segmentsWritten++;
+        return file;
+    }
+
+    // MODIFIES: json
+    // EFFECTS: writes builds as a JSON array
+    private static void writeBuilds(JsonEmitter json, List<Build> builds) throws IOException {
+        json.beginArray();
+        for (Build build : builds) {
+            JsonWriter.writeBuild(json, build);
+        }
+        json.endArray();
+    }
+
+    // MODIFIES: files in the directory
+    // EFFECTS: writes the manifest naming the given segments to a temporary file, fsyncs it and
+    // moves it over the current manifest
+    private void writeManifest(String userName, List<LegoInventory> inventories,
+                               Map<LegoInventory, Segment> segments) throws IOException {
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        DurableFiles.write(temporary, 0, json -> {
+            json.beginObject();
+            json.name("userName");
+            json.value(userName);
+            json.name("nextSegment");
+            json.value(nextSegment);
+            json.name("inventories");
+            json.beginArray();
+            for (LegoInventory inventory : inventories) {
+                json.beginObject();
+                json.name("collectionName");
+                json.value(inventory.getCollectionName());
+                json.name("storage");
+                json.value(inventory.getStorage().name());
+                json.name("segment");
+                json.value(segments.get(inventory).file);
+                json.endObject();
+            }
+            json.endArray();
+            json.name("buildGroups");
+            json.beginArray();
+            for (BuildGroup group : buildGroups) {
+                json.value(group.file);
+            }
+            json.endArray();
+            json.endObject();
+        });
+        DurableFiles.replace(temporary, directory.resolve(MANIFEST));
+    }
+
+    // MODIFIES: files in the directory
+    // EFFECTS: deletes every segment file that is not named by the current manifest
+    private void deleteUnnamedSegments(Map<LegoInventory, Segment> segments) throws IOException {
+        Set<String> named = new HashSet<>();
+        for (Segment segment : segments.values()) {
+            named.add(segment.file);
+        }
+        for (BuildGroup group : buildGroups) {
+            named.add(group.file);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX + "*")) {
+            for (Path file : files) {
+                if (!named.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
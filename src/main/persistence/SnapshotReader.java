@@ -0,0 +1,171 @@
+package persistence;
+
+import model.Build;
+import model.BulkEventScope;
+import model.EventLog;
+import model.EventType;
+import model.LegoInventory;
+import model.LegoPiece;
+import model.MasterBuilder;
+import model.PieceDictionary;
+import model.PieceStorage;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Represents a reader that opens a MasterBuilder from a binary snapshot file written by
+// SnapshotWriter.
+//
+// The file is mapped into memory. Columnar and off-heap inventories read their pieces straight
+// from the mapping until they are first changed, and the builder counts them only when it first
+// needs its totals, so opening takes time for the dictionary, the names and the builds but not
+// for the pieces. Inventories stored as a list, and builds, are read in full.
+public class SnapshotReader {
+    private static final PieceStorage[] STORAGES = PieceStorage.values();
+
+    private String source;
+
+    // EFFECTS: constructs reader to read from source file
+    public SnapshotReader(String source) {
+        this.source = source;
+    }
+
+    // EFFECTS: opens MasterBuilder from file and returns it, logging one summary event instead
+    // of an event per inventory, build and piece;
+    // throws IOException if the file cannot be read or is not a valid snapshot
+    public MasterBuilder read() throws IOException {
+        BulkEventScope scope = EventLog.getInstance().openBulkScope(
+                "Opened {0} inventories and {1} builds from " + source,
+                EventType.INVENTORY_ADDED, EventType.BUILD_ADDED);
+        try {
+            return readSnapshot(map());
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot: " + source, e);
+        } finally {
+            scope.close();
+        }
+    }
+
+    // EFFECTS: returns a read-only mapping of the whole source file in little-endian order
+    private ByteBuffer map() throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(source), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + source);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    // EFFECTS: reads MasterBuilder from the mapped file and returns it
+    private MasterBuilder readSnapshot(ByteBuffer file) throws IOException {
+        if (file.remaining() < 8 || file.getInt() != SnapshotWriter.MAGIC) {
+            throw new IOException("Not a snapshot: " + source);
+        }
+        int version = file.getInt();
+        if (version != SnapshotWriter.VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ": " + source);
+        }
+        long dictionaryOffset = file.getLong();
+        int inventoryCount = file.getInt();
+        int buildCount = file.getInt();
+        String name = getString(file);
+
+        ByteBuffer tables = file.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+                .position(Math.toIntExact(dictionaryOffset));
+        List<String> partTypes = getTable(tables);
+        List<String> colors = getTable(tables);
+        List<String> dimensions = getTable(tables);
+        PieceDictionary dictionary = new PieceDictionary(partTypes, colors, dimensions);
+
+        List<LegoInventory> inventories = new ArrayList<>();
+        for (int i = 0; i < inventoryCount; i++) {
+            inventories.add(readInventory(file, dictionary, partTypes, colors, dimensions));
+        }
+        List<Build> builds = new ArrayList<>();
+        for (int i = 0; i < buildCount; i++) {
+            builds.add(readBuild(file, partTypes, colors, dimensions));
+        }
+        MasterBuilder masterBuilder = new MasterBuilder(name);
+        masterBuilder.restore(inventories, builds);
+        return masterBuilder;
+    }
+
+    // MODIFIES: file
+    // EFFECTS: reads an inventory; a columnar or off-heap one reads its pieces from file in place
+    private LegoInventory readInventory(ByteBuffer file, PieceDictionary dictionary, List<String> partTypes,
+                                        List<String> colors, List<String> dimensions) {
+        String collectionName = getString(file);
+        PieceStorage storage = STORAGES[file.getInt()];
+        int count = file.getInt();
+        align(file);
+        if (storage == PieceStorage.LIST) {
+            LegoInventory inventory = new LegoInventory(collectionName, storage);
+            for (int i = 0; i < count; i++) {
+                inventory.addPiece(getPiece(file, partTypes, colors, dimensions));
+            }
+            return inventory;
+        }
+        ByteBuffer records = file.slice().order(ByteOrder.LITTLE_ENDIAN).limit(count * SnapshotWriter.RECORD_BYTES);
+        file.position(file.position() + count * SnapshotWriter.RECORD_BYTES);
+        return LegoInventory.fromRecords(collectionName, storage, records, count, dictionary);
+    }
+
+    // MODIFIES: file
+    // EFFECTS: reads a build and its required pieces
+    private Build readBuild(ByteBuffer file, List<String> partTypes, List<String> colors, List<String> dimensions) {
+        Build build = new Build(file.getInt());
+        int count = file.getInt();
+        align(file);
+        for (int i = 0; i < count; i++) {
+            build.addRequiredPiece(getPiece(file, partTypes, colors, dimensions));
+        }
+        return build;
+    }
+
+    // MODIFIES: file
+    // EFFECTS: reads a piece record and returns the piece it describes
+    private static LegoPiece getPiece(ByteBuffer file, List<String> partTypes, List<String> colors,
+                                      List<String> dimensions) {
+        String partType = partTypes.get(file.getInt());
+        String color = colors.get(file.getInt());
+        String dimension = dimensions.get(file.getInt());
+        return new LegoPiece(partType, color, dimension, file.getInt());
+    }
+
+    // MODIFIES: file
+    // EFFECTS: reads a dictionary table: a count followed by that many strings
+    private static List<String> getTable(ByteBuffer file) {
+        String[] values = new String[file.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getString(file);
+        }
+        return Arrays.asList(values);
+    }
+
+    // MODIFIES: file
+    // EFFECTS: reads a string written as its length in bytes followed by its UTF-8 bytes
+    private static String getString(ByteBuffer file) {
+        int length = file.getInt();
+        if (length < 0 || length > file.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        String s = StandardCharsets.UTF_8.decode(file.slice().limit(length)).toString();
+        file.position(file.position() + length);
+        return s;
+    }
+
+    // MODIFIES: file
+    // EFFECTS: skips the padding before the next multiple of RECORD_BYTES
+    private static void align(ByteBuffer file) {
+        file.position((file.position() + SnapshotWriter.RECORD_BYTES - 1) & -SnapshotWriter.RECORD_BYTES);
+    }
+}
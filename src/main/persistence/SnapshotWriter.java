@@ -0,0 +1,267 @@
+package persistence;
+
+import model.Build;
+import model.LegoInventory;
+import model.LegoPiece;
+import model.MasterBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Represents a writer that writes a MasterBuilder to a binary snapshot file, which SnapshotReader
+// opens without parsing its pieces.
+//
+// A snapshot is little-endian and laid out as:
+//   header      magic "LTSN", version, offset of the dictionary, number of inventories and builds
+//   user        user name
+//   inventories for each: name, storage, number of pieces, then one 16-byte record per piece
+//   builds      for each: id, number of required pieces, then one 16-byte record per piece
+//   dictionary  the part types, colors and dimensions the records refer to, as three tables
+// A record holds the dictionary indexes of a piece's part type, color and dimensions and its
+// quantity; records start on a 16-byte boundary so they can be read in place. Strings are a
+// length followed by UTF-8 bytes.
+//
+// The file is written next to the destination and moved over it when closed, so a reader never
+// sees a half-written snapshot and a snapshot still mapped by SnapshotReader is never changed.
+public class SnapshotWriter {
+    static final int MAGIC = 0x4C54534E; // "LTSN"
+    static final int VERSION = 1;
+    static final int RECORD_BYTES = 16;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path destination;
+    private final Path temporary;
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long flushed; // bytes written to channel so far
+    private final Map<String, Integer> partTypes = new HashMap<>(); // index of each part type written
+    private final Map<String, Integer> colors = new HashMap<>(); // index of each color written
+    private final Map<String, Integer> dimensions = new HashMap<>(); // index of each dimensions written
+
+    // EFFECTS: constructs writer to write a snapshot to destination file
+    public SnapshotWriter(String destination) {
+        this.destination = Paths.get(destination);
+        this.temporary = Paths.get(destination + ".tmp");
+    }
+
+    // MODIFIES: this
+    // EFFECTS: opens the temporary file the snapshot is written to;
+    // throws IOException if it cannot be opened for writing
+    public void open() throws IOException {
+        channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        flushed = 0;
+        buffer.clear();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes masterBuilder to the temporary file;
+    // throws IOException if the file cannot be written
+    public void write(MasterBuilder masterBuilder) throws IOException {
+        List<LegoInventory> inventories = new ArrayList<>(masterBuilder.getInventories());
+        List<Build> builds = new ArrayList<>(masterBuilder.getBuilds());
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(0); // dictionary offset, filled in once known
+        buffer.putInt(inventories.size());
+        buffer.putInt(builds.size());
+        putString(masterBuilder.getUserName());
+        for (LegoInventory inventory : inventories) {
+            writeInventory(inventory);
+        }
+        for (Build build : builds) {
+            writeBuild(build);
+        }
+        long dictionaryOffset = position();
+        writeTable(partTypes);
+        writeTable(colors);
+        writeTable(dimensions);
+        patchLong(8, dictionaryOffset);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes what is left of the snapshot, fsyncs it and moves it over the destination
+    // file; throws IOException if the file cannot be written or moved
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        DurableFiles.replace(temporary, destination);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes inventory's name, storage and pieces, holding its lock while the pieces are written
+    private void writeInventory(LegoInventory inventory) throws IOException {
+        putString(inventory.getCollectionName());
+        ensure(8);
+        buffer.putInt(inventory.getStorage().ordinal());
+        long countOffset = position();
+        buffer.putInt(0); // number of pieces, filled in once counted
+        align();
+        int[] count = new int[1];
+        try {
+            inventory.forEachPiece(piece -> {
+                putRecord(piece);
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        patchInt(countOffset, count[0]);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes build's id and required pieces
+    private void writeBuild(Build build) throws IOException {
+        List<LegoPiece> pieces = build.getRequiredPieces();
+        ensure(8);
+        buffer.putInt(build.getBuildId());
+        buffer.putInt(pieces.size());
+        align();
+        try {
+            for (LegoPiece piece : pieces) {
+                putRecord(piece);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the record of piece, adding its attributes to the dictionary if needed;
+    // throws UncheckedIOException if the file cannot be written
+    private void putRecord(LegoPiece piece) {
+        try {
+            ensure(RECORD_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.putInt(indexOf(partTypes, piece.getPartType()));
+        buffer.putInt(indexOf(colors, piece.getColor()));
+        buffer.putInt(indexOf(dimensions, piece.getDimensions()));
+        buffer.putInt(piece.getQuantity());
+    }
+
+    // MODIFIES: table
+    // EFFECTS: returns the index of value in table, giving it the next index if it has none
+    private static int indexOf(Map<String, Integer> table, String value) {
+        Integer index = table.get(value);
+        if (index == null) {
+            index = table.size();
+            table.put(value, index);
+        }
+        return index;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the strings of table in index order, after their number
+    private void writeTable(Map<String, Integer> table) throws IOException {
+        String[] values = new String[table.size()];
+        for (Map.Entry<String, Integer> entry : table.entrySet()) {
+            values[entry.getValue()] = entry.getKey();
+        }
+        ensure(4);
+        buffer.putInt(values.length);
+        for (String value : values) {
+            putString(value);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes s as its length in bytes followed by its UTF-8 bytes
+    private void putString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(4);
+        buffer.putInt(bytes.length);
+        if (bytes.length > buffer.capacity()) {
+            flush();
+            write(ByteBuffer.wrap(bytes));
+        } else {
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes zeros up to the next multiple of RECORD_BYTES
+    private void align() throws IOException {
+        int padding = (int) (-position() & (RECORD_BYTES - 1));
+        ensure(padding);
+        for (int i = 0; i < padding; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    // EFFECTS: returns the offset in the file of the next byte written
+    private long position() {
+        return flushed + buffer.position();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: makes room for bytes more bytes in the buffer, writing it to the file if needed
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the buffer to the file and empties it
+    private void flush() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes every remaining byte of bytes at the end of the file
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            flushed += channel.write(bytes);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: overwrites the int at the given offset in the file
+    private void patchInt(long offset, int value) throws IOException {
+        if (offset >= flushed) {
+            buffer.putInt((int) (offset - flushed), value);
+        } else {
+            ByteBuffer bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value);
+            writeAt(bytes, offset);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: overwrites the long at the given offset in the file
+    private void patchLong(long offset, long value) throws IOException {
+        if (offset >= flushed) {
+            buffer.putLong((int) (offset - flushed), value);
+        } else {
+            ByteBuffer bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, value);
+            writeAt(bytes, offset);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes every remaining byte of bytes at the given offset in the file
+    private void writeAt(ByteBuffer bytes, long offset) throws IOException {
+        while (bytes.hasRemaining()) {
+            offset += channel.write(bytes, offset);
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package ui;
 
 import model.*;
+import persistence.CsvImporter;
+import persistence.ImportReport;
 import persistence.JsonReader;
-import persistence.JsonWriter;
+import persistence.SaveService;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.List;
 import java.util.Scanner;
 
 /*
@@ -16,7 +16,7 @@ public class LegoTrackerApp {
     private MasterBuilder user;
     private Scanner scanner;
     private static final String JSON_STORE = "./data/legoTracker.json";
-    private JsonWriter jsonWriter;
+    private SaveService saveService;
     private JsonReader jsonReader;
 
     /*
@@ -24,7 +24,7 @@ public class LegoTrackerApp {
      * Effects: Initializes scanner, prompts user for name, and starts the main loop.
      */
     public LegoTrackerApp() {
-        jsonWriter = new JsonWriter(JSON_STORE);
+        saveService = new SaveService(JSON_STORE);
         jsonReader = new JsonReader(JSON_STORE);
         runLegoTracker();
     }
@@ -81,8 +81,9 @@ public class LegoTrackerApp {
                     Build build = user.getABuild(attemptBuildId);
                     if (build == null) {
                         System.out.println("\nNo build found with that ID.");
+                    } else {
+                        attemptBuild(build);
                     }
-                    attemptBuild(build);
                     break;
                 case 8:
                     saveLegoTracker();
@@ -91,6 +92,10 @@ public class LegoTrackerApp {
                     loadLegoTracker();
                     break;
                 case 10:
+                    importPieces();
+                    break;
+                case 11:
+                    saveService.close();
                     System.out.println("Thank you for using the Lego Tracker App!");
                     running = false;
                     break;
@@ -115,7 +120,8 @@ public class LegoTrackerApp {
         System.out.println("7. Build!");
         System.out.println("8. Save");
         System.out.println("9. Load");        
-        System.out.println("10. Exit");
+        System.out.println("10. Import Pieces from CSV");
+        System.out.println("11. Exit");
         System.out.print("Enter your choice: ");
     }
 
@@ -232,21 +238,15 @@ public class LegoTrackerApp {
      */
     private boolean containsPiece(LegoInventory inventory, String partType, 
                 String color, String dimensions, int quantity) {
-        boolean pieceExists = false;
-
-        // Check if the piece already exists in the inventory
-        for (LegoPiece piece : inventory.getPieces()) {
-            if (piece.getPartType().equalsIgnoreCase(partType)
-                    && piece.getColor().equalsIgnoreCase(color)
-                    && piece.getDimensions().equals(dimensions)) {
-                // Update existing piece quantity
-                piece.setQuantity(piece.getQuantity() + quantity);
-                pieceExists = true;
-                System.out.println("\nPieces updated successfully!");
-                break; // Stop searching once we update an existing piece
-            }
+        LegoPiece piece = inventory.findPiece(new PieceKey(partType, color, dimensions));
+        if (piece == null) {
+            return false;
         }
-        return pieceExists;
+
+        // Update existing piece quantity
+        piece.setQuantity(piece.getQuantity() + quantity);
+        System.out.println("\nPieces updated successfully!");
+        return true;
     }
 
     /*
@@ -255,10 +255,11 @@ public class LegoTrackerApp {
     private void printBuildStatus() {    
         for (Build build : user.getBuilds()) {
             String status = "";
-            if (user.isBuildable(build) == true) {
+            int missing = user.getMissingUnits(build);
+            if (missing == 0) {
                 status = "Buildable";
             } else {
-                status = "Not Buildable";
+                status = "Not Buildable (" + missing + " pieces missing)";
             }
             System.out.println("\nBuild ID: " + build.getBuildId() + " - Status: " + status);
         }
@@ -278,55 +279,58 @@ public class LegoTrackerApp {
     }
 
     /*
-     * Requires: buildId corresponds to an existing build.
+     * Requires: build is not null.
      * Modifies: user inventories
      * Effects: If the build is buildable, subtracts the required pieces from the user's inventory
-     *          and prints the result. Otherwise, notifies the user that the build cannot be completed.
+     *          and prints where they came from. Otherwise, notifies the user that the build cannot be completed.
      */
-    @SuppressWarnings("methodlength")
     public void attemptBuild(Build build) {
-        if (!user.isBuildable(build)) {
+        BuildResult result = user.consumeBuild(build);
+        if (!result.isCompleted()) {
             System.out.println("\nNot enough pieces to complete this build.");
             return;
         }
-
-        // Remove used pieces from inventory
-        for (LegoPiece requiredPiece : build.getRequiredPieces()) {
-            int remainingQuantity = requiredPiece.getQuantity();
-            for (LegoInventory inventory : user.getInventories()) {
-                List<LegoPiece> pieces = inventory.getPieces();
-                for (int i = 0; i < pieces.size() && remainingQuantity > 0; i++) {
-                    LegoPiece ownedPiece = pieces.get(i);
-                    if (ownedPiece.getPartType().equals(requiredPiece.getPartType())
-                            && ownedPiece.getColor().equals(requiredPiece.getColor())
-                            && ownedPiece.getDimensions().equals(requiredPiece.getDimensions())) {
-                        int usedQuantity = Math.min(ownedPiece.getQuantity(), remainingQuantity);
-                        ownedPiece.setQuantity(ownedPiece.getQuantity() - usedQuantity);
-                        remainingQuantity -= usedQuantity;
-
-                        if (ownedPiece.getQuantity() == 0) {
-                            pieces.remove(i);
-                            i--;
-                        }
-                    }
-                }
-            }
-        }
+        System.out.println("\n" + result);
         System.out.println("\nBuild successfully completed!");
     }
 
     /*
      * MODIFIES: this
-     * EFFECTS: Saves the Lego Tracker to file
+     * EFFECTS: Saves the Lego Tracker to file in the background and reports when it is done
      */
     private void saveLegoTracker() {
+        saveService.save(user).whenComplete((saved, error) -> {
+            if (error == null) {
+                System.out.println("Lego Tracker saved to " + JSON_STORE);
+            } else {
+                System.out.println("Unable to write to file: " + JSON_STORE);
+            }
+        });
+    }
+
+    /*
+     * MODIFIES: user
+     * EFFECTS: Imports the pieces listed in a CSV file into an existing inventory and prints how
+     *          many rows were imported and rejected, with the first rejected rows
+     */
+    private void importPieces() {
+        System.out.print("\nChoose an inventory to import pieces into: ");
+        LegoInventory inventory = user.getAnInventory(scanner.nextLine().trim());
+        if (inventory == null) {
+            System.out.println("\nThat inventory does not exist.");
+            return;
+        }
+        System.out.print("Enter CSV file (partType,color,dimensions,quantity): ");
+        String file = scanner.nextLine().trim();
         try {
-            jsonWriter.open();
-            jsonWriter.write(user);
-            jsonWriter.close();
-            System.out.println("Lego Tracker saved to " + JSON_STORE);
-        } catch (FileNotFoundException e) {
-            System.out.println("Unable to write to file: " + JSON_STORE);
+            ImportReport report = new CsvImporter(file).importInto(inventory);
+            System.out.println("\nImported " + report.getRowsImported() + " rows, rejected "
+                    + report.getRowsRejected() + ".");
+            for (ImportReport.RejectedRow row : report.getRejectedRows()) {
+                System.out.println("  " + row);
+            }
+        } catch (IOException e) {
+            System.out.println("Unable to read from file: " + file);
         }
     }
 
@@ -1,14 +1,17 @@
 package ui;
 
 import model.*;
+import persistence.CsvImporter;
+import persistence.ImportReport;
 import persistence.JsonReader;
-import persistence.JsonWriter;
+import persistence.SaveService;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
-import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /*
  *  GUI screen for Lego Tracker App with menu options as buttons.
@@ -17,7 +20,7 @@ public class LegoTrackerGUI extends JFrame {
     private MasterBuilder user;
     private JButton[] optionButtons;
     private static final String JSON_STORE = "./data/legoTracker.json";
-    private JsonWriter jsonWriter;
+    private SaveService saveService;
     private JsonReader jsonReader;
     private static final String[] OPTIONS = {
             "1. Add Inventory",
@@ -30,7 +33,8 @@ public class LegoTrackerGUI extends JFrame {
             "8. Build!",
             "9. Save",
             "10. Load",
-            "11. Exit"
+            "11. Import Pieces from CSV",
+            "12. Exit"
     };
 
 
@@ -43,10 +47,16 @@ public class LegoTrackerGUI extends JFrame {
                 JOptionPane.PLAIN_MESSAGE);
         
         user = new MasterBuilder(userName);
-        jsonWriter = new JsonWriter(JSON_STORE);
+        saveService = new SaveService(JSON_STORE);
         jsonReader = new JsonReader(JSON_STORE);
 
-        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeWindow();
+            }
+        });
         setSize(400, 500);
         setLayout(new BorderLayout());
 
@@ -159,6 +169,9 @@ public class LegoTrackerGUI extends JFrame {
                 loadLegoTracker();
                 break;
             case 11:
+                importPieces();
+                break;
+            case 12:
                 showEventLogThenExit();
                 break;
             default: JOptionPane.showMessageDialog(this,
@@ -216,21 +229,55 @@ public class LegoTrackerGUI extends JFrame {
         String dim = JOptionPane.showInputDialog(this, "Enter dimensions (e.g., 2x4):");
         int quantity = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter quantity:"));
 
-        LegoPiece newPiece = new LegoPiece(type, color, dim, quantity);
+        // merges into the existing piece if the inventory already has one
+        inventory.addOrMerge(new LegoPiece(type, color, dim, quantity));
 
-        // checking to see if piece already exists in the inventory
-        for (LegoPiece piece : inventory.getPieces()) {
-            if (piece.getPartType().equalsIgnoreCase(newPiece.getPartType()) 
-                    && piece.getColor().equalsIgnoreCase(newPiece.getColor())
-                    && piece.getDimensions().equalsIgnoreCase(newPiece.getDimensions())) {
-                piece.addQuantity(newPiece.getQuantity());
-                return;
-            }
+        JOptionPane.showMessageDialog(this, "Piece added to inventory.");
+    }
+
+    // MODIFIES: user
+    // EFFECTS: Prompts user for an inventory and a CSV file, imports the pieces listed in the file
+    // into the inventory in the background and shows how many rows were imported and rejected
+    // when it is done
+    private void importPieces() {
+        String invName = JOptionPane.showInputDialog(this, "Enter inventory name:");
+        LegoInventory inventory = user.getAnInventory(invName);
+        if (inventory == null) {
+            JOptionPane.showMessageDialog(this, "Inventory not found.");
+            return;
         }
-        
-        inventory.addPiece(newPiece);
+        JFileChooser chooser = new JFileChooser(".");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String file = chooser.getSelectedFile().getPath();
+        new SwingWorker<ImportReport, Void>() {
+            @Override
+            protected ImportReport doInBackground() throws IOException {
+                return new CsvImporter(file).importInto(inventory);
+            }
 
-        JOptionPane.showMessageDialog(this, "Piece added to inventory.");
+            @Override
+            protected void done() {
+                try {
+                    showImportReport(get());
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(LegoTrackerGUI.this, "Unable to read from file: " + file);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    // EFFECTS: Shows how many rows an import imported and rejected, and the first rejected rows
+    private void showImportReport(ImportReport report) {
+        StringBuilder sb = new StringBuilder("Imported " + report.getRowsImported() + " rows, rejected "
+                + report.getRowsRejected() + ".");
+        for (ImportReport.RejectedRow row : report.getRejectedRows()) {
+            sb.append("\n").append(row);
+        }
+        JOptionPane.showMessageDialog(this, sb.toString(), "Import", JOptionPane.INFORMATION_MESSAGE);
     }
 
     // MODIFIES: user
@@ -249,24 +296,18 @@ public class LegoTrackerGUI extends JFrame {
         String dim = JOptionPane.showInputDialog(this, "Enter dimensions (e.g., 2x4):");
         int quantity = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter quantity:"));
 
-        LegoPiece newPiece = new LegoPiece(type, color, dim, quantity);
-
-        // checking to see if piece already exists in the inventory
-        for (LegoPiece piece : inventory.getPieces()) {
-            if (piece.getPartType().equalsIgnoreCase(newPiece.getPartType()) 
-                    && piece.getColor().equalsIgnoreCase(newPiece.getColor())
-                    && piece.getDimensions().equalsIgnoreCase(newPiece.getDimensions())) {
-                if (piece.getQuantity() - quantity <= 0) {
-                    inventory.removePiece(piece);
-                } else {
-                    piece.removeQuantity(quantity);
-                }
+        LegoPiece piece = inventory.findPiece(new PieceKey(type, color, dim));
+        if (piece == null) {
+            JOptionPane.showMessageDialog(this, "Piece does not exist in inventory.");
+            return;
+        }
 
-                JOptionPane.showMessageDialog(this, "Pieces removed from inventory.");
-                return;
-            }
+        if (piece.getQuantity() - quantity <= 0) {
+            inventory.removePiece(piece);
+        } else {
+            piece.removeQuantity(quantity);
         }
-        JOptionPane.showMessageDialog(this, "Piece does not exist in inventory.");
+        JOptionPane.showMessageDialog(this, "Pieces removed from inventory.");
     }
 
     // MODIFIES: user
@@ -300,9 +341,13 @@ public class LegoTrackerGUI extends JFrame {
     private void showBuildStatus() {
         StringBuilder sb = new StringBuilder();
         for (Build b : user.getBuilds()) {
-            boolean complete = user.isBuildable(b);
-            sb.append("Build ID: ").append(b.getBuildId())
-                    .append(" - ").append(complete ? "Buildable" : "Not Buildable").append("\n");
+            int missing = user.getMissingUnits(b);
+            sb.append("Build ID: ").append(b.getBuildId()).append(" - ");
+            if (missing == 0) {
+                sb.append("Buildable\n");
+            } else {
+                sb.append("Not Buildable (").append(missing).append(" pieces missing)\n");
+            }
         }
         JOptionPane.showMessageDialog(this, sb.toString(), "Build Status", JOptionPane.INFORMATION_MESSAGE);
     }
@@ -324,7 +369,6 @@ public class LegoTrackerGUI extends JFrame {
 
     // MODIFIES: user inventories
     // EFFECTS: attempts to complete a build and removes used pieces if buildable
-    @SuppressWarnings("methodlength")
     private void attemptBuild() {
         int id = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter Build ID to attempt:"));
         Build build = user.getABuild(id);
@@ -334,47 +378,25 @@ public class LegoTrackerGUI extends JFrame {
             return;
         }
 
-        if (!user.isBuildable(build)) {
+        BuildResult result = user.consumeBuild(build);
+        if (!result.isCompleted()) {
             JOptionPane.showMessageDialog(this, "Not enough pieces to complete this build.");
             return;
         }
-
-        for (LegoPiece requiredPiece : build.getRequiredPieces()) {
-            int remainingQuantity = requiredPiece.getQuantity();
-            for (LegoInventory inventory : user.getInventories()) {
-                List<LegoPiece> pieces = inventory.getPieces();
-                for (int i = 0; i < pieces.size() && remainingQuantity > 0; i++) {
-                    LegoPiece ownedPiece = pieces.get(i);
-                    if (ownedPiece.getPartType().equalsIgnoreCase(requiredPiece.getPartType())
-                            && ownedPiece.getColor().equalsIgnoreCase(requiredPiece.getColor())
-                            && ownedPiece.getDimensions().equalsIgnoreCase(requiredPiece.getDimensions())) {
-
-                        int usedQuantity = Math.min(ownedPiece.getQuantity(), remainingQuantity);
-                        ownedPiece.setQuantity(ownedPiece.getQuantity() - usedQuantity);
-                        remainingQuantity -= usedQuantity;
-
-                        if (ownedPiece.getQuantity() == 0) {
-                            pieces.remove(i);
-                            i--;
-                        }
-                    }
-                }
-            }
-        }
-        JOptionPane.showMessageDialog(this, "Build successfully completed!");
+        JOptionPane.showMessageDialog(this, result + "\n\nBuild successfully completed!");
     }
 
     // MODIFIES: this
-    // EFFECTS: Saves the current user state to JSON file
+    // EFFECTS: Saves the current user state to JSON file in the background and shows a message
+    // when it is done
     private void saveLegoTracker() {
-        try {
-            jsonWriter.open();
-            jsonWriter.write(user);
-            jsonWriter.close();
-            JOptionPane.showMessageDialog(this, "Lego Tracker saved to " + JSON_STORE);
-        } catch (FileNotFoundException e) {
-            JOptionPane.showMessageDialog(this, "Unable to write to file: " + JSON_STORE);
-        }
+        saveService.save(user).whenComplete((saved, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                JOptionPane.showMessageDialog(this, "Lego Tracker saved to " + JSON_STORE);
+            } else {
+                JOptionPane.showMessageDialog(this, "Unable to write to file: " + JSON_STORE);
+            }
+        }));
     }
 
     // MODIFIES: this
@@ -388,12 +410,20 @@ public class LegoTrackerGUI extends JFrame {
         }
     }
 
+    // EFFECTS: Waits for pending and queued saves to finish, then closes the window and exits
+    private void closeWindow() {
+        saveService.close();
+        dispose();
+        System.exit(0);
+    }
+
     // EFFECTS: Shows the event log in a window and exits the application after it is closed
     private void showEventLogThenExit() {
         for (model.Event event : model.EventLog.getInstance()) {
             System.out.println(event.toString());
         }
 
+        saveService.close();
         System.exit(0);
     }
 }
\ No newline at end of file
@@ -1,7 +1,13 @@
 package ui;
 
+import model.EventLog;
+import persistence.RollingFileEventAppender;
+
 public class Main {
     public static void main(String[] args) throws Exception {
+        RollingFileEventAppender appender = new RollingFileEventAppender();
+        appender.closeOnShutdown();
+        EventLog.getInstance().addSink(appender);
         new LegoTrackerGUI();
     }
 }
\ No newline at end of file
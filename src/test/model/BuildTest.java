@@ -33,4 +33,12 @@ public class BuildTest {
         assertEquals(piece1, pieces.get(0));
         assertEquals(piece2, pieces.get(1));
     }
+
+    @Test
+    void testGetRequiredQuantity() {
+        build.addRequiredPiece(piece1);
+        build.addRequiredPiece(new LegoPiece("brick", "RED", "2x4", 3));
+        assertEquals(13, build.getRequiredQuantity(piece1.getKey()));
+        assertEquals(0, build.getRequiredQuantity(piece2.getKey()));
+    }
 }
@@ -0,0 +1,179 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class ColumnarPieceStoreTest {
+    protected LegoInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new LegoInventory("Warehouse", storage());
+    }
+
+    protected PieceStorage storage() {
+        return PieceStorage.COLUMNAR;
+    }
+
+    @Test
+    void testAddAndFind() {
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        inventory.addPiece(new LegoPiece("Plate", "Blue", "1x2", 5));
+        assertEquals(storage(), inventory.getStorage());
+        assertEquals(2, inventory.getPieces().size());
+        assertEquals(15, inventory.getTotalPieces());
+
+        LegoPiece brick = inventory.findPiece(new PieceKey("brick", "RED", "2X4"));
+        assertEquals("Brick", brick.getPartType());
+        assertEquals("Red", brick.getColor());
+        assertEquals("2x4", brick.getDimensions());
+        assertEquals(10, brick.getQuantity());
+        assertNull(inventory.findPiece(new PieceKey("Tile", "Red", "2x4")));
+    }
+
+    @Test
+    void testAddMergesEqualKeys() {
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        inventory.addPiece(new LegoPiece("brick", "red", "2x4", 3));
+        assertEquals(1, inventory.getPieces().size());
+        assertEquals(13, inventory.getPieces().get(0).getQuantity());
+        assertEquals(16, inventory.addOrMerge(new LegoPiece("BRICK", "Red", "2x4", 3)).getQuantity());
+    }
+
+    @Test
+    void testViewsWriteThrough() {
+        MasterBuilder builder = new MasterBuilder("Shaurya");
+        builder.addInventory(inventory);
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+
+        LegoPiece view = inventory.findPiece(new PieceKey("Brick", "Red", "2x4"));
+        view.addQuantity(5);
+        view.removeQuantity(2);
+        assertEquals(13, inventory.findPiece(view.getKey()).getQuantity());
+        assertEquals(13, builder.getAvailableQuantity(view.getKey()));
+
+        view.setQuantity(1);
+        assertEquals(1, inventory.getTotalPieces());
+        assertEquals(1, builder.getAvailableQuantity(view.getKey()));
+    }
+
+    @Test
+    void testRemoveKeepsOtherRowsReachable() {
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        inventory.addPiece(new LegoPiece("Plate", "Blue", "1x2", 5));
+        inventory.addPiece(new LegoPiece("Tile", "Green", "1x1", 3));
+        LegoPiece tile = inventory.findPiece(new PieceKey("Tile", "Green", "1x1"));
+
+        inventory.removePiece(new LegoPiece("brick", "red", "2x4", 0));
+        assertEquals(2, inventory.getPieces().size());
+        assertNull(inventory.findPiece(new PieceKey("Brick", "Red", "2x4")));
+        assertEquals(3, tile.getQuantity());
+        tile.addQuantity(1);
+        assertEquals(4, inventory.findPiece(tile.getKey()).getQuantity());
+
+        inventory.removePiece(tile);
+        assertEquals(0, tile.getQuantity());
+        tile.addQuantity(1);
+        assertEquals(5, inventory.getTotalPieces());
+    }
+
+    @Test
+    void testViewsOfARowShareItsKey() {
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        inventory.addPiece(new LegoPiece("Plate", "Blue", "1x2", 5));
+        inventory.addPiece(new LegoPiece("Tile", "Green", "1x1", 3));
+        PieceKey tileKey = inventory.findPiece(new PieceKey("tile", "green", "1x1")).getKey();
+        assertSame(tileKey, inventory.findPiece(new PieceKey("Tile", "Green", "1x1")).getKey());
+        assertSame(tileKey, inventory.getPieces().get(2).getKey());
+
+        inventory.removePiece(new LegoPiece("Brick", "Red", "2x4", 0));
+        assertSame(tileKey, inventory.getPieces().get(0).getKey());
+        inventory.addPiece(new LegoPiece("Slope", "Black", "2x2", 1));
+        assertEquals(new PieceKey("Slope", "Black", "2x2"), inventory.getPieces().get(2).getKey());
+
+        inventory.removePieces(List.of(inventory.findPiece(new PieceKey("Plate", "Blue", "1x2"))));
+        assertSame(tileKey, inventory.getPieces().get(0).getKey());
+        assertEquals(new PieceKey("Slope", "Black", "2x2"), inventory.getPieces().get(1).getKey());
+    }
+
+    @Test
+    void testRemovePieces() {
+        MasterBuilder builder = new MasterBuilder("Shaurya");
+        builder.addInventory(inventory);
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        inventory.addPiece(new LegoPiece("Plate", "Blue", "1x2", 5));
+        inventory.addPiece(new LegoPiece("Tile", "Green", "1x1", 3));
+        LegoPiece brick = inventory.findPiece(new PieceKey("Brick", "Red", "2x4"));
+        LegoPiece tile = inventory.findPiece(new PieceKey("Tile", "Green", "1x1"));
+
+        inventory.removePieces(List.of(brick, tile, inventory.findPiece(tile.getKey())));
+        assertEquals(1, inventory.getPieces().size());
+        assertEquals("Plate", inventory.getPieces().get(0).getPartType());
+        assertEquals(0, builder.getAvailableQuantity(brick.getKey()));
+        assertEquals(5, builder.getAvailableQuantity(new PieceKey("Plate", "Blue", "1x2")));
+    }
+
+    @Test
+    void testConsumeBuild() {
+        MasterBuilder builder = new MasterBuilder("Shaurya");
+        Build build = new Build(1);
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        build.addRequiredPiece(new LegoPiece("Plate", "Blue", "1x2", 2));
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        inventory.addPiece(new LegoPiece("Plate", "Blue", "1x2", 5));
+        builder.addInventory(inventory);
+        builder.addBuild(build);
+
+        assertTrue(builder.consumeBuild(build).isCompleted());
+        assertEquals(1, inventory.getPieces().size());
+        assertEquals(3, inventory.getTotalPieces());
+        assertFalse(builder.isBuildable(build));
+    }
+
+    @Test
+    void testMatchesHashMapUnderRandomChanges() {
+        Random random = new Random(210);
+        Map<PieceKey, Integer> expected = new HashMap<>();
+        List<PieceKey> keys = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String type = "Type" + random.nextInt(20);
+            String color = "Color" + random.nextInt(30);
+            String dims = (1 + random.nextInt(4)) + "x" + (1 + random.nextInt(4));
+            PieceKey key = new PieceKey(type, color, dims);
+            if (random.nextInt(4) == 0 && !keys.isEmpty()) {
+                PieceKey doomed = keys.remove(random.nextInt(keys.size()));
+                expected.remove(doomed);
+                inventory.removePiece(inventory.findPiece(doomed));
+            } else {
+                int quantity = 1 + random.nextInt(10);
+                if (expected.merge(key, quantity, Integer::sum) == quantity) {
+                    keys.add(key);
+                }
+                inventory.addPiece(new LegoPiece(type, color, dims, quantity));
+            }
+        }
+
+        assertEquals(expected.size(), inventory.getPieces().size());
+        Map<String, Integer> colors = new HashMap<>();
+        int total = 0;
+        for (Map.Entry<PieceKey, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), inventory.findPiece(entry.getKey()).getQuantity());
+            colors.merge(entry.getKey().getColor(), entry.getValue(), Integer::sum);
+            total += entry.getValue();
+        }
+        assertEquals(total, inventory.getTotalPieces());
+        assertEquals(colors, inventory.getColorCounts());
+    }
+}
@@ -0,0 +1,76 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import persistence.Compression;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipException;
+
+public class CompressionTest {
+    private static final byte[] TEXT = "{\"partType\": \"Brick\", \"color\": \"Red\"}\n".repeat(1000)
+            .getBytes(StandardCharsets.UTF_8);
+
+    private byte[] compress(Compression compression, int level, byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream stream = compression.compress(out, level)) {
+            stream.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] decompress(byte[] bytes) throws IOException {
+        try (InputStream in = Compression.decompress(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void testForFile() {
+        assertEquals(Compression.GZIP, Compression.forFile("./data/save.json.gz"));
+        assertEquals(Compression.DEFLATE, Compression.forFile("save.deflate"));
+        assertEquals(Compression.NONE, Compression.forFile("save.json"));
+        assertEquals(Compression.NONE, Compression.forFile("gz"));
+        assertEquals(".gz", Compression.GZIP.getExtension());
+        assertEquals("", Compression.NONE.getExtension());
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        for (Compression compression : Compression.values()) {
+            for (int level : new int[] {1, 9, Compression.DEFAULT_LEVEL}) {
+                byte[] compressed = compress(compression, level, TEXT);
+                if (compression != Compression.NONE) {
+                    assertTrue(compressed.length < TEXT.length / 10, compression + " " + level);
+                }
+                assertArrayEquals(TEXT, decompress(compressed), compression + " " + level);
+            }
+            assertArrayEquals(new byte[0], decompress(compress(compression, 1, new byte[0])));
+        }
+    }
+
+    @Test
+    void testHeaders() throws IOException {
+        byte[] gzip = compress(Compression.GZIP, 6, TEXT);
+        assertEquals((byte) 0x1f, gzip[0]);
+        assertEquals((byte) 0x8b, gzip[1]);
+        byte[] deflate = compress(Compression.DEFLATE, 6, TEXT);
+        assertEquals((byte) 0x78, deflate[0]);
+        assertArrayEquals(new byte[] {'{'}, decompress(new byte[] {'{'}));
+        assertArrayEquals("x".getBytes(StandardCharsets.UTF_8), decompress("x".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testDamagedData() throws IOException {
+        byte[] gzip = compress(Compression.GZIP, 6, TEXT);
+        gzip[gzip.length / 2] ^= 0x55;
+        gzip[gzip.length / 2 + 1] ^= 0x55;
+        assertThrows(IOException.class, () -> decompress(gzip));
+        byte[] header = {0x1f, (byte) 0x8b, 1};
+        assertThrows(ZipException.class, () -> decompress(header));
+    }
+}
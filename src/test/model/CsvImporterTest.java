@@ -0,0 +1,173 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import persistence.CsvImporter;
+import persistence.ImportReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class CsvImporterTest extends JsonTest {
+    @TempDir
+    Path dir;
+    private LegoInventory inventory;
+
+    @BeforeEach
+    void runBefore() {
+        inventory = new LegoInventory("Bin");
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+    }
+
+    private ImportReport importText(String text) throws IOException {
+        Path file = dir.resolve("pieces.csv");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return new CsvImporter(file.toString()).importInto(inventory);
+    }
+
+    @Test
+    void testImportMergesDuplicates() throws IOException {
+        ImportReport report = importText("\uFEFFpartType,color,dimensions,quantity\r\n"
+                + "Brick,Red,2x4,5\r\n"
+                + "  brick , RED, 2X4 ,1\r\n"
+                + "\r\n"
+                + "Plate,Blue,1x2,7\n"
+                + "\"Brick, Round\",\"Dark \"\"Tan\"\"\",\"2x2\",3\n"
+                + "Plate,Blue,1x2,2");
+        assertEquals(5, report.getRowsImported());
+        assertEquals(0, report.getRowsRejected());
+        assertEquals(3, inventory.getPieces().size());
+        checkLegoPiece("Brick", "Red", "2x4", 16, inventory.getPieces().get(0));
+        checkLegoPiece("Plate", "Blue", "1x2", 9, inventory.getPieces().get(1));
+        checkLegoPiece("Brick, Round", "Dark \"Tan\"", "2x2", 3, inventory.getPieces().get(2));
+        assertEquals(28, inventory.getTotalPieces());
+        assertEquals(16, inventory.getColorCount("red"));
+    }
+
+    @Test
+    void testImportKeepsApartSpellingsWithEqualHashes() throws IOException {
+        // "2x4adagzpjs" is chosen so that both rows hash alike and one key is a prefix of the other
+        ImportReport report = importText("brick,red,2x4adagzpjs,1\nbrick,red,2x4,2\n");
+        assertEquals(2, report.getRowsImported());
+        assertEquals(2, inventory.getPieces().size());
+        checkLegoPiece("Brick", "Red", "2x4", 12, inventory.getPieces().get(0));
+        checkLegoPiece("brick", "red", "2x4adagzpjs", 1, inventory.getPieces().get(1));
+    }
+
+    @Test
+    void testImportRejectsRows() throws IOException {
+        ImportReport report = importText("Brick,Red,2x4\n"
+                + "Brick,Red,2x4,1,extra\n"
+                + ",Red,2x4,1\n"
+                + "Brick,,2x4,1\n"
+                + "Brick,Red,\"\",1\n"
+                + "Brick,Red,2x4,0\n"
+                + "Brick,Red,2x4,-3\n"
+                + "Brick,Red,2x4,many\n"
+                + "Brick,Red,2x4,99999999999\n"
+                + "\"Multi\nline\" x,Red,2x4,1\n"
+                + "Tile,Tan,1x1,4\n"
+                + "Tile,Tan,1x1,\"2");
+        assertEquals(1, report.getRowsImported());
+        assertEquals(11, report.getRowsRejected());
+        List<ImportReport.RejectedRow> rejected = report.getRejectedRows();
+        assertEquals("expected 4 fields but found 3", rejected.get(0).getReason());
+        assertEquals("Brick,Red,2x4", rejected.get(0).getText());
+        assertEquals(1, rejected.get(0).getLine());
+        assertEquals("expected 4 fields but found 5", rejected.get(1).getReason());
+        assertEquals("missing part type", rejected.get(2).getReason());
+        assertEquals("missing color", rejected.get(3).getReason());
+        assertEquals("missing dimensions", rejected.get(4).getReason());
+        for (int i = 5; i < 9; i++) {
+            assertTrue(rejected.get(i).getReason().startsWith("quantity is not a whole number"),
+                    rejected.get(i).getText());
+        }
+        assertEquals("text after a closing quote", rejected.get(9).getReason());
+        assertEquals(10, rejected.get(9).getLine());
+        assertEquals("unterminated quoted field", rejected.get(10).getReason());
+        assertEquals(13, rejected.get(10).getLine());
+        assertEquals("line 13: unterminated quoted field: Tile,Tan,1x1,\"2", rejected.get(10).toString());
+        assertEquals(14, inventory.getTotalPieces());
+    }
+
+    @Test
+    void testImportReportsFirstRejectedRows() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            text.append("Brick,Red,2x4,x").append(i).append('\n');
+        }
+        ImportReport report = importText(text.toString());
+        assertEquals(250, report.getRowsRejected());
+        assertEquals(100, report.getRejectedRows().size());
+        assertEquals(100, report.getRejectedRows().get(99).getLine());
+    }
+
+    @Test
+    void testImportLogsOneSummary() throws IOException {
+        EventLog.getInstance().clear();
+        Path file = dir.resolve("pieces.csv");
+        Files.writeString(file, "Brick,Red,2x4,1\nBrick,Red,2x4,2\nPlate,Blue,1x2,3\n", StandardCharsets.UTF_8);
+        new CsvImporter(file.toString()).importInto(inventory);
+        List<String> descriptions = new ArrayList<>();
+        for (Event event : EventLog.getInstance()) {
+            descriptions.add(event.getDescription());
+        }
+        assertEquals(List.of("Event log cleared.", "Merged 2 batched pieces into inventory Bin from " + file),
+                descriptions);
+    }
+
+    @Test
+    void testImportLargeCompressedFile() throws IOException {
+        MasterBuilder masterBuilder = new MasterBuilder("TestUser");
+        LegoInventory columnar = new LegoInventory("Columnar", PieceStorage.COLUMNAR);
+        masterBuilder.addInventory(columnar);
+        Build build = new Build(1);
+        build.addRequiredPiece(new LegoPiece("Part 7", "Color 7", "1x7", 2000));
+        masterBuilder.addBuild(build);
+
+        Path file = dir.resolve("pieces.csv.gz");
+        int rows = 200000;
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < rows; i++) {
+                text.append("Part ").append(i % 300).append(",Color ").append(i % 300).append(",1x")
+                        .append(i % 300).append(',').append(1 + i % 5).append('\n');
+                if (text.length() > 60000) {
+                    out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+                    text.setLength(0);
+                }
+            }
+            out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        EventLog.getInstance().clear();
+        ImportReport report = new CsvImporter(file.toString(), 50000).importInto(columnar);
+        assertEquals(rows, report.getRowsImported());
+        assertEquals("Merged 1,200 batched pieces into inventory Columnar from " + file, lastDescription());
+        assertEquals(300, columnar.getPieces().size());
+        assertEquals(600000, columnar.getTotalPieces());
+        assertEquals(2001, columnar.findPiece(new PieceKey("Part 7", "Color 7", "1x7")).getQuantity());
+        assertTrue(masterBuilder.isBuildable(build));
+    }
+
+    private String lastDescription() {
+        String last = null;
+        for (Event event : EventLog.getInstance()) {
+            last = event.getDescription();
+        }
+        return last;
+    }
+
+    @Test
+    void testImportMissingFile() {
+        CsvImporter importer = new CsvImporter(dir.resolve("none.csv").toString());
+        assertThrows(IOException.class, () -> importer.importInto(inventory));
+        assertEquals(10, inventory.getTotalPieces());
+    }
+}
@@ -0,0 +1,50 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class EventIndexTest {
+
+    @Test
+    void testFindInOrder() {
+        EventIndex index = new EventIndex();
+        for (int i = 0; i < 100; i++) {
+            index.add(i, 1000 + i * 10);
+        }
+        assertArrayEquals(new long[] {5, 6, 7}, index.find(1050, 1080));
+        assertArrayEquals(new long[] {0}, index.find(0, 1001));
+        assertArrayEquals(new long[] {99}, index.find(1990, Long.MAX_VALUE));
+        assertArrayEquals(new long[0], index.find(1051, 1059));
+    }
+
+    @Test
+    void testFindOutOfOrder() {
+        EventIndex index = new EventIndex();
+        long[] times = {10, 12, 11, 15, 13, 20, 14, 21};
+        for (int i = 0; i < times.length; i++) {
+            index.add(i, times[i]);
+        }
+        assertArrayEquals(new long[] {1, 2, 4, 6}, index.find(11, 15));
+        assertArrayEquals(new long[] {3, 5, 7}, index.find(15, 22));
+    }
+
+    @Test
+    void testEvictBefore() {
+        EventIndex index = new EventIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.add(i * 2, i);
+        }
+        index.evictBefore(1990);
+        assertArrayEquals(new long[] {1990, 1992, 1994, 1996, 1998}, index.find(0, 1000));
+        assertFalse(index.isEmpty());
+        for (int i = 1000; i < 5000; i++) {
+            index.add(i * 2, i);
+            index.evictBefore(i * 2 - 10);
+        }
+        assertArrayEquals(new long[] {9988, 9990, 9992, 9994, 9996, 9998}, index.find(0, 5000));
+        index.evictBefore(10000);
+        assertTrue(index.isEmpty());
+    }
+}
\ No newline at end of file
@@ -2,15 +2,22 @@ package model;
 
 import model.Event;
 import model.EventLog;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -32,6 +39,16 @@ public class EventLogTest {
         el.logEvent(e3);
     }
 
+    @AfterEach
+    public void restoreDefaults() {
+        EventLog el = EventLog.getInstance();
+        el.configure(EventLog.DEFAULT_CAPACITY);
+        el.setMinimumLevel(EventLevel.INFO);
+        for (EventCategory category : EventCategory.values()) {
+            el.setCategoryEnabled(category, true);
+        }
+    }
+
     @Test
     public void testLogEvent() {	
         List<Event> l = new ArrayList<Event>();
@@ -55,4 +72,223 @@ public class EventLogTest {
         assertEquals("Event log cleared.", itr.next().getDescription());
         assertFalse(itr.hasNext());
     }
+
+    @Test
+    public void testGetInstanceIsShared() {
+        assertSame(EventLog.getInstance(), EventLog.getInstance());
+        assertEquals(EventLog.DEFAULT_CAPACITY, EventLog.getInstance().getCapacity());
+    }
+
+    @Test
+    public void testOverwriteOldest() {
+        EventLog el = EventLog.getInstance();
+        el.configure(3);
+        assertEquals(4, el.getCapacity());
+        for (int i = 0; i < 10; i++) {
+            el.logEvent(new Event("E" + i));
+        }
+        assertEquals(List.of("E6", "E7", "E8", "E9"), descriptions(el));
+    }
+
+    @Test
+    public void testSpillToDisk(@TempDir Path dir) {
+        EventLog el = EventLog.getInstance();
+        el.configure(4, EventOverflow.SPILL_TO_DISK, dir.resolve("events.spill"));
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            el.logEvent(new Event("E" + i + (i == 2 ? "\ttab\nline" : "")));
+            expected.add("E" + i + (i == 2 ? "\ttab\nline" : ""));
+        }
+        el.logEvent(new Event("two\tlines\n\\"));
+        expected.add("two\tlines\n\\");
+        assertEquals(expected, descriptions(el));
+
+        el.clear();
+        assertEquals(List.of("Event log cleared."), descriptions(el));
+        assertThrows(IllegalArgumentException.class, () -> el.configure(4, EventOverflow.SPILL_TO_DISK, null));
+    }
+
+    @Test
+    public void testConcurrentLogging() throws InterruptedException {
+        EventLog el = EventLog.getInstance();
+        el.clear();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String name = "T" + t + ":";
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    el.logEvent(new Event(name + i));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int[] nextOf = new int[4];
+        int count = 0;
+        for (Event event : el) {
+            String description = event.getDescription();
+            if (description.startsWith("T")) {
+                int thread = description.charAt(1) - '0';
+                assertEquals(nextOf[thread]++, Integer.parseInt(description.substring(3)));
+                count++;
+            }
+        }
+        assertEquals(20000, count);
+    }
+
+    @Test
+    public void testLevelAndCategoryFilters() {
+        EventLog el = EventLog.getInstance();
+        el.clear();
+        LegoPiece piece = new LegoPiece("Brick", "Red", "2x4", 1);
+        el.setCategoryEnabled(EventCategory.PIECE, false);
+        assertFalse(el.isCategoryEnabled(EventCategory.PIECE));
+        assertFalse(el.isLoggable(EventType.QUANTITY_ADDED));
+        piece.addQuantity(1);
+        new LegoInventory("Shelf").addPiece(piece);
+        el.setMinimumLevel(EventLevel.WARNING);
+        assertEquals(EventLevel.WARNING, el.getMinimumLevel());
+        el.logEvent(new Event("Dropped"));
+        assertEquals(List.of("Event log cleared.", "Added 2x Red Brick (2x4) to inventory Shelf"), descriptions(el));
+    }
+
+    @Test
+    public void testBulkScope() {
+        EventLog el = EventLog.getInstance();
+        el.clear();
+        LegoInventory inventory = new LegoInventory("Shelf");
+        try (BulkEventScope scope = el.openBulkScope("Added {0} pieces, {1} changes {2} {x}",
+                EventType.INVENTORY_PIECE_ADDED, EventType.QUANTITY_ADDED)) {
+            for (int i = 0; i < 1500; i++) {
+                inventory.addPiece(new LegoPiece("Brick", "Red", "1x" + i, 1));
+            }
+            try (BulkEventScope inner = el.openBulkScope("Inner {0}", EventType.QUANTITY_ADDED)) {
+                inventory.getPieces().get(0).addQuantity(1);
+                assertEquals(1, inner.getCount(EventType.QUANTITY_ADDED));
+            }
+            el.logEvent(new Event("Counted too"));
+            assertEquals(1500, scope.getCount(EventType.INVENTORY_PIECE_ADDED));
+            assertEquals(1502, scope.getTotalCount());
+        }
+        assertEquals(List.of("Event log cleared.", "Added 1,500 pieces, 0 changes {2} {x}"), descriptions(el));
+    }
+
+    @Test
+    public void testJoinedBulkScopes() throws InterruptedException {
+        EventLog el = EventLog.getInstance();
+        el.clear();
+        Thread[] helpers = new Thread[4];
+        try (BulkEventScope scope = el.openBulkScope("Added {0} pieces", EventType.INVENTORY_PIECE_ADDED)) {
+            for (int t = 0; t < helpers.length; t++) {
+                LegoInventory inventory = new LegoInventory("Shelf " + t);
+                helpers[t] = new Thread(() -> {
+                    try (BulkEventScope joined = el.joinBulkScope(scope)) {
+                        for (int i = 0; i < 1000; i++) {
+                            inventory.addPiece(new LegoPiece("Brick", "Red", "1x" + i, 1));
+                        }
+                        assertEquals(1000, joined.getCount(EventType.INVENTORY_PIECE_ADDED));
+                    }
+                });
+                helpers[t].start();
+            }
+            for (Thread helper : helpers) {
+                helper.join();
+            }
+            assertEquals(4000, scope.getCount(EventType.INVENTORY_PIECE_ADDED));
+        }
+        assertEquals(List.of("Event log cleared.", "Added 4,000 pieces"), descriptions(el));
+    }
+
+    private static List<String> descriptions(EventLog el) {
+        List<String> descriptions = new ArrayList<>();
+        for (Event event : el) {
+            descriptions.add(event.getDescription());
+        }
+        return descriptions;
+    }
+
+    @Test
+    public void testSubjectQueries() {
+        EventLog el = EventLog.getInstance();
+        el.clear();
+        Date from = new Date(System.currentTimeMillis());
+        LegoInventory inventory = new LegoInventory("Bin");
+        LegoPiece piece = new LegoPiece("Brick", "Red", "2x4", 3);
+        inventory.addPiece(piece);
+        piece.addQuantity(2);
+        Build build = new Build(42);
+        build.addRequiredPiece(new LegoPiece("Plate", "Blue", "1x2", 1));
+        Date to = new Date(System.currentTimeMillis() + 1);
+
+        List<Event> inventoryEvents = el.getInventoryEvents("Bin", from, to);
+        assertEquals(2, inventoryEvents.size());
+        assertEquals(EventType.INVENTORY_PIECE_ADDED, inventoryEvents.get(0).getType());
+        assertEquals(EventType.QUANTITY_ADDED, inventoryEvents.get(1).getType());
+        List<Event> buildEvents = el.getBuildEvents(42, from, to);
+        assertEquals(1, buildEvents.size());
+        assertEquals(EventType.BUILD_PIECE_ADDED, buildEvents.get(0).getType());
+        assertTrue(el.getBuildEvents(7, from, to).isEmpty());
+        assertTrue(el.getEvents(from, to).containsAll(inventoryEvents));
+        assertTrue(el.getInventoryEvents("Bin", to, new Date(to.getTime() + 1000)).isEmpty());
+    }
+
+    @Test
+    public void testQueriesSkipOverwrittenEvents() {
+        EventLog el = EventLog.getInstance();
+        el.configure(4);
+        for (int i = 0; i < 10; i++) {
+            el.logEvent(new Event(EventType.BUILD_ADDED, i % 2, null, null, 100 + i));
+            if (i == 3) {
+                assertEquals(2, el.getBuildEvents(1, new Date(0), new Date(200)).size());
+            }
+        }
+        List<Event> events = el.getEvents(new Date(0), new Date(200));
+        assertEquals(4, events.size());
+        assertEquals(106, events.get(0).getTimestamp());
+        assertEquals(2, el.getBuildEvents(1, new Date(0), new Date(200)).size());
+        assertEquals(1, el.getBuildEvents(1, new Date(107), new Date(108)).size());
+    }
+
+    @Test
+    public void testQueriesOnMillionsOfEvents() {
+        EventLog el = EventLog.getInstance();
+        int count = 3_000_000;
+        el.configure(1 << 22);
+        String[] names = {"Bin 0", "Bin 1", "Bin 2", "Bin 3", "Bin 4", "Bin 5", "Bin 6", "Bin 7"};
+        Random random = new Random(7);
+        long[] times = new long[count];
+        int[] subjects = new int[count];
+        for (int i = 0; i < count; i++) {
+            // timestamps stray a little out of log order, as with several logging threads
+            times[i] = 1_000_000L + i / 4 - random.nextInt(3);
+            subjects[i] = random.nextInt(names.length);
+            el.logEvent(new Event(EventType.INVENTORY_ADDED, 0, names[subjects[i]], null, times[i]));
+        }
+
+        for (int query = 0; query < 20; query++) {
+            long from = 1_000_000L + random.nextInt(count / 4);
+            long to = from + random.nextInt(5000);
+            int subject = random.nextInt(names.length);
+            int inRange = 0;
+            int ofSubject = 0;
+            for (int i = 0; i < count; i++) {
+                if (times[i] >= from && times[i] < to) {
+                    inRange++;
+                    ofSubject += subjects[i] == subject ? 1 : 0;
+                }
+            }
+            assertEquals(inRange, el.getEvents(new Date(from), new Date(to)).size());
+            List<Event> found = el.getInventoryEvents(names[subject], new Date(from), new Date(to));
+            assertEquals(ofSubject, found.size());
+            for (Event e : found) {
+                assertTrue(e.getTimestamp() >= from && e.getTimestamp() < to);
+                assertTrue(e.getDescription().contains(": " + names[subject] + " "));
+            }
+        }
+    }
 }
\ No newline at end of file
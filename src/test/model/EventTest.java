@@ -4,8 +4,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import model.Event;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -33,12 +35,17 @@ public class EventTest {
     @Test
     public void testEvent() {
         assertEquals("Sensor open at door", e1.getDescription());
-        assertEquals(d1, e1.getDate());
+        assertFalse(e1.getDate().after(d1));
+        long before = System.currentTimeMillis();
+        Event e2 = new Event("Sensor closed at door");
+        long after = System.currentTimeMillis();
+        assertTrue(before <= e2.getTimestamp() && e2.getTimestamp() <= after);
+        assertEquals(new Date(e2.getTimestamp()), e2.getDate());
     }
 
     @Test
     public void testToString() {
-        assertEquals(d1.toString() + "\n" + "Sensor open at door", e1.toString());
+        assertEquals(e1.getDate().toString() + "\n" + "Sensor open at door", e1.toString());
     }
 
     @Test
@@ -56,4 +63,33 @@ public class EventTest {
         int hash = e1.hashCode();
         assertNotEquals(0, hash);
     }
+
+    @Test
+    public void testTemplatedDescriptions() {
+        LegoPiece piece = new LegoPiece("Brick", "Red", "2x4", 3);
+        assertEquals("Added 3x Red Brick (2x4) to inventory Shelf",
+                new Event(EventType.INVENTORY_PIECE_ADDED, 3, piece, "Shelf").getDescription());
+        assertEquals("Set 5x as quantity for Red Brick (2x4)  piece in inventory.",
+                new Event(EventType.QUANTITY_SET, 5, piece, null).getDescription());
+        assertEquals("Added build: 42 to Ann's list of builds.",
+                new Event(EventType.BUILD_ADDED, 42, null, "Ann").getDescription());
+        assertEquals(EventType.MESSAGE, e1.getType());
+        assertEquals(e1.getDate().getTime(), e1.getTimestamp());
+    }
+
+    @Test
+    public void testModelEventsMatchOldText() {
+        EventLog log = EventLog.getInstance();
+        log.clear();
+        LegoInventory inventory = new LegoInventory("Shelf");
+        LegoPiece piece = new LegoPiece("Plate", "Blue", "1x2", 4);
+        inventory.addPiece(piece);
+        piece.removeQuantity(1);
+        List<String> descriptions = new ArrayList<>();
+        for (Event event : log) {
+            descriptions.add(event.getDescription());
+        }
+        assertEquals(List.of("Event log cleared.", "Added 4x Blue Plate (1x2) to inventory Shelf",
+                "Removed 1x Blue Plate (1x2) from inventory."), descriptions);
+    }
 }
\ No newline at end of file
@@ -2,8 +2,18 @@ package model;
 
 import static org.junit.jupiter.api.Assertions.*;
 import persistence.JsonReader;
+import persistence.JsonWriter;
+import persistence.SaveService;
+import org.json.JSONException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 
 public class JsonReaderTest extends JsonTest {
 
@@ -76,6 +86,23 @@ public class JsonReaderTest extends JsonTest {
         }
     }
 
+    @Test
+    void testReaderLogsOneSummaryEvent() {
+        JsonReader reader = new JsonReader("./data/testReaderMasterBuilderWithInventoryAndPieces.json");
+        EventLog.getInstance().clear();
+        try {
+            reader.read();
+            List<String> descriptions = new ArrayList<>();
+            for (Event event : EventLog.getInstance()) {
+                descriptions.add(event.getDescription());
+            }
+            assertEquals(List.of("Event log cleared.", "Loaded 1 pieces into 1 inventories and 0 builds from "
+                    + "./data/testReaderMasterBuilderWithInventoryAndPieces.json"), descriptions);
+        } catch (IOException e) {
+            fail("Couldn't read from file");
+        }
+    }
+
     @Test
     void testReaderMasterBuilderWithBuildsAndPieces() {
         JsonReader reader = new JsonReader("./data/testReaderMasterBuilderWithBuildsAndPieces.json");
@@ -109,4 +136,281 @@ public class JsonReaderTest extends JsonTest {
             fail("Couldn't read from file");
         }
     }
+
+    @Test
+    void testReaderMembersInAnyOrder(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("order.json");
+        Files.writeString(file, "{\"builds\":[{\"requiredPieces\":[{\"quantity\":2.0,\"dimensions\":\"1x1\","
+                + "\"color\":\"Tan\",\"partType\":\"Tile\"}],\"buildId\":7,\"notes\":[1,{\"a\":null}]}],"
+                + "\"inventories\":[{\"pieces\":[{\"partType\":\"Br\\\"ick\\u00e9\",\"color\":\"Red\\n\","
+                + "\"dimensions\":\"2x4\",\"quantity\":5,\"extra\":true}],\"collectionName\":\"Bin\"}],"
+                + "\"userName\":\"TestUser\"}", StandardCharsets.UTF_8);
+        MasterBuilder masterBuilder = new JsonReader(file.toString()).read();
+        assertEquals("TestUser", masterBuilder.getUserName());
+        checkLegoPiece("Br\"ick\u00e9", "Red\n", "2x4", 5,
+                masterBuilder.getAnInventory("Bin").getPieces().get(0));
+        checkLegoPiece("Tile", "Tan", "1x1", 2, masterBuilder.getABuild(7).getRequiredPieces().get(0));
+        assertEquals(2, masterBuilder.getMissingUnits(masterBuilder.getABuild(7)));
+    }
+
+    @Test
+    void testReaderNegativeQuantityAndBuildId(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("negative.json");
+        Files.writeString(file, "{\"userName\": \"TestUser\", \"inventories\": [{\"collectionName\": \"Bin\","
+                + " \"pieces\": [{\"partType\": \"Brick\", \"color\": \"Red\", \"dimensions\": \"2x4\","
+                + " \"quantity\": -3}]}], \"builds\": [{\"buildId\": -1, \"requiredPieces\": [{\"partType\":"
+                + " \"Tile\", \"color\": \"Tan\", \"dimensions\": \"1x1\", \"quantity\": -2}]}]}",
+                StandardCharsets.UTF_8);
+        JsonReader reader = new JsonReader(file.toString());
+        for (MasterBuilder masterBuilder : List.of(reader.read(), reader.readParallel(), reader.readLazy())) {
+            checkLegoPiece("Brick", "Red", "2x4", -3, masterBuilder.getAnInventory("Bin").getPieces().get(0));
+            checkLegoPiece("Tile", "Tan", "1x1", -2, masterBuilder.getABuild(-1).getRequiredPieces().get(0));
+        }
+
+        Files.writeString(file, "{\"userName\": \"TestUser\", \"inventories\": [], \"builds\":"
+                + " [{\"requiredPieces\": []}]}", StandardCharsets.UTF_8);
+        assertThrows(JSONException.class, () -> new JsonReader(file.toString()).read());
+        Files.writeString(file, "{\"userName\": \"TestUser\", \"inventories\": [{\"collectionName\": \"Bin\","
+                + " \"pieces\": [{\"partType\": \"Brick\", \"color\": \"Red\", \"dimensions\": \"2x4\"}]}]}",
+                StandardCharsets.UTF_8);
+        assertThrows(JSONException.class, () -> new JsonReader(file.toString()).read());
+    }
+
+    @Test
+    void testReaderMalformedFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bad.json");
+        Files.writeString(file, "{\"userName\": \"TestUser\", \"inventories\": [}", StandardCharsets.UTF_8);
+        assertThrows(JSONException.class, () -> new JsonReader(file.toString()).read());
+        Files.writeString(file, "{\"inventories\": []}", StandardCharsets.UTF_8);
+        assertThrows(JSONException.class, () -> new JsonReader(file.toString()).read());
+    }
+
+    @Test
+    void testReaderLargeFileRoundTrip(@TempDir Path dir) throws IOException {
+        MasterBuilder original = new MasterBuilder("TestUser");
+        for (int i = 0; i < 5; i++) {
+            LegoInventory inventory = new LegoInventory("Bin " + i);
+            for (int j = 0; j < 20000; j++) {
+                inventory.addPiece(new LegoPiece("Part " + (j % 300), "Color " + (j % 70), i + "x" + j, j));
+            }
+            original.addInventory(inventory);
+        }
+        String file = dir.resolve("large.json").toString();
+        JsonWriter writer = new JsonWriter(file);
+        writer.open();
+        writer.write(original);
+        writer.close();
+
+        MasterBuilder read = new JsonReader(file).read();
+        assertTrue(original.toJson().similar(read.toJson()));
+    }
+
+    @Test
+    void testReaderParallelMatchesSequential() throws IOException {
+        String[] files = {"testReaderEmptyMasterBuilder", "testReaderMasterBuilderWithInventory",
+            "testReaderMasterBuilderWithBuilds", "testReaderMasterBuilderWithInventoryAndPieces",
+            "testReaderMasterBuilderWithBuildsAndPieces"};
+        for (String file : files) {
+            JsonReader reader = new JsonReader("./data/" + file + ".json");
+            assertTrue(reader.read().toJson().similar(reader.readParallel().toJson()));
+        }
+    }
+
+    @Test
+    void testReaderParallelMembersInAnyOrder(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("order.json");
+        Files.writeString(file, "{\"builds\":[{\"requiredPieces\":[{\"quantity\":2,\"dimensions\":\"1x1\","
+                + "\"color\":\"Tan\",\"partType\":\"Tile\"}],\"buildId\":7,\"notes\":[1,{\"a]\":null}]}],"
+                + "\"extra\": [\"}\", {\"x\\\"}\": false}], \"inventories\":[{\"pieces\":[{\"partType\":"
+                + "\"Br\\\"ick\\u00e9\",\"color\":\"Red\\n\",\"dimensions\":\"2x4\",\"quantity\":5}],"
+                + "\"collectionName\":\"Bin\"}], \"user\\u004eame\" : \"Test\\u0055ser\" } ", StandardCharsets.UTF_8);
+        MasterBuilder masterBuilder = new JsonReader(file.toString()).readParallel();
+        assertEquals("TestUser", masterBuilder.getUserName());
+        checkLegoPiece("Br\"ick\u00e9", "Red\n", "2x4", 5,
+                masterBuilder.getAnInventory("Bin").getPieces().get(0));
+        checkLegoPiece("Tile", "Tan", "1x1", 2, masterBuilder.getABuild(7).getRequiredPieces().get(0));
+        assertEquals(2, masterBuilder.getMissingUnits(masterBuilder.getABuild(7)));
+    }
+
+    @Test
+    void testReaderParallelMalformedFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bad.json");
+        String[] documents = {"{\"userName\": \"TestUser\", \"inventories\": [}",
+            "{\"inventories\": []}",
+            "{\"userName\": \"TestUser\", \"inventories\": [{\"collectionName\": \"A\"} {}]}",
+            "{\"userName\": \"TestUser\", \"builds\": [{\"buildId\": 1}, {\"requiredPieces\": []}]}",
+            "{\"userName\": \"TestUser\"} x",
+            "{\"userName\": \"TestUser\", \"inventories\": [{\"collectionName\": \"A\"}, ]}"};
+        for (String document : documents) {
+            Files.writeString(file, document, StandardCharsets.UTF_8);
+            assertThrows(JSONException.class, () -> new JsonReader(file.toString()).readParallel(), document);
+        }
+    }
+
+    @Test
+    void testReaderParallelLargeFile(@TempDir Path dir) throws IOException {
+        MasterBuilder original = new MasterBuilder("TestUser");
+        for (int i = 0; i < 6; i++) {
+            LegoInventory inventory = new LegoInventory("Bin " + i);
+            for (int j = 0; j < (i == 3 ? 5 : 15000); j++) {
+                inventory.addPiece(new LegoPiece("Part " + (j % 300), "Color " + (j % 70), i + "x" + j, j));
+            }
+            original.addInventory(inventory);
+        }
+        for (int id = 1; id <= 3000; id++) {
+            Build build = new Build(id);
+            for (int j = 0; j < 5; j++) {
+                build.addRequiredPiece(new LegoPiece("Part " + j, "Color " + (id % 70), "1x" + j, j + 1));
+            }
+            original.addBuild(build);
+        }
+        String file = dir.resolve("large.json").toString();
+        JsonWriter writer = new JsonWriter(file);
+        writer.open();
+        writer.write(original);
+        writer.close();
+
+        EventLog.getInstance().clear();
+        MasterBuilder read = new JsonReader(file).readParallel();
+        assertEquals(original.toJson().toString(), read.toJson().toString());
+        assertEquals(original.getMissingUnits(original.getABuild(2000)), read.getMissingUnits(read.getABuild(2000)));
+        List<String> descriptions = new ArrayList<>();
+        for (Event event : EventLog.getInstance()) {
+            descriptions.add(event.getDescription());
+        }
+        assertEquals(List.of("Event log cleared.", "Loaded 75,005 pieces into 6 inventories and 3,000 builds from "
+                + file), descriptions);
+    }
+
+    @Test
+    void testReaderLazyMatchesSequential() throws IOException {
+        String[] files = {"testReaderEmptyMasterBuilder", "testReaderMasterBuilderWithInventory",
+            "testReaderMasterBuilderWithBuilds", "testReaderMasterBuilderWithInventoryAndPieces",
+            "testReaderMasterBuilderWithBuildsAndPieces"};
+        for (String file : files) {
+            JsonReader reader = new JsonReader("./data/" + file + ".json");
+            MasterBuilder read = reader.read();
+            MasterBuilder lazy = reader.readLazy();
+            assertTrue(read.toJson().similar(lazy.toJson()));
+            for (Build build : read.getBuilds()) {
+                assertEquals(read.getMissingUnits(build), lazy.getMissingUnits(lazy.getABuild(build.getBuildId())));
+            }
+        }
+    }
+
+    @Test
+    void testReaderLazyReadsPiecesWhenNeeded(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("lazy.json");
+        Files.writeString(file, "{\"userName\": \"TestUser\", \"inventories\": [{\"collectionName\": \"Bin\","
+                + " \"pieces\": [{\"partType\": \"Brick\", \"color\": \"Red\", \"dimensions\": \"2x4\","
+                + " \"quantity\": 5}, {\"partType\": \"Brick\", \"color\": \"Red\", \"dimensions\": \"2x4\","
+                + " \"quantity\": 2}, {\"partType\": \"Tile\", \"color\": \"Tan\", \"dimensions\": \"1x1\","
+                + " \"quantity\": 1}]}, {\"collectionName\": \"Empty\"}, {\"pieces\": [],"
+                + " \"collectionName\": \"Bad\", \"x\": [1]}]}", StandardCharsets.UTF_8);
+        EventLog.getInstance().clear();
+        MasterBuilder masterBuilder = new JsonReader(file.toString()).readLazy();
+        List<String> descriptions = new ArrayList<>();
+        for (Event event : EventLog.getInstance()) {
+            descriptions.add(event.getDescription());
+        }
+        assertEquals(List.of("Event log cleared.", "Opened 3 inventories and 0 builds from " + file), descriptions);
+
+        Files.writeString(dir.resolve("new.json"), "{}", StandardCharsets.UTF_8);
+        Files.move(dir.resolve("new.json"), file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LegoInventory bin = masterBuilder.getAnInventory("Bin");
+        assertEquals(8, bin.getTotalPieces());
+        assertEquals(2, bin.getPieces().size());
+        checkLegoPiece("Brick", "Red", "2x4", 7, bin.getPieces().get(0));
+        assertTrue(masterBuilder.getAnInventory("Empty").getPieces().isEmpty());
+        assertEquals(0, masterBuilder.getAnInventory("Bad").getTotalPieces());
+    }
+
+    @Test
+    void testReaderLazyAfterSave(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("lazy.json");
+        MasterBuilder original = new MasterBuilder("TestUser");
+        LegoInventory inventory = new LegoInventory("Bin");
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 5));
+        original.addInventory(inventory);
+        original.addInventory(new LegoInventory("Other"));
+        JsonWriter writer = new JsonWriter(file.toString());
+        writer.open();
+        writer.write(original);
+        writer.close();
+
+        MasterBuilder lazy = new JsonReader(file.toString()).readLazy();
+        lazy.getAnInventory("Other").addPiece(new LegoPiece("Tile", "Tan", "1x1", 3));
+        try (SaveService saveService = new SaveService(file.toString())) {
+            saveService.save(lazy).get();
+        }
+        assertEquals(5, lazy.getAnInventory("Bin").getTotalPieces());
+        assertTrue(lazy.toJson().similar(new JsonReader(file.toString()).read().toJson()));
+        assertEquals(3, new JsonReader(file.toString()).readLazy().getAnInventory("Other").getTotalPieces());
+    }
+
+    @Test
+    void testReaderLazyThenWriteInPlace(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("lazy.json");
+        MasterBuilder original = new MasterBuilder("TestUser");
+        for (int i = 0; i < 3; i++) {
+            LegoInventory inventory = new LegoInventory("Bin " + i);
+            inventory.addPiece(new LegoPiece("Brick", "Color " + i, "2x4", i + 1));
+            original.addInventory(inventory);
+        }
+        JsonWriter writer = new JsonWriter(file.toString());
+        writer.open();
+        writer.write(original);
+        writer.close();
+
+        try (JsonReader reader = new JsonReader(file.toString())) {
+            MasterBuilder lazy = reader.readLazy();
+            writer = new JsonWriter(file.toString());
+            writer.open();
+            writer.write(lazy);
+            writer.close();
+            assertEquals(2, lazy.getAnInventory("Bin 1").getTotalPieces());
+            assertTrue(original.toJson().similar(lazy.toJson()));
+        }
+        assertFalse(Files.exists(dir.resolve("lazy.json.tmp")));
+        assertTrue(original.toJson().similar(new JsonReader(file.toString()).read().toJson()));
+    }
+
+    @Test
+    void testReaderCloseKeepsLazyPieces(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("lazy.json");
+        Files.writeString(file, "{\"userName\": \"TestUser\", \"inventories\": [{\"collectionName\": \"Bin\","
+                + " \"pieces\": [{\"partType\": \"Brick\", \"color\": \"Red\", \"dimensions\": \"2x4\","
+                + " \"quantity\": 5}]}, {\"collectionName\": \"Empty\"}]}", StandardCharsets.UTF_8);
+        JsonReader reader = new JsonReader(file.toString());
+        MasterBuilder masterBuilder = reader.readLazy();
+        reader.close();
+        Files.writeString(file, "{}", StandardCharsets.UTF_8);
+        checkLegoPiece("Brick", "Red", "2x4", 5, masterBuilder.getAnInventory("Bin").getPieces().get(0));
+        assertTrue(masterBuilder.getAnInventory("Empty").getPieces().isEmpty());
+        reader.close();
+
+        Files.writeString(file, "{\"userName\": \"TestUser\", \"inventories\": [{\"collectionName\": \"Bin\","
+                + " \"pieces\": [{\"partType\": \"Brick\"}]}]}", StandardCharsets.UTF_8);
+        JsonReader bad = new JsonReader(file.toString());
+        bad.readLazy();
+        assertThrows(JSONException.class, bad::close);
+        bad.close();
+    }
+
+    @Test
+    void testReaderLazyMalformedFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bad.json");
+        String[] documents = {"{\"userName\": \"TestUser\", \"inventories\": [}",
+            "{\"inventories\": []}",
+            "{\"userName\": \"TestUser\", \"inventories\": [{\"pieces\": []}]}",
+            "{\"userName\": \"TestUser\", \"builds\": [{\"buildId\": 1}, {\"requiredPieces\": []}]}"};
+        for (String document : documents) {
+            Files.writeString(file, document, StandardCharsets.UTF_8);
+            assertThrows(JSONException.class, () -> new JsonReader(file.toString()).readLazy(), document);
+        }
+        Files.writeString(file, "{\"userName\": \"TestUser\", \"inventories\": [{\"collectionName\": \"Bin\","
+                + " \"pieces\": [{\"partType\": \"Brick\"}]}]}", StandardCharsets.UTF_8);
+        LegoInventory bin = new JsonReader(file.toString()).readLazy().getAnInventory("Bin");
+        assertThrows(JSONException.class, bin::getPieces);
+    }
 }
\ No newline at end of file
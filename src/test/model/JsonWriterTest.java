@@ -2,8 +2,14 @@ package model;
 
 import persistence.JsonReader;
 import persistence.JsonWriter;
+import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 
 class JsonWriterTest extends JsonTest {
@@ -163,4 +169,114 @@ class JsonWriterTest extends JsonTest {
             fail("Exception should not have been thrown");
         }
     }
-}
+
+    @Test
+    void testWriterCompactMatchesModel(@TempDir Path dir) throws IOException {
+        MasterBuilder masterBuilder = new MasterBuilder("Test \"User\"");
+        LegoInventory inventory = new LegoInventory("Bin\twith\\tabs", PieceStorage.COLUMNAR);
+        inventory.addPiece(new LegoPiece("Brick", "Red\u0001", "2x4", 5));
+        inventory.addPiece(new LegoPiece("Plate", "Blue", "1x2", 7));
+        masterBuilder.addInventory(inventory);
+        masterBuilder.addInventory(new LegoInventory("Empty"));
+        Build build = new Build(3);
+        build.addRequiredPiece(new LegoPiece("Tile", "Tan", "1x1", 2));
+        masterBuilder.addBuild(build);
+
+        Path file = dir.resolve("compact.json");
+        JsonWriter writer = new JsonWriter(file.toString(), true);
+        writer.open();
+        writer.write(masterBuilder);
+        writer.close();
+
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        assertFalse(text.contains("\n") || text.contains(": "));
+        assertTrue(masterBuilder.toJson().similar(new JSONObject(text)));
+        MasterBuilder read = new JsonReader(file.toString()).read();
+        checkLegoPiece("Brick", "Red\u0001", "2x4", 5, read.getAnInventory("Bin\twith\\tabs").getPieces().get(0));
+        checkLegoInventory("Empty", 0, read.getAnInventory("Empty"));
+    }
+
+    @Test
+    void testWriterIndentedMatchesModel(@TempDir Path dir) throws IOException {
+        MasterBuilder masterBuilder = new MasterBuilder("TestUser");
+        LegoInventory inventory = new LegoInventory("Bin");
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 5));
+        masterBuilder.addInventory(inventory);
+
+        Path file = dir.resolve("indented.json");
+        JsonWriter writer = new JsonWriter(file.toString());
+        writer.open();
+        writer.write(masterBuilder);
+        writer.close();
+
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        assertTrue(text.startsWith("{\n    \"userName\": \"TestUser\",\n    \"inventories\": [\n        {\n"));
+        assertTrue(text.endsWith("\n    \"builds\": []\n}"));
+        assertTrue(masterBuilder.toJson().similar(new JSONObject(text)));
+    }
+
+    @Test
+    void testWriterCompressedRoundTrip(@TempDir Path dir) throws IOException {
+        MasterBuilder masterBuilder = new MasterBuilder("TestUser");
+        for (int i = 0; i < 3; i++) {
+            LegoInventory inventory = new LegoInventory("Bin " + i);
+            for (int j = 0; j < 500; j++) {
+                inventory.addPiece(new LegoPiece("Part " + (j % 20), "Color " + (j % 7), i + "x" + j, j + 1));
+            }
+            masterBuilder.addInventory(inventory);
+        }
+        Build build = new Build(3);
+        build.addRequiredPiece(new LegoPiece("Part 1", "Color 1", "0x1", 2));
+        masterBuilder.addBuild(build);
+
+        Path plain = dir.resolve("save.json");
+        JsonWriter writer = new JsonWriter(plain.toString(), true);
+        writer.open();
+        writer.write(masterBuilder);
+        writer.close();
+        for (String name : new String[] {"save.json.gz", "save.deflate"}) {
+            Path file = dir.resolve(name);
+            writer = new JsonWriter(file.toString(), true, 9);
+            writer.open();
+            writer.write(masterBuilder);
+            writer.close();
+
+            assertTrue(Files.size(file) * 5 < Files.size(plain), name);
+            JsonReader reader = new JsonReader(file.toString());
+            assertTrue(masterBuilder.toJson().similar(reader.read().toJson()), name);
+            assertTrue(masterBuilder.toJson().similar(reader.readParallel().toJson()), name);
+            MasterBuilder lazy = reader.readLazy();
+            assertTrue(masterBuilder.toJson().similar(lazy.toJson()), name);
+            assertEquals(0, lazy.getMissingUnits(lazy.getABuild(3)), name);
+        }
+        Files.copy(dir.resolve("save.json.gz"), dir.resolve("renamed.json"));
+        assertTrue(masterBuilder.toJson().similar(
+                new JsonReader(dir.resolve("renamed.json").toString()).read().toJson()));
+    }
+
+    @Test
+    void testWriterFailedWriteKeepsOldFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("save.json");
+        MasterBuilder masterBuilder = new MasterBuilder("TestUser");
+        masterBuilder.addInventory(new LegoInventory("Bin"));
+        JsonWriter writer = new JsonWriter(file.toString());
+        writer.open();
+        writer.write(masterBuilder);
+        writer.close();
+        String saved = Files.readString(file, StandardCharsets.UTF_8);
+
+        MasterBuilder broken = new MasterBuilder("TestUser") {
+            @Override
+            public List<Build> getBuilds() {
+                throw new IllegalStateException("builds unavailable");
+            }
+        };
+        broken.addInventory(new LegoInventory("Other"));
+        JsonWriter failing = new JsonWriter(file.toString());
+        failing.open();
+        assertThrows(IllegalStateException.class, () -> failing.write(broken));
+        failing.close();
+        assertEquals(saved, Files.readString(file, StandardCharsets.UTF_8));
+        assertFalse(Files.exists(dir.resolve("save.json.tmp")));
+    }
+}
\ No newline at end of file
@@ -3,9 +3,14 @@ package model;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 public class LegoInventoryTest {
@@ -44,6 +49,37 @@ public class LegoInventoryTest {
         assertEquals(15, inventory.getTotalPieces());
     }
 
+    @Test
+    void testStatisticsFollowQuantityChanges() {
+        inventory.addPiece(piece1);
+        inventory.addPiece(piece2);
+        inventory.addPiece(new LegoPiece("brick", "BLUE", "1x1", 2));
+        assertEquals(17, inventory.getTotalPieces());
+        assertEquals(10, inventory.getColorCount("red"));
+        assertEquals(7, inventory.getColorCount("Blue"));
+        assertEquals(12, inventory.getPartTypeCount("BRICK"));
+        assertEquals(5, inventory.getPartTypeCount("plate"));
+        assertEquals(0, inventory.getColorCount("Green"));
+
+        piece1.setQuantity(4);
+        piece2.addQuantity(1);
+        piece2.removeQuantity(3);
+        assertEquals(9, inventory.getTotalPieces());
+        assertEquals(4, inventory.getColorCount("Red"));
+        assertEquals(6, inventory.getPartTypeCount("Brick"));
+        assertEquals(3, inventory.getPartTypeCount("Plate"));
+
+        inventory.removePiece(piece2);
+        assertEquals(6, inventory.getTotalPieces());
+        assertEquals(2, inventory.getColorCounts().size());
+        assertEquals(1, inventory.getPartTypeCounts().size());
+        assertEquals(2, inventory.getColorCounts().get("blue"));
+
+        piece2.setQuantity(50);
+        assertEquals(6, inventory.getTotalPieces());
+        assertThrows(UnsupportedOperationException.class, () -> inventory.getColorCounts().clear());
+    }
+
     @Test
     public void testRemovePieceSuccessfully() {
         inventory.addPiece(piece1);
@@ -65,4 +101,152 @@ public class LegoInventoryTest {
         assertTrue(inventory.getPieces().contains(piece2));
         assertEquals(2, inventory.getPieces().size());
     }
+
+    @Test
+    void testFindPiece() {
+        inventory.addPiece(piece1);
+        inventory.addPiece(piece2);
+        assertSame(piece1, inventory.findPiece(new PieceKey("brick", "RED", "2x4")));
+        assertSame(piece2, inventory.findPiece(piece2.getKey()));
+        assertNull(inventory.findPiece(new PieceKey("Tile", "Green", "1x1")));
+
+        inventory.removePiece(piece1);
+        assertNull(inventory.findPiece(piece1.getKey()));
+    }
+
+    @Test
+    void testFindPieceAfterRemovingDuplicate() {
+        LegoPiece duplicate = new LegoPiece("Brick", "Red", "2x4", 4);
+        inventory.addPiece(piece1);
+        inventory.addPiece(duplicate);
+        assertSame(piece1, inventory.findPiece(piece1.getKey()));
+
+        inventory.removePiece(piece1);
+        assertSame(duplicate, inventory.findPiece(piece1.getKey()));
+    }
+
+    @Test
+    void testAddOrMergeNewPiece() {
+        assertSame(piece1, inventory.addOrMerge(piece1));
+        assertEquals(1, inventory.getPieces().size());
+        assertEquals(10, inventory.getTotalPieces());
+    }
+
+    @Test
+    void testAddOrMergeExistingPiece() {
+        inventory.addPiece(piece1);
+        LegoPiece merged = inventory.addOrMerge(new LegoPiece("brick", "red", "2X4", 7));
+        assertSame(piece1, merged);
+        assertEquals(17, piece1.getQuantity());
+        assertEquals(1, inventory.getPieces().size());
+    }
+
+    @Test
+    void testGetPiecesIsUnmodifiable() {
+        inventory.addPiece(piece1);
+        assertThrows(UnsupportedOperationException.class, () -> inventory.getPieces().remove(0));
+    }
+
+    @Test
+    void testRemovePieces() {
+        LegoPiece piece3 = new LegoPiece("Tile", "Green", "1x1", 3);
+        inventory.addPiece(piece1);
+        inventory.addPiece(piece2);
+        inventory.addPiece(piece3);
+        inventory.removePieces(List.of(piece1, piece3, new LegoPiece("Tile", "Green", "1x1", 3)));
+
+        assertEquals(List.of(piece2), inventory.getPieces());
+        assertNull(inventory.findPiece(piece1.getKey()));
+        assertNull(inventory.findPiece(piece3.getKey()));
+        assertSame(piece2, inventory.findPiece(piece2.getKey()));
+    }
+
+    @Test
+    void testPagedReadsPiecesWhenNeeded() {
+        int[] reads = new int[1];
+        PieceSource source = sink -> {
+            reads[0]++;
+            sink.accept(new LegoPiece("Brick", "Red", "2x4", 10));
+            sink.accept(new LegoPiece("Plate", "Blue", "1x2", 5));
+            sink.accept(new LegoPiece("Brick", "Red", "2x4", 1));
+        };
+        LegoInventory paged = LegoInventory.paged("Bin", source);
+        assertEquals("Bin", paged.getCollectionName());
+        assertEquals(PieceStorage.COLUMNAR, paged.getStorage());
+        assertEquals(0, reads[0]);
+
+        assertEquals(16, paged.getTotalPieces());
+        assertEquals(1, reads[0]);
+        assertEquals(11, paged.getColorCount("Red"));
+        assertEquals(5, paged.getPartTypeCount("Plate"));
+        List<LegoPiece> pieces = paged.getPieces();
+        assertEquals(2, pieces.size());
+        assertEquals(11, paged.findPiece(piece1.getKey()).getQuantity());
+        assertEquals(1, reads[0]);
+    }
+
+    @Test
+    void testPagedChanges() {
+        PieceSource source = sink -> sink.accept(new LegoPiece("Brick", "Red", "2x4", 10));
+        LegoInventory paged = LegoInventory.paged("Bin", source);
+        paged.addPiece(piece2);
+        paged.findPiece(piece1.getKey()).addQuantity(-4);
+        assertEquals(11, paged.getTotalPieces());
+        assertEquals(6, paged.getColorCount("Red"));
+        assertEquals(2, paged.getPieces().size());
+
+        paged = LegoInventory.paged("Bin", source);
+        paged.removePiece(paged.findPiece(piece1.getKey()));
+        assertTrue(paged.getPieces().isEmpty());
+        assertEquals(0, paged.getTotalPieces());
+        assertTrue(paged.getColorCounts().isEmpty());
+    }
+
+    @Test
+    void testPagedStoreKeepsChangedPieces() {
+        int[] reads = new int[1];
+        PagedPieceStore store = new PagedPieceStore(sink -> {
+            reads[0]++;
+            sink.accept(new LegoPiece("Brick", "Red", "2x4", 10));
+        }, null);
+        assertFalse(store.isResident());
+        assertEquals(10, store.totalQuantity());
+        assertEquals(1, store.getReads());
+        assertTrue(store.isResident());
+
+        store.add(new LegoPiece("Plate", "Blue", "1x2", 5));
+        assertEquals(15, store.totalQuantity());
+        assertEquals(2, store.pieces().size());
+        assertEquals(1, store.getReads());
+        assertEquals(1, reads[0]);
+    }
+
+    @Test
+    void testPagedSourceFails() {
+        LegoInventory paged = LegoInventory.paged("Bin", sink -> {
+            throw new UncheckedIOException(new IOException("gone"));
+        });
+        assertEquals("Bin", paged.getCollectionName());
+        assertThrows(UncheckedIOException.class, paged::getTotalPieces);
+        assertThrows(UncheckedIOException.class, paged::getPieces);
+    }
+
+    @Test
+    void testMergePieces() {
+        inventory.addPiece(piece1);
+        long changes = inventory.getChangeCount();
+        inventory.mergePieces(List.of(new LegoPiece("brick", "RED", "2x4", 3), piece2,
+                new LegoPiece("Plate", "Blue", "1x2", 1)));
+        assertEquals(List.of(piece1, piece2), inventory.getPieces());
+        assertEquals(13, piece1.getQuantity());
+        assertEquals(6, piece2.getQuantity());
+        assertEquals(19, inventory.getTotalPieces());
+        assertEquals(13, inventory.getColorCount("Red"));
+        assertEquals(changes + 1, inventory.getChangeCount());
+
+        piece2.addQuantity(4);
+        assertEquals(23, inventory.getTotalPieces());
+        inventory.mergePieces(List.of());
+        assertEquals(changes + 2, inventory.getChangeCount());
+    }
 }
\ No newline at end of file
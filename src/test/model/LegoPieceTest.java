@@ -1,6 +1,7 @@
 package model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -20,6 +21,15 @@ public class LegoPieceTest {
         assertEquals(10, testLegoPiece.getQuantity());
     }
 
+    @Test
+    void testConstructorSharesSpelling() {
+        LegoPiece other = new LegoPiece(new String("Brick"), new String("RED"), new String("2x4"), 1);
+        assertSame(testLegoPiece.getPartType(), other.getPartType());
+        assertSame(testLegoPiece.getDimensions(), other.getDimensions());
+        assertEquals("RED", other.getColor());
+        assertSame(testLegoPiece.getKey().getColor(), other.getKey().getColor());
+    }
+
     @Test
     void testSetQuantityValid() {
         testLegoPiece.setQuantity(5);
@@ -6,7 +6,11 @@ import static org.junit.Assert.assertNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 public class MasterBuilderTest {
     private MasterBuilder masterBuilder;
@@ -130,4 +134,270 @@ public class MasterBuilderTest {
 
         assertFalse(masterBuilder.isBuildable(build)); // Should return false because dimensions are different
     }
-}
+
+    @Test
+    void testAvailableQuantityAcrossInventories() {
+        LegoInventory other = new LegoInventory("Other");
+        inventory.addPiece(piece1);
+        other.addPiece(new LegoPiece("brick", "RED", "2x4", 4));
+        masterBuilder.addInventory(inventory);
+        masterBuilder.addInventory(other);
+
+        assertEquals(14, masterBuilder.getAvailableQuantity(piece1.getKey()));
+        assertEquals(0, masterBuilder.getAvailableQuantity(piece2.getKey()));
+    }
+
+    @Test
+    void testAvailableQuantityTracksChanges() {
+        masterBuilder.addInventory(inventory);
+        inventory.addPiece(piece1);
+        assertEquals(10, masterBuilder.getAvailableQuantity(piece1.getKey()));
+
+        piece1.addQuantity(5);
+        assertEquals(15, masterBuilder.getAvailableQuantity(piece1.getKey()));
+        piece1.removeQuantity(3);
+        assertEquals(12, masterBuilder.getAvailableQuantity(piece1.getKey()));
+        piece1.setQuantity(2);
+        assertEquals(2, masterBuilder.getAvailableQuantity(piece1.getKey()));
+
+        inventory.removePiece(piece1);
+        assertEquals(0, masterBuilder.getAvailableQuantity(piece1.getKey()));
+        piece1.addQuantity(50); // no longer in an inventory
+        assertEquals(0, masterBuilder.getAvailableQuantity(piece1.getKey()));
+    }
+
+    @Test
+    void testIsBuildableAfterInventoryChanges() {
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 12));
+        masterBuilder.addInventory(inventory);
+        masterBuilder.addBuild(build);
+        inventory.addPiece(piece1);
+        assertFalse(masterBuilder.isBuildable(build));
+
+        piece1.addQuantity(2);
+        assertTrue(masterBuilder.isBuildable(build));
+    }
+
+    @Test
+    void testMissingUnitsTrackInventoryChanges() {
+        Build other = new Build(2);
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 12));
+        build.addRequiredPiece(new LegoPiece("Plate", "Blue", "1x2", 5));
+        other.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 3));
+        masterBuilder.addBuild(build);
+        masterBuilder.addBuild(other);
+        masterBuilder.addInventory(inventory);
+        assertEquals(17, masterBuilder.getMissingUnits(build));
+        assertEquals(3, masterBuilder.getMissingUnits(other));
+
+        inventory.addPiece(piece1);
+        assertEquals(7, masterBuilder.getMissingUnits(build));
+        assertEquals(0, masterBuilder.getMissingUnits(other));
+        assertTrue(masterBuilder.isBuildable(other));
+
+        inventory.addPiece(piece2);
+        piece1.addQuantity(5);
+        assertEquals(0, masterBuilder.getMissingUnits(build));
+        assertTrue(masterBuilder.isBuildable(build));
+
+        inventory.removePiece(piece2);
+        assertEquals(5, masterBuilder.getMissingUnits(build));
+        assertFalse(masterBuilder.isBuildable(build));
+    }
+
+    @Test
+    void testMissingUnitsAfterRequirementAdded() {
+        inventory.addPiece(piece1);
+        masterBuilder.addInventory(inventory);
+        masterBuilder.addBuild(build);
+        assertEquals(0, masterBuilder.getMissingUnits(build));
+
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 6));
+        assertEquals(0, masterBuilder.getMissingUnits(build));
+        build.addRequiredPiece(new LegoPiece("brick", "red", "2x4", 6));
+        assertEquals(2, masterBuilder.getMissingUnits(build));
+        assertFalse(masterBuilder.isBuildable(build));
+    }
+
+    @Test
+    void testMissingUnitsForUntrackedBuild() {
+        inventory.addPiece(piece1);
+        masterBuilder.addInventory(inventory);
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 15));
+        assertEquals(5, masterBuilder.getMissingUnits(build));
+        assertFalse(masterBuilder.isBuildable(build));
+    }
+
+    @Test
+    void testGetShortfall() {
+        inventory.addPiece(piece1);
+        masterBuilder.addInventory(inventory);
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 4));
+        build.addRequiredPiece(new LegoPiece("Plate", "Blue", "1x2", 3));
+        build.addRequiredPiece(new LegoPiece("brick", "red", "2X4", 8));
+
+        Map<PieceKey, Integer> shortfall = masterBuilder.getShortfall(build);
+        assertEquals(2, shortfall.size());
+        assertEquals(2, shortfall.get(piece1.getKey()));
+        assertEquals(3, shortfall.get(piece2.getKey()));
+
+        inventory.addPiece(new LegoPiece("Plate", "Blue", "1x2", 3));
+        shortfall = masterBuilder.getShortfall(build);
+        assertEquals(1, shortfall.size());
+        assertNull(shortfall.get(piece2.getKey()));
+    }
+
+    @Test
+    void testGetMissingUnitsOfSeveralBuilds() {
+        inventory.addPiece(piece1);
+        masterBuilder.addInventory(inventory);
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 12));
+        Build tracked = new Build(10696);
+        tracked.addRequiredPiece(piece2);
+        masterBuilder.addBuild(tracked);
+        Build empty = new Build(1);
+
+        int[] missing = masterBuilder.getMissingUnits(Arrays.asList(build, tracked, empty));
+        assertEquals(3, missing.length);
+        assertEquals(2, missing[0]);
+        assertEquals(5, missing[1]);
+        assertEquals(0, missing[2]);
+
+        build.addRequiredPiece(new LegoPiece("Plate", "Blue", "1x2", 1));
+        assertEquals(3, masterBuilder.getMissingUnits(build));
+    }
+
+    @Test
+    void testConsumeBuildNotBuildable() {
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 11));
+        inventory.addPiece(piece1);
+        masterBuilder.addInventory(inventory);
+        masterBuilder.addBuild(build);
+
+        BuildResult result = masterBuilder.consumeBuild(build);
+        assertFalse(result.isCompleted());
+        assertTrue(result.getInventoriesUsed().isEmpty());
+        assertEquals(10, piece1.getQuantity());
+        assertEquals(1, inventory.getPieces().size());
+    }
+
+    @Test
+    void testConsumeBuildAcrossInventories() {
+        LegoInventory other = new LegoInventory("Other");
+        LegoPiece otherBricks = new LegoPiece("brick", "red", "2X4", 8);
+        inventory.addPiece(piece1);
+        inventory.addPiece(piece2);
+        other.addPiece(otherBricks);
+        masterBuilder.addInventory(inventory);
+        masterBuilder.addInventory(other);
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 13));
+        build.addRequiredPiece(new LegoPiece("Plate", "Blue", "1x2", 2));
+        masterBuilder.addBuild(build);
+
+        BuildResult result = masterBuilder.consumeBuild(build);
+        assertTrue(result.isCompleted());
+        assertEquals(10, result.getQuantityTaken(inventory, piece1.getKey()));
+        assertEquals(2, result.getQuantityTaken(inventory, piece2.getKey()));
+        assertEquals(3, result.getQuantityTaken(other, piece1.getKey()));
+        assertEquals(2, result.getInventoriesUsed().size());
+
+        assertFalse(inventory.getPieces().contains(piece1));
+        assertEquals(3, piece2.getQuantity());
+        assertEquals(5, otherBricks.getQuantity());
+        assertEquals(5, masterBuilder.getAvailableQuantity(piece1.getKey()));
+        assertFalse(masterBuilder.isBuildable(build));
+    }
+
+    @Test
+    void testConsumeBuildWithDuplicatePieces() {
+        LegoPiece duplicate = new LegoPiece("Brick", "Red", "2x4", 4);
+        inventory.addPiece(piece1);
+        inventory.addPiece(duplicate);
+        masterBuilder.addInventory(inventory);
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 12));
+        masterBuilder.addBuild(build);
+
+        BuildResult result = masterBuilder.consumeBuild(build);
+        assertTrue(result.isCompleted());
+        assertEquals(12, result.getQuantityTaken(inventory, piece1.getKey()));
+        assertEquals(1, inventory.getPieces().size());
+        assertEquals(2, duplicate.getQuantity());
+        assertEquals(duplicate, inventory.findPiece(piece1.getKey()));
+    }
+
+    @Test
+    void testConcurrentUpdatesKeepTotalsConsistent() throws InterruptedException {
+        List<PieceKey> keys = new ArrayList<>();
+        Build big = new Build(42);
+        for (int i = 0; i < 12; i++) {
+            keys.add(new PieceKey("Brick", "Color" + i, "2x2"));
+            big.addRequiredPiece(new LegoPiece("Brick", "Color" + i, "2x2", 30));
+        }
+        Build small = new Build(7);
+        small.addRequiredPiece(new LegoPiece("Brick", "Color0", "2x2", 1));
+        masterBuilder.addBuild(big);
+        masterBuilder.addBuild(small);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            LegoInventory shelf = new LegoInventory("Shelf " + w,
+                    w % 2 == 0 ? PieceStorage.LIST : PieceStorage.COLUMNAR);
+            masterBuilder.addInventory(shelf);
+            long seed = w;
+            workers.add(new Thread(() -> updateRandomly(shelf, keys, new Random(seed))));
+        }
+        workers.add(new Thread(() -> {
+            for (int i = 0; i < 500; i++) {
+                masterBuilder.consumeBuild(small);
+            }
+        }));
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        EventLog.getInstance().clear();
+
+        for (PieceKey key : keys) {
+            int onShelves = 0;
+            for (LegoInventory shelf : masterBuilder.getInventories()) {
+                LegoPiece piece = shelf.findPiece(key);
+                onShelves += piece == null ? 0 : piece.getQuantity();
+            }
+            assertEquals(onShelves, masterBuilder.getAvailableQuantity(key));
+        }
+        for (LegoInventory shelf : masterBuilder.getInventories()) {
+            int total = 0;
+            for (LegoPiece piece : shelf.getPieces()) {
+                total += piece.getQuantity();
+            }
+            assertEquals(total, shelf.getTotalPieces());
+        }
+        Build untracked = new Build(43);
+        for (LegoPiece piece : big.getRequiredPieces()) {
+            untracked.addRequiredPiece(piece);
+        }
+        assertEquals(masterBuilder.getMissingUnits(untracked), masterBuilder.getMissingUnits(big));
+    }
+
+    // EFFECTS: makes random changes to the pieces of shelf
+    private static void updateRandomly(LegoInventory shelf, List<PieceKey> keys, Random random) {
+        for (int i = 0; i < 5000; i++) {
+            PieceKey key = keys.get(random.nextInt(keys.size()));
+            LegoPiece piece = shelf.findPiece(key);
+            int amount = random.nextInt(10);
+            if (piece == null) {
+                shelf.addOrMerge(new LegoPiece(key.getPartType(), key.getColor(), key.getDimensions(), amount));
+            } else if (random.nextInt(10) == 0) {
+                shelf.removePiece(piece);
+            } else if (random.nextBoolean()) {
+                piece.addQuantity(amount);
+            } else if (random.nextBoolean()) {
+                piece.removeQuantity(amount);
+            } else {
+                piece.setQuantity(amount);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,190 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import persistence.JsonReader;
+import persistence.MutationLog;
+
+public class MutationLogTest {
+    @TempDir
+    Path dir;
+    private String snapshot;
+    private MasterBuilder builder;
+
+    @BeforeEach
+    void runBefore() {
+        snapshot = dir.resolve("tracker.json").toString();
+        builder = new MasterBuilder("TestUser");
+        LegoInventory inventory = new LegoInventory("Bin");
+        inventory.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        builder.addInventory(inventory);
+    }
+
+    @Test
+    void testRecoverReplaysChanges() throws IOException {
+        MutationLog log = new MutationLog(snapshot, 5, 1 << 20);
+        log.attach(builder);
+        change(builder);
+        log.close();
+
+        MasterBuilder recovered = new JsonReader(snapshot).recover();
+        assertTrue(builder.toJson().similar(recovered.toJson()));
+        assertEquals(builder.getMissingUnits(builder.getABuild(2)), recovered.getMissingUnits(recovered.getABuild(2)));
+    }
+
+    @Test
+    void testSyncMakesChangesRecoverable() throws IOException {
+        MutationLog log = new MutationLog(snapshot, 60_000, 1 << 20);
+        log.attach(builder);
+        builder.getAnInventory("Bin").getPieces().get(0).addQuantity(5);
+        log.sync();
+
+        MasterBuilder recovered = new JsonReader(snapshot).recover();
+        assertEquals(15, recovered.getAnInventory("Bin").getPieces().get(0).getQuantity());
+        log.close();
+    }
+
+    @Test
+    void testTornRecordEndsReplay() throws IOException {
+        MutationLog log = new MutationLog(snapshot, 5, 1 << 20);
+        log.attach(builder);
+        change(builder);
+        log.close();
+        Path wal = logFiles().get(0);
+        Files.write(wal, new byte[] {0, 0, 0, 40, 2, 1}, StandardOpenOption.APPEND);
+
+        MasterBuilder recovered = new JsonReader(snapshot).recover();
+        assertTrue(builder.toJson().similar(recovered.toJson()));
+    }
+
+    @Test
+    void testCompactionReplacesOldLogs() throws IOException {
+        MutationLog log = new MutationLog(snapshot, 60_000, 1 << 20);
+        log.attach(builder);
+        change(builder);
+        log.compact();
+        builder.getAnInventory("Bin").addPiece(new LegoPiece("Tile", "Black", "1x1", 4));
+        log.close();
+
+        List<Path> logs = logFiles();
+        assertEquals(1, logs.size());
+        assertTrue(logs.get(0).toString().endsWith(".2.wal"));
+        assertFalse(Files.exists(dir.resolve("tracker.json.tmp")));
+        assertTrue(Files.readString(Path.of(snapshot)).contains("\"" + MutationLog.GENERATION_KEY + "\":2"));
+        MasterBuilder recovered = new JsonReader(snapshot).recover();
+        assertTrue(builder.toJson().similar(recovered.toJson()));
+    }
+
+    @Test
+    void testStaleSnapshotReplaysEveryLaterLog() throws IOException {
+        MutationLog log = new MutationLog(snapshot, 60_000, 1 << 20);
+        log.attach(builder);
+        change(builder);
+        log.sync();
+        Path saved = dir.resolve("saved");
+        Files.createDirectory(saved);
+        Path oldLog = logFiles().get(0);
+        Files.copy(Path.of(snapshot), saved.resolve("tracker.json"));
+        Files.copy(oldLog, saved.resolve("old.wal"));
+
+        log.compact();
+        builder.getAnInventory("Bin").getPieces().get(0).setQuantity(1);
+        log.close();
+        // as if the process died after starting the new log but before replacing the snapshot
+        Files.copy(saved.resolve("tracker.json"), Path.of(snapshot), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(saved.resolve("old.wal"), oldLog);
+
+        MasterBuilder recovered = new JsonReader(snapshot).recover();
+        assertTrue(builder.toJson().similar(recovered.toJson()));
+    }
+
+    @Test
+    void testBackgroundCompaction() throws IOException, InterruptedException {
+        MutationLog log = new MutationLog(snapshot, 1, 256);
+        log.attach(builder);
+        LegoPiece piece = builder.getAnInventory("Bin").getPieces().get(0);
+        for (int i = 0; i < 200; i++) {
+            piece.addQuantity(1);
+            if (i % 20 == 0) {
+                Thread.sleep(5);
+            }
+        }
+        log.close();
+
+        assertNull(log.getFailure());
+        assertFalse(logFiles().get(0).toString().endsWith(".1.wal"));
+        MasterBuilder recovered = new JsonReader(snapshot).recover();
+        assertEquals(210, recovered.getAnInventory("Bin").getPieces().get(0).getQuantity());
+    }
+
+    @Test
+    void testRecoverMergesLikeColumnarStorage() throws IOException {
+        LegoInventory crate = new LegoInventory("Crate", PieceStorage.COLUMNAR);
+        crate.addPiece(new LegoPiece("Tile", "Tan", "1x1", 2));
+        builder.addInventory(crate);
+        MutationLog log = new MutationLog(snapshot, 60_000, 1 << 20);
+        log.attach(builder);
+        LegoInventory box = new LegoInventory("Box", PieceStorage.COLUMNAR);
+        builder.addInventory(box);
+        PieceKey plate = new PieceKey("Plate", "Blue", "1x2");
+        for (LegoInventory inventory : List.of(crate, box)) {
+            inventory.addPiece(new LegoPiece("Plate", "Blue", "1x2", 6));
+            inventory.addPiece(new LegoPiece("plate", "BLUE", "1x2", 4));
+            inventory.findPiece(plate).setQuantity(7);
+        }
+        log.close();
+
+        MasterBuilder recovered = new JsonReader(snapshot).recover();
+        for (String name : List.of("Crate", "Box")) {
+            LegoInventory live = builder.getAnInventory(name);
+            LegoInventory replayed = recovered.getAnInventory(name);
+            assertEquals(PieceStorage.COLUMNAR, replayed.getStorage(), name);
+            assertEquals(live.getPieces().size(), replayed.getPieces().size(), name);
+            assertEquals(live.getTotalPieces(), replayed.getTotalPieces(), name);
+            assertEquals(7, replayed.findPiece(plate).getQuantity(), name);
+        }
+        assertEquals(PieceStorage.LIST, recovered.getAnInventory("Bin").getStorage());
+    }
+
+    // MODIFIES: builder
+    // EFFECTS: makes one change of every kind the log records
+    private void change(MasterBuilder builder) {
+        LegoInventory bin = builder.getAnInventory("Bin");
+        LegoInventory box = new LegoInventory("Box", PieceStorage.COLUMNAR);
+        builder.addInventory(box);
+        box.addPiece(new LegoPiece("Plate", "Blue", "1x2", 6));
+        box.addOrMerge(new LegoPiece("plate", "BLUE", "1x2", 2));
+        LegoPiece spare = new LegoPiece("Brick", "Red", "2x4", 3);
+        bin.addPiece(spare);
+        bin.addPiece(new LegoPiece("Slope", "Grey", "2x2", 1));
+        bin.getPieces().get(0).removeQuantity(4);
+        bin.removePiece(spare);
+
+        Build build = new Build(2);
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 2));
+        builder.addBuild(build);
+        build.addRequiredPiece(new LegoPiece("Plate", "Blue", "1x2", 3));
+        builder.addBuild(new Build(3));
+        assertTrue(builder.consumeBuild(build).isCompleted());
+    }
+
+    // EFFECTS: returns the log files in the temporary directory
+    private List<Path> logFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".wal")).sorted().collect(Collectors.toList());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class OffHeapPieceRecordsTest extends ColumnarPieceStoreTest {
+
+    @Override
+    protected PieceStorage storage() {
+        return PieceStorage.OFF_HEAP;
+    }
+
+    @Test
+    void testRecordsReadBackAndGrow() {
+        OffHeapPieceRecords records = new OffHeapPieceRecords(2);
+        records.set(0, 1, 2, 3, 40);
+        records.set(1, 5, 6, 7, 80);
+        records.grow(4);
+        assertEquals(4, records.capacity());
+        records.copy(1, 3);
+        records.setQuantity(0, 41);
+
+        assertEquals(1, records.partType(0));
+        assertEquals(2, records.color(0));
+        assertEquals(3, records.dimensions(0));
+        assertEquals(41, records.quantity(0));
+        assertEquals(5, records.partType(3));
+        assertEquals(80, records.quantity(3));
+    }
+
+    @Test
+    void testManyPiecesOffHeap() {
+        for (int i = 0; i < 3000; i++) {
+            inventory.addPiece(new LegoPiece("Type" + i % 30, "Color" + i / 30, "1x" + i % 7, 2));
+        }
+        assertEquals(3000, inventory.getPieces().size());
+        assertEquals(6000, inventory.getTotalPieces());
+        assertEquals(2, inventory.findPiece(new PieceKey("type29", "color99", "1x3")).getQuantity());
+    }
+}
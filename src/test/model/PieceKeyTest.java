@@ -0,0 +1,46 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+
+public class PieceKeyTest {
+
+    @Test
+    void testConstructorNormalizes() {
+        PieceKey key = new PieceKey(" Brick", "RED", "2X4 ");
+        assertEquals("brick", key.getPartType());
+        assertEquals("red", key.getColor());
+        assertEquals("2x4", key.getDimensions());
+        assertEquals("red brick (2x4)", key.toString());
+    }
+
+    @Test
+    void testEqualsIgnoresCase() {
+        PieceKey key1 = new PieceKey("Brick", "Red", "2x4");
+        PieceKey key2 = new PieceKey("brick", "red", "2X4");
+        assertEquals(key1, key2);
+        assertEquals(key1.hashCode(), key2.hashCode());
+        assertEquals(key1, new LegoPiece("BRICK", "Red", "2x4", 3).getKey());
+    }
+
+    @Test
+    void testNotEquals() {
+        PieceKey key = new PieceKey("Brick", "Red", "2x4");
+        assertNotEquals(key, new PieceKey("Plate", "Red", "2x4"));
+        assertNotEquals(key, new PieceKey("Brick", "Blue", "2x4"));
+        assertNotEquals(key, new PieceKey("Brick", "Red", "1x4"));
+        assertNotEquals(key, null);
+        assertNotEquals(key, "red brick (2x4)");
+    }
+
+    @Test
+    void testAttributesArePooled() {
+        PieceKey key1 = new PieceKey("Brick", "Red", "2x4");
+        PieceKey key2 = new PieceKey(new String(" BRICK"), new String("red"), new String("2X4"));
+        assertSame(key1.getPartType(), key2.getPartType());
+        assertSame(key1.getColor(), key2.getColor());
+        assertSame(key1.getDimensions(), key2.getDimensions());
+    }
+}
\ No newline at end of file
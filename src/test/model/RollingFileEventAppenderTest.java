@@ -0,0 +1,76 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.RollingFileEventAppender;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class RollingFileEventAppenderTest {
+
+    @Test
+    void testWritesEventsOnClose(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("logs").resolve("events.log");
+        RollingFileEventAppender appender = new RollingFileEventAppender(file.toString(), 1000, 1 << 20, 2);
+        for (int i = 0; i < 500; i++) {
+            appender.accept(new Event("Event " + i));
+        }
+        appender.accept(new Event("two\nlines"));
+        appender.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(501, lines.size());
+        assertTrue(lines.get(0).endsWith(" INFO SYSTEM Event 0"));
+        assertTrue(lines.get(499).endsWith(" Event 499"));
+        assertTrue(lines.get(500).endsWith(" two\\nlines"));
+        assertEquals(0, appender.getDroppedCount());
+        assertNull(appender.getFailure());
+
+        appender.accept(new Event("Too late"));
+        assertEquals(1, appender.getDroppedCount());
+    }
+
+    @Test
+    void testRotatesBySize(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("events.log");
+        RollingFileEventAppender appender = new RollingFileEventAppender(file.toString(), 1000, 2000, 2);
+        for (int i = 0; i < 400; i++) {
+            appender.accept(new Event("Event " + i));
+        }
+        appender.close();
+
+        assertTrue(Files.exists(dir.resolve("events.log.1")));
+        assertTrue(Files.exists(dir.resolve("events.log.2")));
+        assertFalse(Files.exists(dir.resolve("events.log.3")));
+        assertTrue(Files.size(dir.resolve("events.log.1")) <= 2000);
+        List<String> lines = Files.readAllLines(file);
+        assertTrue(lines.get(lines.size() - 1).endsWith(" Event 399"));
+    }
+
+    @Test
+    void testReceivesEventsFromLog(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("events.log");
+        RollingFileEventAppender appender = new RollingFileEventAppender(file.toString(), 100, 1 << 20, 1);
+        EventLog log = EventLog.getInstance();
+        log.addSink(appender);
+        try {
+            new LegoInventory("Shelf").addPiece(new LegoPiece("Brick", "Red", "2x4", 3));
+        } finally {
+            log.removeSink(appender);
+            appender.close();
+        }
+        log.logEvent(new Event("Not written"));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith(" INFO INVENTORY Added 3x Red Brick (2x4) to inventory Shelf"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,181 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import persistence.JsonReader;
+import persistence.SaveService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SaveServiceTest extends JsonTest {
+    @TempDir
+    Path dir;
+    private Path file;
+    private MasterBuilder masterBuilder;
+    private SaveService service;
+
+    @BeforeEach
+    void runBefore() {
+        file = dir.resolve("legoTracker.json");
+        masterBuilder = new MasterBuilder("TestUser");
+        LegoInventory list = new LegoInventory("List");
+        list.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        masterBuilder.addInventory(list);
+        LegoInventory columnar = new LegoInventory("Columnar", PieceStorage.COLUMNAR);
+        for (int i = 0; i < 100; i++) {
+            columnar.addPiece(new LegoPiece("Plate", "Color " + i, "1x2", i + 1));
+        }
+        masterBuilder.addInventory(columnar);
+        Build build = new Build(1);
+        build.addRequiredPiece(new LegoPiece("Brick", "Red", "2x4", 4));
+        masterBuilder.addBuild(build);
+        service = new SaveService(file.toString());
+    }
+
+    @AfterEach
+    void runAfter() {
+        service.close();
+    }
+
+    private MasterBuilder readBack() throws IOException {
+        return new JsonReader(file.toString()).read();
+    }
+
+    @Test
+    void testSaveAndRead() throws Exception {
+        service.save(masterBuilder).get(10, TimeUnit.SECONDS);
+        MasterBuilder read = readBack();
+        assertTrue(masterBuilder.toJson().similar(read.toJson()));
+        checkLegoInventory("Columnar", 100, read.getAnInventory("Columnar"));
+        assertFalse(Files.exists(dir.resolve("legoTracker.json.tmp")));
+        assertTrue(Files.readString(file).contains("\n"));
+    }
+
+    @Test
+    void testSaveCompact() throws Exception {
+        SaveService compact = new SaveService(file.toString(), true);
+        compact.save(masterBuilder).get(10, TimeUnit.SECONDS);
+        compact.close();
+        assertFalse(Files.readString(file).contains("\n"));
+        assertTrue(masterBuilder.toJson().similar(readBack().toJson()));
+    }
+
+    @Test
+    void testSaveCompressed() throws Exception {
+        Path compressed = dir.resolve("legoTracker.json.gz");
+        try (SaveService gzip = new SaveService(compressed.toString())) {
+            gzip.save(masterBuilder).get(10, TimeUnit.SECONDS);
+        }
+        byte[] bytes = Files.readAllBytes(compressed);
+        assertEquals((byte) 0x1f, bytes[0]);
+        assertTrue(masterBuilder.toJson().similar(new JsonReader(compressed.toString()).read().toJson()));
+    }
+
+    @Test
+    void testSaveCopiesModelBeforeReturning() throws Exception {
+        CompletableFuture<Void> saved = service.save(masterBuilder);
+        org.json.JSONObject expected = masterBuilder.toJson();
+        masterBuilder.getAnInventory("List").addPiece(new LegoPiece("Tile", "Blue", "1x1", 3));
+        masterBuilder.getABuild(1).addRequiredPiece(new LegoPiece("Tile", "Blue", "1x1", 1));
+        saved.get(10, TimeUnit.SECONDS);
+        assertTrue(expected.similar(readBack().toJson()));
+        assertFalse(masterBuilder.toJson().similar(readBack().toJson()));
+    }
+
+    @Test
+    void testSaveReplacesOldFileAndLeftovers() throws Exception {
+        Files.writeString(file, "{\"userName\": \"Old\", \"inventories\": [], \"builds\": []}");
+        Files.writeString(dir.resolve("legoTracker.json.tmp"), "{\"userName\": \"Torn");
+        service.save(masterBuilder).get(10, TimeUnit.SECONDS);
+        assertEquals("TestUser", readBack().getUserName());
+        assertFalse(Files.exists(dir.resolve("legoTracker.json.tmp")));
+    }
+
+    @Test
+    void testSaveFailureReportedThroughFuture() throws Exception {
+        SaveService failing = new SaveService(dir.resolve("none").resolve("legoTracker.json").toString());
+        CompletableFuture<Void> saved = failing.save(masterBuilder);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> saved.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+        failing.close();
+    }
+
+    @Test
+    void testSavesInOrder() throws Exception {
+        LegoPiece brick = masterBuilder.getAnInventory("List").findPiece(new PieceKey("brick", "red", "2x4"));
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 20; i++) {
+            brick.addQuantity(1);
+            last = service.save(masterBuilder);
+        }
+        last.get(10, TimeUnit.SECONDS);
+        assertEquals(30, readBack().getAnInventory("List").findPiece(new PieceKey("brick", "red", "2x4"))
+                .getQuantity());
+    }
+
+    @Test
+    void testSaveAfterCloseThrows() {
+        service.close();
+        assertThrows(IllegalStateException.class, () -> service.save(masterBuilder));
+    }
+
+    @Test
+    void testAutosaveOffByDefault() throws Exception {
+        service.changed(masterBuilder);
+        service.close();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void testAutosaveAfterQuietDelay() throws Exception {
+        service.setAutosave(20, Runnable::run);
+        for (int i = 0; i < 5; i++) {
+            masterBuilder.getAnInventory("List").addPiece(new LegoPiece("Tile", "Blue", "1x1", 1));
+            service.changed(masterBuilder);
+        }
+        for (int i = 0; i < 500 && !Files.exists(file); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(file));
+        assertTrue(masterBuilder.toJson().similar(readBack().toJson()));
+    }
+
+    @Test
+    void testCloseWritesPendingAutosave() throws Exception {
+        service.setAutosave(60000, Runnable::run);
+        masterBuilder.getAnInventory("List").addPiece(new LegoPiece("Tile", "Blue", "1x1", 2));
+        service.changed(masterBuilder);
+        assertFalse(Files.exists(file));
+        service.close();
+        assertTrue(masterBuilder.toJson().similar(readBack().toJson()));
+    }
+
+    @Test
+    void testWhileUnchangedHoldsInventories() throws Exception {
+        LegoInventory list = masterBuilder.getAnInventory("List");
+        AtomicBoolean added = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            list.addPiece(new LegoPiece("Tile", "Blue", "1x1", 1));
+            added.set(true);
+        });
+        masterBuilder.whileUnchanged(() -> {
+            writer.start();
+            try {
+                writer.join(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertFalse(added.get());
+        });
+        writer.join();
+        assertTrue(added.get());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import persistence.Compression;
+import persistence.SegmentedStore;
+import org.json.JSONException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class SegmentedStoreTest extends JsonTest {
+    @TempDir
+    Path dir;
+    private MasterBuilder masterBuilder;
+    private SegmentedStore store;
+
+    @BeforeEach
+    void runBefore() {
+        masterBuilder = new MasterBuilder("TestUser");
+        for (int i = 0; i < 5; i++) {
+            LegoInventory inventory = new LegoInventory("Bin " + i,
+                    i == 4 ? PieceStorage.COLUMNAR : PieceStorage.LIST);
+            for (int j = 0; j < 10; j++) {
+                inventory.addPiece(new LegoPiece("Brick", "Color " + j, "2x" + i, j + 1));
+            }
+            masterBuilder.addInventory(inventory);
+        }
+        for (int id = 1; id <= 70; id++) {
+            Build build = new Build(id);
+            build.addRequiredPiece(new LegoPiece("Brick", "Color 1", "2x0", id));
+            masterBuilder.addBuild(build);
+        }
+        store = new SegmentedStore(dir.toString());
+    }
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testLoadNonExistentDirectory() {
+        assertThrows(IOException.class, () -> new SegmentedStore(dir.resolve("none").toString()).load());
+    }
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        store.save(masterBuilder);
+        assertEquals(7, store.getSegmentsWritten());
+        assertEquals(8, fileCount());
+
+        MasterBuilder loaded = new SegmentedStore(dir.toString()).load();
+        assertTrue(masterBuilder.toJson().similar(loaded.toJson()));
+        assertEquals(PieceStorage.COLUMNAR, loaded.getAnInventory("Bin 4").getStorage());
+        checkLegoInventory("Bin 2", 10, loaded.getAnInventory("Bin 2"));
+        assertEquals(70, loaded.getBuilds().size());
+        assertTrue(loaded.isBuildable(loaded.getABuild(2)));
+    }
+
+    @Test
+    void testSaveWritesOnlyChangedSegments() throws IOException {
+        store.save(masterBuilder);
+        store.save(masterBuilder);
+        assertEquals(0, store.getSegmentsWritten());
+
+        masterBuilder.getAnInventory("Bin 3").getPieces().get(0).addQuantity(5);
+        store.save(masterBuilder);
+        assertEquals(1, store.getSegmentsWritten());
+
+        masterBuilder.getABuild(10).addRequiredPiece(new LegoPiece("Plate", "Red", "1x1", 1));
+        LegoInventory bin0 = masterBuilder.getAnInventory("Bin 0");
+        bin0.removePiece(bin0.findPiece(new PieceKey("brick", "color 0", "2x0")));
+        masterBuilder.getAnInventory("Bin 4").addPiece(new LegoPiece("Brick", "Color 0", "2x4", 3));
+        store.save(masterBuilder);
+        assertEquals(3, store.getSegmentsWritten());
+
+        masterBuilder.addBuild(new Build(71));
+        masterBuilder.addInventory(new LegoInventory("Bin 5"));
+        store.save(masterBuilder);
+        assertEquals(2, store.getSegmentsWritten());
+        assertEquals(9, fileCount());
+
+        MasterBuilder loaded = new SegmentedStore(dir.toString()).load();
+        assertTrue(masterBuilder.toJson().similar(loaded.toJson()));
+        assertEquals(6, loaded.getAnInventory("Bin 3").getPieces().get(0).getQuantity());
+        assertEquals(4, loaded.getAnInventory("Bin 4").getPieces().get(0).getQuantity());
+    }
+
+    @Test
+    void testSaveAfterLoadWritesOnlyChanges() throws IOException {
+        store.save(masterBuilder);
+        SegmentedStore reopened = new SegmentedStore(dir.toString());
+        MasterBuilder loaded = reopened.load();
+        reopened.save(loaded);
+        assertEquals(0, reopened.getSegmentsWritten());
+
+        loaded.getAnInventory("Bin 1").addPiece(new LegoPiece("Tile", "Blue", "1x1", 2));
+        reopened.save(loaded);
+        assertEquals(1, reopened.getSegmentsWritten());
+        assertTrue(loaded.toJson().similar(new SegmentedStore(dir.toString()).load().toJson()));
+    }
+
+    @Test
+    void testLeftoverFilesIgnoredAndRemoved() throws IOException {
+        store.save(masterBuilder);
+        Files.writeString(dir.resolve("segment-999.json"), "{\"collectionName\": \"Torn");
+        Files.writeString(dir.resolve(SegmentedStore.MANIFEST + ".tmp"), "{");
+
+        MasterBuilder loaded = new SegmentedStore(dir.toString()).load();
+        assertEquals(5, loaded.getInventories().size());
+
+        masterBuilder.getAnInventory("Bin 0").getPieces().get(0).addQuantity(1);
+        store.save(masterBuilder);
+        assertFalse(Files.exists(dir.resolve("segment-999.json")));
+        assertFalse(Files.exists(dir.resolve(SegmentedStore.MANIFEST + ".tmp")));
+        assertEquals(8, fileCount());
+    }
+
+    @Test
+    void testChangeCounts() {
+        LegoInventory inventory = masterBuilder.getAnInventory("Bin 0");
+        long before = inventory.getChangeCount();
+        inventory.findPiece(new PieceKey("brick", "color 0", "2x0")).setQuantity(4);
+        inventory.removePieces(List.of(inventory.findPiece(new PieceKey("brick", "color 1", "2x0"))));
+        assertEquals(before + 2, inventory.getChangeCount());
+
+        Build build = masterBuilder.getABuild(1);
+        build.addRequiredPiece(new LegoPiece("Plate", "Red", "1x1", 1));
+        assertEquals(2, build.getChangeCount());
+    }
+
+    @Test
+    void testLoadParallel() throws IOException {
+        store.save(masterBuilder);
+        SegmentedStore reopened = new SegmentedStore(dir.toString());
+        MasterBuilder loaded = reopened.loadParallel();
+        assertEquals(masterBuilder.toJson().toString(), loaded.toJson().toString());
+        assertEquals(PieceStorage.COLUMNAR, loaded.getAnInventory("Bin 4").getStorage());
+        assertTrue(loaded.isBuildable(loaded.getABuild(2)));
+
+        reopened.save(loaded);
+        assertEquals(0, reopened.getSegmentsWritten());
+        loaded.getABuild(70).addRequiredPiece(new LegoPiece("Tile", "Blue", "1x1", 2));
+        reopened.save(loaded);
+        assertEquals(1, reopened.getSegmentsWritten());
+
+        Files.writeString(dir.resolve("segment-0.json"), "{\"collectionName\": \"Torn");
+        assertThrows(JSONException.class, () -> new SegmentedStore(dir.toString()).loadParallel());
+    }
+
+    @Test
+    void testCompressedSegments() throws IOException {
+        SegmentedStore compressed = new SegmentedStore(dir.toString(), Compression.GZIP);
+        compressed.save(masterBuilder);
+        assertEquals(8, fileCount());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(7, files.filter(file -> file.toString().endsWith(".json.gz")).count());
+        }
+        SegmentedStore plain = new SegmentedStore(dir.toString());
+        MasterBuilder loaded = plain.load();
+        assertTrue(masterBuilder.toJson().similar(loaded.toJson()));
+
+        loaded.getAnInventory("Bin 1").getPieces().get(0).addQuantity(1);
+        plain.save(loaded);
+        assertEquals(1, plain.getSegmentsWritten());
+        assertEquals(8, fileCount());
+        assertTrue(loaded.toJson().similar(new SegmentedStore(dir.toString(), Compression.DEFLATE).load().toJson()));
+    }
+}
\ No newline at end of file
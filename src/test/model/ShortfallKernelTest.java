@@ -0,0 +1,35 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+public class ShortfallKernelTest {
+
+    @Test
+    void testGather() {
+        int[] values = {7, 0, 3, 9};
+        int[] out = new int[4];
+        ShortfallKernel.gather(values, new int[] {3, 0, 0, 2}, out, 3);
+        assertArrayEquals(new int[] {9, 7, 7, 0}, out);
+    }
+
+    @Test
+    void testShortfall() {
+        int[] out = new int[4];
+        ShortfallKernel.shortfall(new int[] {5, 2, 0, 8}, new int[] {3, 4, 1, 8}, out, 4);
+        assertArrayEquals(new int[] {2, 0, 0, 0}, out);
+    }
+
+    @Test
+    void testTotalShortfall() {
+        int[] required = new int[1000];
+        int[] available = new int[1000];
+        for (int i = 0; i < required.length; i++) {
+            required[i] = i % 10;
+            available[i] = 5;
+        }
+        assertEquals(100 * (1 + 2 + 3 + 4), ShortfallKernel.totalShortfall(required, available, 1000));
+        assertEquals(0, ShortfallKernel.totalShortfall(required, available, 0));
+    }
+}
@@ -0,0 +1,160 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import persistence.SnapshotReader;
+import persistence.SnapshotWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class SnapshotReaderTest extends JsonTest {
+
+    private MasterBuilder writeAndRead(MasterBuilder original, Path file) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter(file.toString());
+        writer.open();
+        writer.write(original);
+        writer.close();
+        return new SnapshotReader(file.toString()).read();
+    }
+
+    private MasterBuilder sampleBuilder() {
+        MasterBuilder original = new MasterBuilder("TestUser");
+        LegoInventory list = new LegoInventory("List");
+        list.addPiece(new LegoPiece("Brick", "Red", "2x4", 10));
+        list.addPiece(new LegoPiece("brick", "red", "2X4", 5));
+        original.addInventory(list);
+        LegoInventory columnar = new LegoInventory("Columnar", PieceStorage.COLUMNAR);
+        columnar.addPiece(new LegoPiece("Plate", "Blue", "1x2", 7));
+        columnar.addPiece(new LegoPiece("Tile", "Green", "2x2", 3));
+        original.addInventory(columnar);
+        LegoInventory offHeap = new LegoInventory("OffHeap", PieceStorage.OFF_HEAP);
+        offHeap.addPiece(new LegoPiece("Slope", "Black", "2x2", 4));
+        original.addInventory(offHeap);
+        Build build = new Build(1);
+        build.addRequiredPiece(new LegoPiece("Plate", "Blue", "1x2", 9));
+        build.addRequiredPiece(new LegoPiece("Slope", "Black", "2x2", 2));
+        original.addBuild(build);
+        return original;
+    }
+
+    @Test
+    void testReaderNonExistentFile() {
+        assertThrows(IOException.class, () -> new SnapshotReader("./data/noSuchFile.snapshot").read());
+    }
+
+    @Test
+    void testSnapshotEmptyMasterBuilder(@TempDir Path dir) throws IOException {
+        MasterBuilder read = writeAndRead(new MasterBuilder("TestUser"), dir.resolve("empty.snapshot"));
+        assertEquals("TestUser", read.getUserName());
+        assertTrue(read.getInventories().isEmpty());
+        assertTrue(read.getBuilds().isEmpty());
+    }
+
+    @Test
+    void testSnapshotRoundTrip(@TempDir Path dir) throws IOException {
+        MasterBuilder original = sampleBuilder();
+        MasterBuilder read = writeAndRead(original, dir.resolve("sample.snapshot"));
+
+        assertTrue(original.toJson().similar(read.toJson()));
+        assertEquals(PieceStorage.LIST, read.getAnInventory("List").getStorage());
+        assertEquals(PieceStorage.COLUMNAR, read.getAnInventory("Columnar").getStorage());
+        assertEquals(PieceStorage.OFF_HEAP, read.getAnInventory("OffHeap").getStorage());
+        checkLegoInventory("List", 2, read.getAnInventory("List"));
+        checkLegoPiece("Tile", "Green", "2x2", 3, read.getAnInventory("Columnar").getPieces().get(1));
+        assertEquals(10, read.getAnInventory("Columnar").getTotalPieces());
+        assertEquals(7, read.getAnInventory("Columnar").getColorCount("BLUE"));
+        assertEquals(3, read.getAnInventory("Columnar").getPartTypeCount("tile"));
+    }
+
+    @Test
+    void testSnapshotCountsPiecesWhenFirstNeeded(@TempDir Path dir) throws IOException {
+        MasterBuilder read = writeAndRead(sampleBuilder(), dir.resolve("sample.snapshot"));
+        Build build = read.getABuild(1);
+
+        assertEquals(2, read.getMissingUnits(build));
+        assertEquals(Integer.valueOf(2), read.getShortfall(build).get(new PieceKey("plate", "blue", "1x2")));
+        assertEquals(15, read.getAvailableQuantity(new PieceKey("brick", "red", "2x4")));
+
+        read.getAnInventory("Columnar").findPiece(new PieceKey("plate", "blue", "1x2")).addQuantity(2);
+        assertTrue(read.isBuildable(build));
+        assertTrue(read.consumeBuild(build).isCompleted());
+        assertNull(read.getAnInventory("Columnar").findPiece(new PieceKey("plate", "blue", "1x2")));
+        assertEquals(2, read.getAnInventory("OffHeap").getTotalPieces());
+    }
+
+    @Test
+    void testSnapshotChangesAfterReading(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("sample.snapshot");
+        MasterBuilder read = writeAndRead(sampleBuilder(), file);
+        LegoInventory columnar = read.getAnInventory("Columnar");
+
+        columnar.addPiece(new LegoPiece("Plate", "Blue", "1x2", 1));
+        columnar.addPiece(new LegoPiece("Brick", "Yellow", "1x1", 6));
+        columnar.removePiece(new LegoPiece("Tile", "Green", "2x2", 0));
+        assertEquals(2, columnar.getPieces().size());
+        assertEquals(8, columnar.findPiece(new PieceKey("plate", "blue", "1x2")).getQuantity());
+        assertEquals(14, columnar.getTotalPieces());
+        assertEquals(8, read.getAvailableQuantity(new PieceKey("plate", "blue", "1x2")));
+
+        MasterBuilder reread = writeAndRead(read, file);
+        assertTrue(read.toJson().similar(reread.toJson()));
+    }
+
+    @Test
+    void testSnapshotRejectsOtherFiles(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("other.snapshot");
+        Files.write(file, "{\"userName\": \"TestUser\"}".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> new SnapshotReader(file.toString()).read());
+
+        MasterBuilder original = sampleBuilder();
+        writeAndRead(original, file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> new SnapshotReader(file.toString()).read());
+    }
+
+    @Test
+    void testInventoryFromRecords() {
+        PieceDictionary dictionary = new PieceDictionary(List.of("Brick", "Plate"), List.of("Red"),
+                List.of("2x4", "1x1"));
+        ByteBuffer records = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+        records.putInt(0).putInt(0).putInt(0).putInt(5);
+        records.putInt(1).putInt(0).putInt(1).putInt(3);
+        records.flip();
+        LegoInventory inventory = LegoInventory.fromRecords("Mapped", PieceStorage.COLUMNAR, records, 2, dictionary);
+
+        assertEquals(8, inventory.getTotalPieces());
+        assertEquals(8, inventory.getColorCount("red"));
+        checkLegoPiece("Plate", "Red", "1x1", 3, inventory.getPieces().get(1));
+        inventory.findPiece(new PieceKey("brick", "red", "2x4")).setQuantity(6);
+        assertEquals(9, inventory.getTotalPieces());
+        assertEquals(5, records.getInt(12));
+
+        records.putInt(16, 7);
+        assertThrows(IllegalArgumentException.class,
+                () -> LegoInventory.fromRecords("Bad", PieceStorage.COLUMNAR, records, 2, dictionary));
+    }
+
+    @Test
+    void testSnapshotLargeRoundTrip(@TempDir Path dir) throws IOException {
+        MasterBuilder original = new MasterBuilder("TestUser");
+        for (int i = 0; i < 3; i++) {
+            LegoInventory inventory = new LegoInventory("Bin " + i, PieceStorage.OFF_HEAP);
+            for (int j = 0; j < 30000; j++) {
+                inventory.addPiece(new LegoPiece("Part " + (j % 300), "Color " + (j % 70), i + "x" + j, j));
+            }
+            original.addInventory(inventory);
+        }
+        MasterBuilder read = writeAndRead(original, dir.resolve("large.snapshot"));
+        assertTrue(original.toJson().similar(read.toJson()));
+        assertEquals(original.getAnInventory("Bin 2").getTotalPieces(), read.getAnInventory("Bin 2").getTotalPieces());
+        assertEquals(299, read.getAvailableQuantity(new PieceKey("part 299", "color 19", "1x299")));
+    }
+}